@@ -1,93 +1,360 @@
 package ct.action;
 
 import java.io.IOException;
-import java.io.UncheckedIOException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
 
+import ct.action.TargetIndex.Listing;
 import ct.action.copy.model.CopyTask;
-import ct.action.copy.model.FileRecord;
+import ct.action.copy.model.PartialFile;
+import ct.action.copy.model.PathTable;
+import ct.action.copy.model.ResumePoint;
+import ct.action.copy.model.TaskTable;
+import ct.app.App;
+import ct.app.Settings;
 import ct.app.Settings.AnalyseSettings;
 
 public class AnalyseAction {
 
+	// Directories listed at the same time, bounds round trips in flight to a file share
+	private static final int PARALLELISM = 8;
+
 	private AnalyseAction() {
 	}
 
 	private static enum Status {
-		COPY, MATCH, MISMATCH
+		COPY, MATCH, MISMATCH, PARTIAL
 	}
 
-	private static record FilesResult(Status status, long sourceSize, Path sourcePath, long targetSize, Path targetPath,
-			Path relativeFromSource) {
-
-		public FileRecord sourceFile() {
-			return FileRecord.sourceFile(sourcePath, sourceSize, relativeFromSource);
-		}
-
-		public FileRecord targetFile() {
-			return FileRecord.targetFile(targetPath);
-		}
+	private static record FilesResult(Status status, long sourceSize, long targetSize) {
+	}
 
-		public FileRecord resumeSource() {
-			return FileRecord.resumeSource(sourcePath, sourceSize, targetSize, relativeFromSource);
-		}
+	/**
+	 * Attributes of files in the target directory, null when the file does not
+	 * exist.
+	 */
+	@FunctionalInterface
+	private static interface TargetLookup {
+		BasicFileAttributes attributes(Path target) throws IOException;
 	}
 
-	private static FilesResult filesStatus(Path source, Path target, Path relativeFromSource) throws IOException {
+	private static FilesResult filesStatus(Path source, BasicFileAttributes sourceAttrs, Path target,
+			TargetLookup targets, boolean partial) throws IOException {
 		Status status;
-		long sourceSize = Files.size(source);
+		long sourceSize = sourceAttrs.size();
 		long targetSize = -1;
+		BasicFileAttributes targetAttrs = targets.attributes(target);
 
-		if (Files.notExists(target)) {
+		if (targetAttrs == null) {
 			status = Status.COPY;
+			// Partial file of the unchanged source is resumable as is, named by size and modified time
+			if (partial) {
+				Path partialFile = PartialFile.path(target, sourceSize, sourceAttrs.lastModifiedTime());
+				BasicFileAttributes partialAttrs = targets.attributes(partialFile);
+				if (partialAttrs != null) {
+					targetSize = partialAttrs.size();
+					status = Status.PARTIAL;
+				}
+			}
 		} else {
-			targetSize = Files.size(target);
-			if (sourceSize == targetSize
-					&& Files.getLastModifiedTime(source).equals(Files.getLastModifiedTime(target))) {
+			targetSize = targetAttrs.size();
+			if (sourceSize == targetSize && sourceAttrs.lastModifiedTime().equals(targetAttrs.lastModifiedTime())) {
 				status = Status.MATCH;
 			} else {
 				status = Status.MISMATCH;
 			}
 		}
 
-		return new FilesResult(status, sourceSize, source, targetSize, target, relativeFromSource);
+		return new FilesResult(status, sourceSize, targetSize);
+	}
+
+	/**
+	 * Attributes in one round trip, null when the file does not exist.
+	 */
+	private static BasicFileAttributes attributes(Path path) throws IOException {
+		try {
+			return Files.readAttributes(path, BasicFileAttributes.class);
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Entries of a directory with their attributes, without following links,
+	 * null entries when the directory does not exist. Listed by a walk of depth
+	 * one, which takes the attributes from the listing where the file system
+	 * returns them (Windows, SMB), instead of one round trip per file.
+	 */
+	private static Listing list(Path dir) throws IOException {
+		Map<String, BasicFileAttributes> entries = new LinkedHashMap<>();
+		boolean[] missing = { false };
+		FileTime[] modified = { null };
+		Files.walkFileTree(dir, Set.of(), 1, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path file, BasicFileAttributes attrs) {
+				modified[0] = attrs.lastModifiedTime();
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				if (!file.equals(dir)) {
+					entries.put(file.getFileName().toString(), attrs);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+				if (!(e instanceof NoSuchFileException)) {
+					throw e;
+				}
+				// Removed since listed
+				missing[0] |= file.equals(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return new Listing(modified[0], missing[0] ? null : entries);
 	}
 
-	public static AnalyseResult findAllFiles(AnalyseSettings settings) {
-		AnalyseResult result = new AnalyseResult();
+	/**
+	 * Scans the source tree with directories listed concurrently, a directory
+	 * that fails is listed again after the wait before retry. Each source
+	 * directory is merged with one listing of its target directory.
+	 */
+	public static AnalyseResult findAllFiles(Settings settings) {
+		return findAllFiles(settings, TargetIndex.disabled(), null);
+	}
 
+	public static AnalyseResult findAllFiles(Settings settings, TargetIndex index, Consumer<CopyTask> sink) {
+		return findAllFiles(settings, index, Map.of(), sink);
+	}
+
+	/**
+	 * Scans the source tree, target directories unchanged since indexed are
+	 * not listed. Unfinished files of an interrupted copy, by relative path, are
+	 * copied from their resume point. Files are in the order of a walk of the
+	 * tree, files to copy are passed to the sink as soon as their directory and
+	 * the ones before it are scanned instead of returned, when set.
+	 */
+	public static AnalyseResult findAllFiles(Settings settings, TargetIndex index, Map<Path, ResumePoint> journaled,
+			Consumer<CopyTask> sink) {
+		AnalyseSettings as = settings.analyse();
+		Scan scan = new Scan(as, settings.robustCopy().waitBeforeRetryTimeSec(), index, journaled, sink,
+				new PathTable(as.sourceDir(), as.targetDir()));
+		ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
 		try {
-			Files.walkFileTree(settings.sourceDir(), new SimpleFileVisitor<Path>() {
-				@Override
-				public FileVisitResult visitFile(final Path sourceFile, BasicFileAttributes attrs) throws IOException {
-					final Path relativeFromSource = settings.sourceDir().getParent().relativize(sourceFile);
-					final Path targetFile = settings.targetDir().resolve(relativeFromSource);
-
-					FilesResult res = filesStatus(sourceFile, targetFile, relativeFromSource);
-
-					switch (res.status()) {
-					case COPY -> result.copy().add(new CopyTask(res.sourceFile(), res.targetFile()));
-					case MATCH -> result.match().add(res.sourceFile());
-					case MISMATCH -> {
-						result.mismatch().add(res.sourceFile());
-						if (settings.overwrite()) {
-							result.copy().add(new CopyTask(res.sourceFile(), res.targetFile()));
-						} else if (settings.resume()) {
-							result.copy().add(new CopyTask(res.resumeSource(), res.targetFile()));
-						}
-					}
+			// Directories are listed in parallel, their files appended in walk order as listed
+			DirectoryScan root = new DirectoryScan(scan, as.sourceDir(), PathTable.ROOT, true, false);
+			pool.execute(root);
+			AnalyseResult result = new AnalyseResult(scan.paths());
+			root.append(result);
+			return result;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private static record Scan(AnalyseSettings settings, int waitBeforeRetryTimeSec, TargetIndex index,
+			Map<Path, ResumePoint> journaled, Consumer<CopyTask> sink, PathTable paths) {
+	}
+
+	/**
+	 * Subdirectory, walked after the files listed before it.
+	 */
+	private static record Subdir(DirectoryScan scan, int copyBefore, int mismatchBefore) {
+	}
+
+	private static class DirectoryScan extends RecursiveAction {
+
+		private final Scan scan;
+		private final AnalyseSettings settings;
+		private final Path dir;
+		private final int parentId;
+		private final boolean root;
+		private final boolean targetMissing;
+
+		// Files of this directory only, until appended
+		private AnalyseResult files;
+		private List<Subdir> subdirs;
+
+		DirectoryScan(Scan scan, Path dir, int parentId, boolean root, boolean targetMissing) {
+			this.scan = scan;
+			this.settings = scan.settings();
+			this.dir = dir;
+			this.parentId = parentId;
+			this.root = root;
+			this.targetMissing = targetMissing;
+		}
+
+		@Override
+		protected void compute() {
+			files = new AnalyseResult(scan.paths());
+			subdirs = new ArrayList<>();
+			boolean scanned = false;
+			while (!scanned) {
+				try {
+					scan(files, subdirs);
+					scanned = true;
+				} catch (IOException e) {
+					// Results of the failed listing are dropped, a retried listing passes no task twice
+					files = new AnalyseResult(scan.paths());
+					subdirs.clear();
+					if (e instanceof NoSuchFileException && !root) {
+						// Removed since listed
+						return;
 					}
-					return FileVisitResult.CONTINUE;
+					App.error(switch (e) {
+					case NoSuchFileException _ -> "Error no such file";
+					default -> "Analyse problem";
+					}, e.getMessage());
+					waitBeforeRetry();
 				}
-			});
-		} catch (IOException e) {
-			throw new UncheckedIOException(e);
+			}
+			for (Subdir subdir : subdirs) {
+				subdir.scan().fork();
+			}
+		}
+
+		/**
+		 * Appends the files of this directory and below in walk order, each
+		 * directory once listed, files to copy are passed to the sink instead
+		 * when set. Each file is appended once, not again per level.
+		 */
+		void append(AnalyseResult result) {
+			join();
+			int copied = 0;
+			int mismatched = 0;
+			for (Subdir subdir : subdirs) {
+				append(result, copied, subdir.copyBefore(), mismatched, subdir.mismatchBefore());
+				copied = subdir.copyBefore();
+				mismatched = subdir.mismatchBefore();
+				subdir.scan().append(result);
+			}
+			append(result, copied, files.copy().size(), mismatched, files.mismatch().size());
+			result.addMatch(files.match());
+
+			// Appended, not kept until the whole tree is
+			files = null;
+			subdirs = null;
+		}
+
+		private void append(AnalyseResult result, int copyFrom, int copyTo, int mismatchFrom, int mismatchTo) {
+			if (scan.sink() != null) {
+				files.copy().subList(copyFrom, copyTo).forEach(scan.sink());
+			} else {
+				result.copyTable().addAll(files.copyTable(), copyFrom, copyTo);
+			}
+			result.mismatchTable().addAll(files.mismatchTable(), mismatchFrom, mismatchTo);
 		}
 
-		return result;
+		private void scan(AnalyseResult result, List<Subdir> subdirs) throws IOException {
+			// Source can be a single file
+			if (root && !Files.isDirectory(dir)) {
+				BasicFileAttributes attrs = Files.readAttributes(dir, BasicFileAttributes.class);
+				visitFile(parentId, dir, attrs, AnalyseAction::attributes, result);
+				return;
+			}
+			Map<String, BasicFileAttributes> sources = list(dir).entries();
+			if (sources == null) {
+				throw new NoSuchFileException(dir.toString());
+			}
+			int dirId = scan.paths().directory(parentId, dir.getFileName().toString());
+
+			// Nothing below a missing target directory exists, not listed, unchanged ones are indexed
+			Path targetDir = settings.targetDir().resolve(settings.sourceDir().getParent().relativize(dir));
+			Map<String, BasicFileAttributes> targets = targetMissing ? null
+					: scan.index().list(targetDir, AnalyseAction::list);
+			TargetLookup lookup = target -> {
+				BasicFileAttributes attrs = targets == null ? null : targets.get(target.getFileName().toString());
+				// Copy follows links
+				return attrs != null && attrs.isSymbolicLink() ? attributes(target) : attrs;
+			};
+
+			for (Map.Entry<String, BasicFileAttributes> entry : sources.entrySet()) {
+				Path source = dir.resolve(entry.getKey());
+				BasicFileAttributes attrs = entry.getValue();
+				if (attrs.isDirectory()) {
+					subdirs.add(new Subdir(new DirectoryScan(scan, source, dirId, false, targets == null),
+							result.copy().size(), result.mismatch().size()));
+					continue;
+				}
+				// Copy follows links to files, links to directories are not followed
+				if (attrs.isSymbolicLink()) {
+					attrs = attributes(source);
+				}
+				// Removed since listed, or dangling link
+				if (attrs != null && !attrs.isDirectory()) {
+					visitFile(dirId, source, attrs, lookup, result);
+				}
+			}
+		}
+
+		private void visitFile(int dirId, Path sourceFile, BasicFileAttributes attrs, TargetLookup targets,
+				AnalyseResult result) throws IOException {
+			final Path relativeFromSource = settings.sourceDir().getParent().relativize(sourceFile);
+			final Path targetFile = settings.targetDir().resolve(relativeFromSource);
+			final String name = sourceFile.getFileName().toString();
+
+			final FileTime modified = attrs.lastModifiedTime();
+
+			FilesResult res = filesStatus(sourceFile, attrs, targetFile, targets, settings.partial());
+
+			// Stored by directory id and name, paths are not kept
+			TaskTable copy = result.copyTable();
+			ResumePoint journaled = scan.journaled().get(relativeFromSource);
+			if (journaled != null && res.status() != Status.MATCH) {
+				// Unfinished file of an interrupted copy, copied also when mismatching
+				long landed = res.targetSize();
+				if (settings.partial() && res.status() == Status.MISMATCH) {
+					BasicFileAttributes partialAttrs = targets
+							.attributes(PartialFile.path(targetFile, res.sourceSize(), modified));
+					landed = partialAttrs == null ? -1 : partialAttrs.size();
+				}
+				if (res.status() == Status.MISMATCH) {
+					result.mismatchTable().add(dirId, name, res.sourceSize(), modified, 0);
+				}
+				copy.add(dirId, name, res.sourceSize(), modified,
+						journaled.verified(res.sourceSize(), modified, landed));
+				return;
+			}
+			switch (res.status()) {
+			case COPY -> copy.add(dirId, name, res.sourceSize(), modified, 0);
+			case PARTIAL -> copy.add(dirId, name, res.sourceSize(), modified, res.targetSize());
+			case MATCH -> result.addMatch();
+			case MISMATCH -> {
+				result.mismatchTable().add(dirId, name, res.sourceSize(), modified, 0);
+				if (settings.overwrite()) {
+					copy.add(dirId, name, res.sourceSize(), modified, 0);
+				} else if (settings.resume()) {
+					copy.add(dirId, name, res.sourceSize(), modified, res.targetSize());
+				}
+			}
+			}
+		}
+
+		private void waitBeforeRetry() {
+			try {
+				Thread.sleep(Duration.ofSeconds(scan.waitBeforeRetryTimeSec()));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CancellationException("Analyse interrupted");
+			}
+		}
 	}
 }
@@ -1,14 +1,54 @@
 package ct.action;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import ct.action.copy.model.CopyTask;
-import ct.action.copy.model.FileRecord;
+import ct.action.copy.model.PathTable;
+import ct.action.copy.model.TaskTable;
 
-public record AnalyseResult(List<CopyTask> copy, List<FileRecord> match, List<FileRecord> mismatch) {
+/**
+ * Files to copy and mismatching files as columnar tables, matching files are
+ * only counted.
+ */
+public class AnalyseResult {
 
-	public AnalyseResult() {
-		this(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+	private final TaskTable copy;
+	private final TaskTable mismatch;
+	private long match = 0;
+
+	public AnalyseResult(PathTable paths) {
+		this.copy = new TaskTable(paths);
+		this.mismatch = new TaskTable(paths);
+	}
+
+	public List<CopyTask> copy() {
+		return copy;
+	}
+
+	/**
+	 * Mismatching files, as tasks from the start.
+	 */
+	public List<CopyTask> mismatch() {
+		return mismatch;
+	}
+
+	public long match() {
+		return match;
+	}
+
+	TaskTable copyTable() {
+		return copy;
+	}
+
+	TaskTable mismatchTable() {
+		return mismatch;
+	}
+
+	void addMatch() {
+		match++;
+	}
+
+	void addMatch(long count) {
+		match += count;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,412 @@
+package ct.action;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import ct.action.copy.model.CopyTask;
+import ct.action.copy.model.PartialFile;
+import ct.action.copy.progress.IProgressEvent;
+import ct.action.copy.progress.IProgressEvent.AbortEvent;
+import ct.action.copy.progress.IProgressEvent.CopyEndEvent;
+import ct.action.copy.progress.IProgressEvent.CopyStartEvent;
+import ct.action.copy.progress.IProgressEvent.ModifiedTimeEvent;
+import ct.action.copy.progress.IProgressReport;
+import ct.app.App;
+import ct.app.Settings.AnalyseSettings;
+
+/**
+ * Snapshot of the target tree in the target directory, name, size and modified
+ * time of the entries of each directory listed, so a later run compares the
+ * source against it instead of listing the target again. A directory is
+ * listed again when its modified time changed, entries were added, removed or
+ * renamed, and a random sample of unchanged ones is listed again each run.
+ * Copied files are added once their modified time is set, their directories
+ * take the modified time after the copy when saved.
+ */
+public class TargetIndex {
+
+	public static final String FILE_NAME = ".ct-index";
+
+	// "CTINDX02", modified times in nanoseconds
+	private static final long MAGIC = 0x4354494E44583032L;
+	// One in SAMPLE unchanged directories is listed again, catches files changed in place
+	static final int SAMPLE = 64;
+	// Directories read at the same time when saved
+	private static final int PARALLELISM = 8;
+	private static final long UNKNOWN = Long.MIN_VALUE;
+
+	private static final byte FILE = 0;
+	private static final byte DIRECTORY = 1;
+	private static final byte LINK = 2;
+	private static final byte OTHER = 3;
+
+	private static final TargetIndex DISABLED = new TargetIndex(null, 0);
+
+	private final Path targetDir;
+	private final int sample;
+	private final Map<String, Directory> dirs = new ConcurrentHashMap<>();
+
+	/**
+	 * Attributes of an indexed entry, links are followed when looked up.
+	 */
+	record Entry(long size, long modified, byte kind) implements BasicFileAttributes {
+
+		static Entry of(BasicFileAttributes attrs) {
+			byte kind = attrs.isSymbolicLink() ? LINK
+					: attrs.isDirectory() ? DIRECTORY : attrs.isRegularFile() ? FILE : OTHER;
+			return new Entry(attrs.size(), nanos(attrs.lastModifiedTime()), kind);
+		}
+
+		@Override
+		public FileTime lastModifiedTime() {
+			return FileTime.from(modified, TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public FileTime lastAccessTime() {
+			return lastModifiedTime();
+		}
+
+		@Override
+		public FileTime creationTime() {
+			return lastModifiedTime();
+		}
+
+		@Override
+		public boolean isRegularFile() {
+			return kind == FILE;
+		}
+
+		@Override
+		public boolean isDirectory() {
+			return kind == DIRECTORY;
+		}
+
+		@Override
+		public boolean isSymbolicLink() {
+			return kind == LINK;
+		}
+
+		@Override
+		public boolean isOther() {
+			return kind == OTHER;
+		}
+
+		@Override
+		public Object fileKey() {
+			return null;
+		}
+	}
+
+	/**
+	 * Entries of a listed directory and its modified time, null entries when
+	 * the directory does not exist.
+	 */
+	record Listing(FileTime modified, Map<String, BasicFileAttributes> entries) {
+	}
+
+	@FunctionalInterface
+	interface Lister {
+		Listing list(Path dir) throws IOException;
+	}
+
+	private static class Directory {
+		private long modified;
+		private final Map<String, Entry> entries;
+		private int copying = 0;
+		private boolean touched = false;
+
+		Directory(long modified, Map<String, Entry> entries) {
+			this.modified = modified;
+			this.entries = entries;
+		}
+
+		synchronized Map<String, BasicFileAttributes> snapshot() {
+			return new HashMap<>(entries);
+		}
+
+		synchronized void start() {
+			copying++;
+			touched = true;
+		}
+
+		synchronized void copied(String name, Entry entry) {
+			copying--;
+			entries.put(name, entry);
+			// Renamed into place, or replaced by a copy from start
+			entries.keySet().removeIf(n -> PartialFile.parse(n).filter(p -> p.name().equals(name)).isPresent());
+		}
+	}
+
+	private TargetIndex(Path targetDir, int sample) {
+		this.targetDir = targetDir;
+		this.sample = sample;
+	}
+
+	public static TargetIndex disabled() {
+		return DISABLED;
+	}
+
+	static Path indexFile(Path targetDir) {
+		return targetDir.resolve(FILE_NAME);
+	}
+
+	/**
+	 * Index of the previous run, empty without one or when unreadable.
+	 */
+	public static TargetIndex load(AnalyseSettings settings) {
+		return load(settings, SAMPLE);
+	}
+
+	/**
+	 * Index listing one in sample unchanged directories again, none with 0.
+	 */
+	static TargetIndex load(AnalyseSettings settings, int sample) {
+		if (!settings.index()) {
+			return DISABLED;
+		}
+		TargetIndex index = new TargetIndex(settings.targetDir(), sample);
+		Path file = indexFile(settings.targetDir());
+		if (!Files.exists(file)) {
+			return index;
+		}
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+			if (in.readLong() != MAGIC) {
+				App.warning("Ignoring index", file);
+				return index;
+			}
+			int dirCount = in.readInt();
+			for (int d = 0; d < dirCount; d++) {
+				String key = in.readUTF();
+				long modified = in.readLong();
+				int count = in.readInt();
+				Map<String, Entry> entries = new HashMap<>();
+				for (int e = 0; e < count; e++) {
+					entries.put(in.readUTF(), new Entry(in.readLong(), in.readLong(), in.readByte()));
+				}
+				index.dirs.put(key, new Directory(modified, entries));
+			}
+		} catch (IOException e) {
+			// Torn or corrupt, listed as without index
+			App.warning("Ignoring index", e.getMessage());
+			index.dirs.clear();
+		}
+		return index;
+	}
+
+	/**
+	 * Entries of a target directory, from the index when its modified time is
+	 * unchanged, else listed and indexed.
+	 *
+	 * @return null when the directory does not exist
+	 */
+	Map<String, BasicFileAttributes> list(Path dir, Lister lister) throws IOException {
+		if (this == DISABLED) {
+			return lister.list(dir).entries();
+		}
+		String key = key(dir);
+		Directory indexed = dirs.get(key);
+		if (indexed != null && (sample == 0 || ThreadLocalRandom.current().nextInt(sample) != 0)) {
+			// One round trip instead of a listing
+			BasicFileAttributes attrs = attributes(dir);
+			if (attrs == null) {
+				dirs.remove(key);
+				return null;
+			}
+			if (attrs.isDirectory() && nanos(attrs.lastModifiedTime()) == indexed.modified) {
+				return indexed.snapshot();
+			}
+		}
+
+		Listing listing = lister.list(dir);
+		if (listing.entries() == null) {
+			dirs.remove(key);
+			return null;
+		}
+		Map<String, Entry> entries = new HashMap<>();
+		listing.entries().forEach((name, attrs) -> entries.put(name, Entry.of(attrs)));
+		dirs.put(key, new Directory(nanos(listing.modified()), entries));
+		return listing.entries();
+	}
+
+	/**
+	 * Report of a worker, adds its copied files to the index.
+	 */
+	public IProgressReport report(IProgressReport pr) {
+		return this == DISABLED ? pr : new IndexReport(pr);
+	}
+
+	/**
+	 * Replaces the index file, with the modified time of the directories
+	 * copied to read again. Directories with unfinished copies are dropped, so
+	 * they are listed by the next run.
+	 */
+	public void save() {
+		if (this == DISABLED) {
+			return;
+		}
+		// Channels are closed by I/O of an interrupted thread
+		boolean interrupted = Thread.interrupted();
+		Path file = indexFile(targetDir);
+		Path temp = file.resolveSibling(FILE_NAME + ".tmp");
+		try {
+			refreshTouched();
+
+			// Written aside and moved in place, a crash leaves the old or the new index
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temp))))) {
+				List<Map.Entry<String, Directory>> snapshot = new ArrayList<>(dirs.entrySet());
+				out.writeLong(MAGIC);
+				out.writeInt(snapshot.size());
+				for (Map.Entry<String, Directory> d : snapshot) {
+					Directory dir = d.getValue();
+					synchronized (dir) {
+						out.writeUTF(d.getKey());
+						out.writeLong(dir.modified);
+						out.writeInt(dir.entries.size());
+						for (Map.Entry<String, Entry> e : dir.entries.entrySet()) {
+							out.writeUTF(e.getKey());
+							out.writeLong(e.getValue().size());
+							out.writeLong(e.getValue().modified());
+							out.writeByte(e.getValue().kind());
+						}
+					}
+				}
+			}
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			App.warning("Index not saved", e.getMessage());
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	int size() {
+		return dirs.size();
+	}
+
+	private void refreshTouched() {
+		List<String> touched = dirs.entrySet().stream().filter(e -> e.getValue().touched).map(Map.Entry::getKey)
+				.toList();
+		ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+		try {
+			pool.submit(() -> touched.parallelStream().forEach(this::refresh)).join();
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private void refresh(String key) {
+		Directory dir = dirs.get(key);
+		try {
+			BasicFileAttributes attrs = attributes(targetDir.resolve(key));
+			synchronized (dir) {
+				if (attrs != null && attrs.isDirectory() && dir.copying == 0) {
+					dir.modified = nanos(attrs.lastModifiedTime());
+					dir.touched = false;
+					return;
+				}
+			}
+		} catch (IOException e) {
+			// Listed by the next run
+		}
+		dirs.remove(key);
+	}
+
+	private String key(Path dir) {
+		return targetDir.relativize(dir).toString();
+	}
+
+	/**
+	 * Modified time as kept by the file system, compared equal to the source
+	 * when its nanoseconds were copied.
+	 */
+	private static long nanos(FileTime time) {
+		return time.to(TimeUnit.NANOSECONDS);
+	}
+
+	private static BasicFileAttributes attributes(Path path) throws IOException {
+		try {
+			return Files.readAttributes(path, BasicFileAttributes.class);
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	private Directory directory(Path target) {
+		// Not listed when its parent was missing, modified time is read when saved
+		return dirs.computeIfAbsent(key(target.getParent()), _ -> new Directory(UNKNOWN, new HashMap<>()));
+	}
+
+	private class IndexReport implements IProgressReport {
+
+		private final IProgressReport pr;
+		private long modified = UNKNOWN;
+
+		IndexReport(IProgressReport pr) {
+			this.pr = pr;
+		}
+
+		@Override
+		public void event(IProgressEvent event) throws InterruptedException {
+			switch (event) {
+			case CopyStartEvent e -> {
+				modified = UNKNOWN;
+				directory(e.ct().targetFile().path()).start();
+			}
+			case ModifiedTimeEvent e -> modified = nanos(e.time());
+			case CopyEndEvent e -> copied(e.ct());
+			default -> {
+			}
+			}
+			pr.event(event);
+		}
+
+		private void copied(CopyTask ct) {
+			Directory dir = directory(ct.targetFile().path());
+			if (modified == UNKNOWN) {
+				// Modified time not known, the directory is dropped when saved
+				return;
+			}
+			dir.copied(ct.targetFile().path().getFileName().toString(),
+					new Entry(ct.sourceFile().size(), modified, FILE));
+		}
+
+		@Override
+		public void progress(long position) throws InterruptedException {
+			pr.progress(position);
+		}
+
+		@Override
+		public void resumable(long position) throws InterruptedException {
+			pr.resumable(position);
+		}
+
+		@Override
+		public void abort(AbortEvent event) {
+			pr.abort(event);
+		}
+	}
+}
@@ -0,0 +1,205 @@
+package ct.action.copy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import ct.action.copy.io.IOWrapper;
+import ct.action.copy.io.PageCacheAdvisor;
+import ct.action.copy.model.CopyTask;
+import ct.action.copy.progress.IProgressEvent.RestartEvent;
+import ct.action.copy.progress.IProgressEvent.RestartType;
+import ct.action.copy.progress.IProgressEvent.TruncateEvent;
+import ct.action.copy.progress.IProgressReport;
+import ct.app.Settings.RobustCopySettings;
+import ct.util.Utils;
+
+/**
+ * Keeps up to async ops reads and as many writes in flight at increasing
+ * offsets, so high latency targets get enough requests queued. Chunks are
+ * tracked by offset, after a problem only chunks not acknowledged by the
+ * target are copied again.
+ */
+public class AsyncCopy extends RobustCopy {
+
+	private static record Op(long position, ByteBuffer bb, boolean write, CompletableFuture<Integer> result) {
+	}
+
+	AsyncCopy(RobustCopySettings settings, IOWrapper io, IProgressReport pr) {
+		super(settings, io, pr);
+	}
+
+	@Override
+	int numBuffers() {
+		// Reads and writes in flight
+		return settings.asyncOps() * 2;
+	}
+
+	@Override
+	void copyFile(CopyTask ct, long startByte) throws InterruptedException {
+		// States
+		boolean copyComplete = false;
+		AsynchronousFileChannel inChannel = null;
+		AsynchronousFileChannel outChannel = null;
+		final long size = ct.sourceFile().size();
+		final long start = Math.max(0, startByte - settings.bufferSize() * settings.rollbackBuffersNum());
+		boolean restart = start > 0;
+		PageCacheAdvisor cache = cacheAdvisor(ct);
+		final int chunk = buffers.size();
+
+		// Offsets of chunks not acknowledged by target
+		final NavigableSet<Long> pending = new TreeSet<>();
+		for (long position = start; position < size; position += chunk) {
+			pending.add(position);
+		}
+
+		// Error handling loop
+		while (!copyComplete) {
+			final Deque<Op> inFlight = new ArrayDeque<>();
+			try {
+				// Open files
+				inChannel = io.openAsync(ct.sourceFile().path(), StandardOpenOption.READ);
+				outChannel = io.openAsync(ct.targetFile().path(), StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+
+				// Restart at first chunk not acknowledged
+				checksum.rollback(acknowledged(pending, size));
+				if (restart) {
+					pr.event(new RestartEvent(acknowledged(pending, size), RestartType.copy));
+				}
+
+				// Copy all pending chunks
+				final NavigableSet<Long> toRead = new TreeSet<>(pending);
+				final Deque<ByteBuffer> free = new ArrayDeque<>(buffers.count());
+				for (int i = 0; i < buffers.count(); i++) {
+					free.push(buffers.next());
+				}
+				int reads = 0;
+				while (!pending.isEmpty()) {
+					// Asynchronous channels are not interruptible
+					if (Thread.interrupted()) {
+						throw new InterruptedException();
+					}
+
+					// Queue reads
+					while (reads < settings.asyncOps() && !free.isEmpty() && !toRead.isEmpty()) {
+						long position = toRead.pollFirst();
+						cache.reading(position);
+						int length = (int) Math.min(size - position, chunk);
+						ByteBuffer bb = free.pop().clear().limit(length);
+						inFlight.add(new Op(position, bb, false, io.read(inChannel, bb, position)));
+						reads++;
+					}
+
+					// Complete oldest operation
+					Op op = inFlight.poll();
+					int bytes = await(op);
+					long position = op.position();
+					ByteBuffer bb = op.bb();
+					if (!op.write()) {
+						reads--;
+
+						// Error checking
+						if (bytes == -1) {
+							throw new IOException("Unexpected EOF at: " + Utils.size(position) + ", expected size: "
+									+ Utils.size(size));
+						}
+						if (bytes == 0) {
+							throw new IOException("Unexpected 0 byte read at: " + Utils.size(position));
+						}
+						if (bytes != bb.limit()) {
+							throw new IOException("Unexpected mismatch at: " + Utils.size(position) + ", expected: "
+									+ Utils.size(bb.limit()) + ", read: " + Utils.size(bytes));
+						}
+
+						// Successfully read chunk, reads complete in order, queue write
+						checksum.update(position, bb.flip());
+						inFlight.add(new Op(position, bb, true, io.write(outChannel, bb, position)));
+					} else {
+						// Error checking
+						if (bytes == 0) {
+							throw new IOException("Unexpected 0 byte write at: " + Utils.size(position));
+						}
+						if (bytes != bb.limit()) {
+							throw new IOException("Unexpected mismatch at: " + Utils.size(position) + ", expected: "
+									+ Utils.size(bb.limit()) + ", write: " + Utils.size(bytes));
+						}
+
+						// Successfully written chunk
+						pending.remove(position);
+						free.push(bb);
+						pr.progress(acknowledged(pending, size));
+						cache.written(acknowledged(pending, size));
+					}
+				}
+
+				// Truncate if larger (can be the case during overwrite)
+				if (io.size(outChannel) > size) {
+					pr.event(new TruncateEvent(size));
+					io.truncate(outChannel, size);
+				}
+
+				// Done
+				copyComplete = true;
+			} catch (IOException e) {
+				pr.error(switch (e) {
+				case NoSuchFileException _ -> "Error no such file";
+				default -> "Copy problem";
+				}, e.getMessage());
+				drain(inFlight, pending);
+				rollback(pending, chunk);
+				restart = true;
+				waitBeforeRetry();
+			} finally {
+				// Close channels, ignore problems
+				close(inChannel);
+				close(outChannel);
+				cache.close();
+			}
+		}
+	}
+
+	private int await(Op op) throws IOException, InterruptedException {
+		try {
+			return op.result().get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException ioe) {
+				throw ioe;
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	private void drain(Deque<Op> inFlight, NavigableSet<Long> pending) throws InterruptedException {
+		// Wait for operations still in flight, buffers are reused on retry
+		for (Op op : inFlight) {
+			try {
+				if (await(op) == op.bb().limit() && op.write()) {
+					pending.remove(op.position());
+				}
+			} catch (IOException e) {
+				// Chunk stays pending
+			}
+		}
+	}
+
+	private void rollback(NavigableSet<Long> pending, int chunk) {
+		if (!pending.isEmpty()) {
+			long first = pending.first();
+			for (int i = 1; i <= settings.rollbackBuffersNum() && first - (long) i * chunk >= 0; i++) {
+				pending.add(first - (long) i * chunk);
+			}
+		}
+	}
+
+	private static long acknowledged(NavigableSet<Long> pending, long size) {
+		return pending.isEmpty() ? size : pending.first();
+	}
+}
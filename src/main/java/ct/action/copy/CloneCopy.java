@@ -0,0 +1,91 @@
+package ct.action.copy;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+
+import ct.action.copy.io.IOWrapper;
+import ct.action.copy.model.CopyTask;
+import ct.action.copy.progress.IProgressEvent.TruncateEvent;
+import ct.action.copy.progress.IProgressReport;
+import ct.app.Settings.RobustCopySettings;
+import ct.util.Native.UnsupportedException;
+import ct.util.Utils;
+
+/**
+ * Clones each file with reflink (FICLONE), source and target then share
+ * extents, so no data is copied. Only possible within one copy-on-write volume
+ * (btrfs, XFS), every other copy task is passed to the selected engine.
+ */
+public class CloneCopy extends RobustCopy {
+
+	private final RobustCopy fallback;
+
+	CloneCopy(RobustCopySettings settings, IOWrapper io, IProgressReport pr, RobustCopy fallback) {
+		super(settings, io, pr);
+		this.fallback = fallback;
+	}
+
+	@Override
+	boolean inlineChecksum() {
+		// Clones share extents without reading, also for the fallback
+		return false;
+	}
+
+	@Override
+	void copyFile(CopyTask ct, long startByte) throws InterruptedException {
+		// States
+		boolean copyComplete = false;
+		boolean unsupported = false;
+		int inFd = -1;
+		int outFd = -1;
+
+		// Error handling loop
+		while (!copyComplete && !unsupported) {
+			try {
+				// Open files
+				inFd = io.openFd(ct.sourceFile().path(), false);
+				outFd = io.openFd(ct.targetFile().path(), true);
+
+				// Clone whole file, also when resuming since it costs no I/O
+				io.cloneFd(inFd, outFd);
+
+				// Error checking
+				long size = io.sizeFd(outFd);
+				if (size < ct.sourceFile().size()) {
+					throw new IOException("Unexpected size after clone: " + Utils.size(size) + ", expected size: "
+							+ Utils.size(ct.sourceFile().size()));
+				}
+
+				// Truncate if larger (source grew or target was larger)
+				if (size > ct.sourceFile().size()) {
+					pr.event(new TruncateEvent(ct.sourceFile().size()));
+					io.truncateFd(outFd, ct.sourceFile().size());
+				}
+
+				// Done
+				pr.progress(ct.sourceFile().size());
+				copyComplete = true;
+			} catch (UnsupportedException e) {
+				// Expected across volumes, no warning
+				unsupported = true;
+			} catch (IOException e) {
+				pr.error(switch (e) {
+				case NoSuchFileException _ -> "Error no such file";
+				default -> "Clone problem";
+				}, e.getMessage());
+				waitBeforeRetry();
+			} finally {
+				// Close files, ignore problems
+				closeFd(inFd);
+				closeFd(outFd);
+				inFd = -1;
+				outFd = -1;
+			}
+		}
+
+		// Fallback to selected engine
+		if (unsupported) {
+			copyFallback(fallback, ct, startByte);
+		}
+	}
+}
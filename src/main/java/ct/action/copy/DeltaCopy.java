@@ -0,0 +1,220 @@
+package ct.action.copy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileStore;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import ct.action.copy.io.IOWrapper;
+import ct.action.copy.model.CopyTask;
+import ct.action.copy.progress.IProgressEvent.DeltaEvent;
+import ct.action.copy.progress.IProgressEvent.RestartEvent;
+import ct.action.copy.progress.IProgressEvent.RestartType;
+import ct.action.copy.progress.IProgressEvent.TruncateEvent;
+import ct.action.copy.progress.IProgressReport;
+import ct.app.Settings.RobustCopySettings;
+import ct.util.Utils;
+
+/**
+ * Delta sync of an existing target, compares fixed size blocks of source and
+ * target and rewrites only the differing blocks in place, then truncates.
+ * Target blocks are read asynchronously while the source block is read.
+ * Comparing reads the whole target back, as costly as writing it on a network
+ * file system, without an agent on the server hashing blocks would not read
+ * less. So targets on a network file system, as well as missing or empty ones,
+ * are passed to the selected engine. Windows drive letters mapped to a share
+ * report the file system of the server and are compared.
+ */
+public class DeltaCopy extends RobustCopy {
+
+	private static final Set<String> NETWORK_TYPES = Set.of("cifs", "smb3", "smbfs", "nfs", "nfs4", "afs", "afpfs",
+			"9p", "fuse.sshfs", "davfs", "webdav");
+
+	private final RobustCopy fallback;
+	private final Map<FileStore, Boolean> network = new HashMap<>();
+
+	DeltaCopy(RobustCopySettings settings, IOWrapper io, IProgressReport pr, RobustCopy fallback) {
+		super(settings, io, pr);
+		this.fallback = fallback;
+	}
+
+	@Override
+	int numBuffers() {
+		// Source and target block
+		return 2;
+	}
+
+	@Override
+	boolean inlineChecksum() {
+		// Source blocks are read, same as the fallback for new targets
+		return fallback.inlineChecksum();
+	}
+
+	@Override
+	void copyFile(CopyTask ct, long startByte) throws InterruptedException {
+		// States
+		boolean copyComplete = false;
+		boolean noDelta = false;
+		FileChannel inChannel = null;
+		AsynchronousFileChannel outChannel = null;
+		long bytesCopied = startByte;
+		long bytesWritten = 0;
+		final long size = ct.sourceFile().size();
+		final ByteBuffer source = buffers.next();
+		final ByteBuffer target = buffers.next();
+
+		// Error handling loop
+		while (!copyComplete && !noDelta) {
+			CompletableFuture<Integer> targetRead = null;
+			try {
+				if (network(ct.targetFile().path().getParent())) {
+					noDelta = true;
+					continue;
+				}
+
+				// Open files, a missing target is not created
+				try {
+					outChannel = io.openAsync(ct.targetFile().path(), StandardOpenOption.READ,
+							StandardOpenOption.WRITE);
+				} catch (NoSuchFileException e) {
+					noDelta = true;
+					continue;
+				}
+				final long targetSize = io.size(outChannel);
+				if (targetSize == 0) {
+					noDelta = true;
+					continue;
+				}
+				inChannel = io.open(ct.sourceFile().path(), StandardOpenOption.READ);
+
+				// Restart with Rollback, blocks are compared again
+				bytesCopied = Math.max(0, bytesCopied - settings.bufferSize() * settings.rollbackBuffersNum());
+				checksum.rollback(bytesCopied);
+				if (bytesCopied > 0) {
+					pr.event(new RestartEvent(bytesCopied, RestartType.copy));
+				}
+
+				// Compare all blocks
+				while (bytesCopied < size) {
+					// Asynchronous channels are not interruptible
+					if (Thread.interrupted()) {
+						throw new InterruptedException();
+					}
+
+					// Read target block while reading source block
+					int length = (int) Math.min(size - bytesCopied, source.capacity());
+					targetRead = bytesCopied < targetSize
+							? io.read(outChannel, target.clear().limit(length), bytesCopied)
+							: null;
+					int bytesRead = io.read(inChannel, source.clear().limit(length), bytesCopied);
+					int targetBytes = targetRead == null ? 0 : await(targetRead);
+
+					// Error checking
+					if (bytesRead == -1) {
+						throw new IOException("Unexpected EOF at: " + Utils.size(bytesCopied) + ", expected size: "
+								+ Utils.size(size));
+					}
+					if (bytesRead == 0) {
+						throw new IOException("Unexpected 0 byte read at: " + Utils.size(bytesCopied));
+					}
+
+					// Rewrite differing block
+					checksum.update(bytesCopied, source.flip());
+					if (targetBytes != bytesRead || source.mismatch(target.flip()) != -1) {
+						int bytesWrite = await(io.write(outChannel, source, bytesCopied));
+						if (bytesWrite == 0) {
+							throw new IOException("Unexpected 0 byte write at: " + Utils.size(bytesCopied));
+						}
+						if (bytesRead != bytesWrite) {
+							throw new IOException("Unexpected mismatch at: " + Utils.size(bytesCopied) + ", read: "
+									+ Utils.size(bytesRead) + ", write: " + Utils.size(bytesWrite));
+						}
+						bytesWritten += bytesWrite;
+					}
+
+					// Successfully synced block
+					bytesCopied += bytesRead;
+					pr.progress(bytesCopied);
+				}
+
+				// Truncate if larger
+				if (io.size(outChannel) > size) {
+					pr.event(new TruncateEvent(size));
+					io.truncate(outChannel, size);
+				}
+
+				// Done, rewritten blocks after a problem count as written
+				pr.event(new DeltaEvent(bytesWritten, Math.max(0, size - startByte - bytesWritten)));
+				copyComplete = true;
+			} catch (ClosedByInterruptException e) {
+				throw new InterruptedException();
+			} catch (IOException e) {
+				pr.error(switch (e) {
+				case NoSuchFileException _ -> "Error no such file";
+				default -> "Copy problem";
+				}, e.getMessage());
+				drain(targetRead);
+				waitBeforeRetry();
+			} finally {
+				// Close channels, ignore problems
+				close(inChannel);
+				close(outChannel);
+			}
+		}
+
+		// Nothing to compare with, or reading back costs as much as writing, copy with selected engine
+		if (noDelta) {
+			copyFallback(fallback, ct, startByte);
+		}
+	}
+
+	/**
+	 * Directory is on a network file system, or a Windows share, warned once
+	 * per file system.
+	 */
+	private boolean network(Path dir) throws IOException, InterruptedException {
+		FileStore store = io.getFileStore(dir);
+		Boolean known = network.get(store);
+		if (known == null) {
+			Path root = dir.getRoot();
+			known = NETWORK_TYPES.contains(store.type()) || (root != null && root.toString().startsWith("\\\\"));
+			network.put(store, known);
+			if (known) {
+				pr.warning("Warning network target, overwriting without delta sync", store.toString());
+			}
+		}
+		return known;
+	}
+
+	private static void drain(CompletableFuture<Integer> result) throws InterruptedException {
+		// Target buffer is reused on retry
+		if (result != null) {
+			try {
+				result.get();
+			} catch (ExecutionException e) {
+				// Ignore
+			}
+		}
+	}
+
+	private static int await(CompletableFuture<Integer> result) throws IOException, InterruptedException {
+		try {
+			return result.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException ioe) {
+				throw ioe;
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+}
@@ -7,10 +7,10 @@ import java.nio.channels.FileChannel;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.StandardOpenOption;
 
-import ct.action.copy.io.Buffers;
 import ct.action.copy.io.IOWrapper;
+import ct.action.copy.io.PageCacheAdvisor;
+import ct.action.copy.io.RetentionRing;
 import ct.action.copy.model.CopyTask;
-import ct.action.copy.progress.IProgressEvent.CopyProgressEvent;
 import ct.action.copy.progress.IProgressEvent.RestartEvent;
 import ct.action.copy.progress.IProgressEvent.RestartType;
 import ct.action.copy.progress.IProgressEvent.TruncateEvent;
@@ -20,13 +20,14 @@ import ct.util.Utils;
 
 public class DirectBufferCopy extends RobustCopy {
 
-	private final Buffers buffers;
-
 	DirectBufferCopy(RobustCopySettings settings, IOWrapper io, IProgressReport pr) {
 		super(settings, io, pr);
+	}
 
-		// Allocate Buffer
-		this.buffers = new Buffers(1, settings.bufferSize());
+	@Override
+	int numBuffers() {
+		// Chunk being copied, with verify also the chunks to roll back and one to read back target
+		return verifyRollback() ? 2 + settings.rollbackBuffersNum() : 1;
 	}
 
 	@Override
@@ -36,28 +37,101 @@ public class DirectBufferCopy extends RobustCopy {
 		FileChannel inChannel = null;
 		FileChannel outChannel = null;
 		long bytesCopied = startByte;
-		ByteBuffer bb = buffers.next();
+		PageCacheAdvisor cache = cacheAdvisor(ct);
+		boolean verify = verifyRollback();
+		RetentionRing retention = new RetentionRing(buffers, verify ? 1 + settings.rollbackBuffersNum() : 1);
+		ByteBuffer readBack = verify ? buffers.next() : null;
+		boolean sourceProblem = false;
 
 		// Error handling loop
 		while (!copyComplete) {
 			try {
 				// Open files
+				sourceProblem = true;
 				inChannel = io.open(ct.sourceFile().path(), StandardOpenOption.READ);
-				outChannel = io.open(ct.targetFile().path(), StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+				sourceProblem = false;
+				outChannel = verify
+						? io.open(ct.targetFile().path(), StandardOpenOption.READ, StandardOpenOption.WRITE,
+								StandardOpenOption.CREATE)
+						: io.open(ct.targetFile().path(), StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+
+				// Restart with Rollback, verified at first chunk that did not land, from memory when still retained
+				long rollback = Math.max(0, bytesCopied - settings.bufferSize() * settings.rollbackBuffersNum());
+				if (!retention.covers(rollback)) {
+					retention.clear();
+				}
+				long verified = verify ? rollback : bytesCopied;
+				while (verified < bytesCopied) {
+					// Expected bytes, read source again when not retained
+					ByteBuffer expected = retention.from(verified);
+					if (expected == null) {
+						expected = retention.next();
+						sourceProblem = true;
+						int bytesRead = io.read(inChannel,
+								expected.clear().limit(Math.min(chunkSizer.size(), expected.capacity())), verified);
+						if (bytesRead <= 0) {
+							throw new IOException("Unexpected " + (bytesRead == -1 ? "EOF" : "0 byte read") + " at: "
+									+ Utils.size(verified));
+						}
+						sourceProblem = false;
+						expected.flip();
+						retention.read(verified);
+						retention.retain();
+					}
 
-				// Restart with Rollback
-				bytesCopied = Math.max(0, bytesCopied - settings.bufferSize() * settings.rollbackBuffersNum());
+					// Compare with target
+					int length = (int) Math.min(expected.remaining(), bytesCopied - verified);
+					int bytesRead = io.read(outChannel, readBack.clear().limit(length), verified);
+					if (bytesRead != length
+							|| readBack.flip().mismatch(expected.slice(expected.position(), length)) != -1) {
+						break;
+					}
+					verified += length;
+				}
+				bytesCopied = verify ? verified : rollback;
+				checksum.rollback(bytesCopied);
 				if (bytesCopied > 0) {
-					pr.event(new RestartEvent(bytesCopied, RestartType.copy));
-					io.position(inChannel, bytesCopied);
-					io.position(outChannel, bytesCopied);
+					pr.event(new RestartEvent(bytesCopied,
+							retention.covers(bytesCopied) ? RestartType.write : RestartType.copy));
+				}
+
+				// Rewrite retained chunks
+				ByteBuffer retained;
+				while ((retained = retention.from(bytesCopied)) != null) {
+					int toWrite = retained.remaining();
+					checksum.update(bytesCopied, retained);
+					int bytesWrite = io.write(outChannel, retained, bytesCopied);
+
+					// Error checking
+					if (bytesWrite == 0) {
+						throw new IOException("Unexpected 0 byte write at: " + Utils.size(bytesCopied));
+					}
+					if (bytesWrite != toWrite) {
+						throw new IOException("Unexpected mismatch at: " + Utils.size(bytesCopied) + ", expected: "
+								+ Utils.size(toWrite) + ", write: " + Utils.size(bytesWrite));
+					}
+
+					// Successfully rewritten bytes
+					bytesCopied += bytesWrite;
+					pr.progress(bytesCopied);
+					cache.written(bytesCopied);
 				}
 
 				// Copy all bytes
 				while (bytesCopied < ct.sourceFile().size()) {
-					// Copy chunk
-					int bytesRead = io.read(inChannel, bb.clear());
-					int bytesWrite = io.write(outChannel, bb.flip());
+					// Copy chunk, positional so reopened channels need no repositioning
+					ByteBuffer bb = retention.next();
+					cache.reading(bytesCopied);
+					long started = System.nanoTime();
+					sourceProblem = true;
+					int bytesRead = io.read(inChannel, bb.clear().limit(Math.min(chunkSizer.size(), bb.capacity())),
+							bytesCopied);
+					sourceProblem = bytesRead <= 0;
+					checksum.update(bytesCopied, bb.flip());
+					if (verify) {
+						retention.read(bytesCopied);
+					}
+					int bytesWrite = io.write(outChannel, bb, bytesCopied);
 
 					// Error checking
 					if (bytesRead == -1) {
@@ -75,9 +149,14 @@ public class DirectBufferCopy extends RobustCopy {
 								+ Utils.size(bytesRead) + ", write: " + Utils.size(bytesWrite));
 					}
 
-					// Successfully copied bytes
+					// Successfully copied bytes, retained only once written
+					if (verify) {
+						retention.retain();
+					}
 					bytesCopied += bytesRead;
-					pr.event(new CopyProgressEvent(bytesCopied));
+					chunkSizer.measured(bytesRead, System.nanoTime() - started);
+					pr.progress(bytesCopied);
+					cache.written(bytesCopied);
 				}
 
 				// Truncate if larger (can be the case during overwrite)
@@ -95,11 +174,18 @@ public class DirectBufferCopy extends RobustCopy {
 				case NoSuchFileException _ -> "Error no such file";
 				default -> "Copy problem";
 				}, e.getMessage());
+
+				// Chunks read before a source problem are suspect, read them again
+				if (sourceProblem) {
+					retention.clear();
+				}
+				chunkSizer.retried();
 				waitBeforeRetry();
 			} finally {
 				// Close channels, ignore problems
 				close(inChannel);
 				close(outChannel);
+				cache.close();
 			}
 		}
 	}
@@ -0,0 +1,192 @@
+package ct.action.copy;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+
+import com.sun.nio.file.ExtendedOpenOption;
+
+import ct.action.copy.io.IOWrapper;
+import ct.action.copy.model.CopyTask;
+import ct.action.copy.progress.IProgressEvent.RestartEvent;
+import ct.action.copy.progress.IProgressEvent.RestartType;
+import ct.action.copy.progress.IProgressEvent.TruncateEvent;
+import ct.action.copy.progress.IProgressReport;
+import ct.app.Settings.RobustCopySettings;
+import ct.util.Native.UnsupportedException;
+import ct.util.Utils;
+
+/**
+ * Copies with direct I/O (O_DIRECT), bypassing the page cache, so large copies
+ * do not evict the cache of other services. Offsets, lengths and buffer
+ * addresses are aligned to the file system block size, restarts are rounded
+ * down to a block boundary and the unaligned tail is copied buffered. Falls
+ * back to a direct buffer copy when a file system does not support it.
+ */
+public class DirectIOCopy extends RobustCopy {
+
+	private final DirectBufferCopy fallback;
+
+	// Unsupported on the first file, the rest are copied by the fallback without trying again
+	private boolean supported = true;
+
+	DirectIOCopy(RobustCopySettings settings, IOWrapper io, IProgressReport pr) {
+		super(settings, io, pr);
+		this.fallback = new DirectBufferCopy(settings, io, pr);
+	}
+
+	@Override
+	int numBuffers() {
+		return 1;
+	}
+
+	@Override
+	void copyFile(CopyTask ct, long startByte) throws InterruptedException {
+		if (!supported) {
+			copyFallback(fallback, ct, startByte);
+			return;
+		}
+
+		// States
+		boolean copyComplete = false;
+		boolean unsupported = false;
+		FileChannel inChannel = null;
+		FileChannel outChannel = null;
+		FileChannel tailInChannel = null;
+		FileChannel tailOutChannel = null;
+		long bytesCopied = startByte;
+		final long size = ct.sourceFile().size();
+
+		// Error handling loop
+		while (!copyComplete && !unsupported) {
+			try {
+				// Block size of both file systems
+				long blockSize = Math.max(io.getFileStore(ct.sourceFile().path()).getBlockSize(),
+						io.getFileStore(ct.targetFile().path().getParent()).getBlockSize());
+				ByteBuffer bb = buffer(blockSize);
+
+				// Open files, bypassing page cache, file systems without O_DIRECT fail the probe by errno
+				io.probeDirect(ct.sourceFile().path(), false);
+				io.probeDirect(ct.targetFile().path(), true);
+				try {
+					inChannel = io.open(ct.sourceFile().path(), StandardOpenOption.READ, ExtendedOpenOption.DIRECT);
+					outChannel = io.open(ct.targetFile().path(), StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+							ExtendedOpenOption.DIRECT);
+				} catch (UnsupportedOperationException e) {
+					throw new UnsupportedException(e.getMessage());
+				}
+
+				// Restart with Rollback, at block boundary
+				bytesCopied = Math.max(0, bytesCopied - settings.bufferSize() * settings.rollbackBuffersNum());
+				bytesCopied -= bytesCopied % blockSize;
+				checksum.rollback(bytesCopied);
+				if (bytesCopied > 0) {
+					pr.event(new RestartEvent(bytesCopied, RestartType.copy));
+				}
+
+				// Copy all whole blocks
+				final long alignedSize = size - size % blockSize;
+				final int chunkSize = Math.min(chunkSizer.size(), bb.capacity());
+				final int alignedChunk = (int) Math.max(blockSize, chunkSize - chunkSize % blockSize);
+				while (bytesCopied < alignedSize) {
+					int chunk = (int) Math.min(alignedSize - bytesCopied, alignedChunk);
+					long started = System.nanoTime();
+					int bytesRead = io.read(inChannel, bb.clear().limit(chunk), bytesCopied);
+					checksum.update(bytesCopied, bb.flip());
+					int bytesWrite = io.write(outChannel, bb, bytesCopied);
+					check(bytesRead, bytesWrite, bytesCopied, size);
+
+					// Successfully copied bytes
+					bytesCopied += bytesRead;
+					chunkSizer.measured(bytesRead, System.nanoTime() - started);
+					pr.progress(bytesCopied);
+				}
+
+				// Copy unaligned tail buffered
+				if (bytesCopied < size) {
+					tailInChannel = io.open(ct.sourceFile().path(), StandardOpenOption.READ);
+					tailOutChannel = io.open(ct.targetFile().path(), StandardOpenOption.WRITE);
+					while (bytesCopied < size) {
+						int chunk = (int) Math.min(size - bytesCopied, bb.capacity());
+						int bytesRead = io.read(tailInChannel, bb.clear().limit(chunk), bytesCopied);
+						checksum.update(bytesCopied, bb.flip());
+						int bytesWrite = io.write(tailOutChannel, bb, bytesCopied);
+						check(bytesRead, bytesWrite, bytesCopied, size);
+
+						// Successfully copied bytes
+						bytesCopied += bytesRead;
+						pr.progress(bytesCopied);
+					}
+				}
+
+				// Truncate if larger (can be the case during overwrite)
+				if (io.size(outChannel) > size) {
+					pr.event(new TruncateEvent(size));
+					io.truncate(outChannel, size);
+				}
+
+				// Done
+				copyComplete = true;
+			} catch (UnsupportedException e) {
+				pr.warning("Direct I/O not supported, using direct buffer", e.getMessage());
+				unsupported = true;
+				supported = false;
+			} catch (ClosedByInterruptException e) {
+				throw new InterruptedException();
+			} catch (IOException e) {
+				pr.error(switch (e) {
+				case NoSuchFileException _ -> "Error no such file";
+				default -> "Copy problem";
+				}, e.getMessage());
+				chunkSizer.retried();
+				waitBeforeRetry();
+			} finally {
+				// Close channels, ignore problems
+				close(inChannel);
+				close(outChannel);
+				close(tailInChannel);
+				close(tailOutChannel);
+				tailInChannel = null;
+				tailOutChannel = null;
+			}
+		}
+
+		// Fallback
+		if (unsupported) {
+			copyFallback(fallback, ct, bytesCopied);
+		}
+	}
+
+	private ByteBuffer buffer(long blockSize) throws InterruptedException {
+		// Pooled buffer is page aligned, fits unless blocks are larger
+		ByteBuffer pooled = buffers.current();
+		if (pooled.capacity() >= blockSize && MemorySegment.ofBuffer(pooled).address() % blockSize == 0) {
+			return pooled;
+		}
+
+		// Acquired again aligned to the blocks, within the budget of the pool
+		acquireAligned((int) blockSize);
+		return buffers.current();
+	}
+
+	private static void check(int bytesRead, int bytesWrite, long bytesCopied, long size) throws IOException {
+		if (bytesRead == -1) {
+			throw new IOException("Unexpected EOF at: " + Utils.size(bytesCopied) + ", expected size: "
+					+ Utils.size(size));
+		}
+		if (bytesRead == 0) {
+			throw new IOException("Unexpected 0 byte read at: " + Utils.size(bytesCopied));
+		}
+		if (bytesWrite == 0) {
+			throw new IOException("Unexpected 0 byte write at: " + Utils.size(bytesCopied));
+		}
+		if (bytesRead != bytesWrite) {
+			throw new IOException("Unexpected mismatch at: " + Utils.size(bytesCopied) + ", read: "
+					+ Utils.size(bytesRead) + ", write: " + Utils.size(bytesWrite));
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package ct.action.copy;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+
+import ct.action.copy.io.IOWrapper;
+import ct.action.copy.io.PageCacheAdvisor;
+import ct.action.copy.model.CopyTask;
+import ct.action.copy.progress.IProgressEvent.RestartEvent;
+import ct.action.copy.progress.IProgressEvent.RestartType;
+import ct.action.copy.progress.IProgressEvent.TruncateEvent;
+import ct.action.copy.progress.IProgressReport;
+import ct.app.Settings.RobustCopySettings;
+import ct.util.Utils;
+
+/**
+ * Maps the source in windows of buffer size and writes directly from the
+ * mapped segment, so no bytes pass through a copy buffer. Each window is
+ * unmapped as soon as it is written by closing its confined arena.
+ */
+public class MappedCopy extends RobustCopy {
+
+	MappedCopy(RobustCopySettings settings, IOWrapper io, IProgressReport pr) {
+		super(settings, io, pr);
+	}
+
+	@Override
+	void copyFile(CopyTask ct, long startByte) throws InterruptedException {
+		// States
+		boolean copyComplete = false;
+		FileChannel inChannel = null;
+		FileChannel outChannel = null;
+		long bytesCopied = startByte;
+		PageCacheAdvisor cache = cacheAdvisor(ct);
+
+		// Error handling loop
+		while (!copyComplete) {
+			try {
+				// Open files
+				inChannel = io.open(ct.sourceFile().path(), StandardOpenOption.READ);
+				outChannel = io.open(ct.targetFile().path(), StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+
+				// Restart with Rollback
+				bytesCopied = Math.max(0, bytesCopied - settings.bufferSize() * settings.rollbackBuffersNum());
+				checksum.rollback(bytesCopied);
+				if (bytesCopied > 0) {
+					pr.event(new RestartEvent(bytesCopied, RestartType.write));
+				}
+
+				// Copy all bytes
+				while (bytesCopied < ct.sourceFile().size()) {
+					// Copy window
+					long windowSize = Math.min(ct.sourceFile().size() - bytesCopied, chunkSizer.size());
+					cache.reading(bytesCopied);
+					long started = System.nanoTime();
+					int bytesWrite;
+					try (Arena arena = Arena.ofConfined()) {
+						MemorySegment window = io.map(inChannel, MapMode.READ_ONLY, bytesCopied, windowSize, arena);
+						ByteBuffer data = window.asByteBuffer();
+						checksum.update(bytesCopied, data);
+						bytesWrite = io.write(outChannel, data, bytesCopied);
+					} catch (InternalError e) {
+						// Fault accessing mapped memory, source was truncated or is unreachable
+						throw new IOException("Mapped read fault at: " + Utils.size(bytesCopied), e);
+					}
+
+					// Error checking
+					if (bytesWrite == 0) {
+						throw new IOException("Unexpected 0 byte write at: " + Utils.size(bytesCopied));
+					}
+					if (windowSize != bytesWrite) {
+						throw new IOException("Unexpected mismatch at: " + Utils.size(bytesCopied) + ", window: "
+								+ Utils.size(windowSize) + ", write: " + Utils.size(bytesWrite));
+					}
+
+					// Successfully copied bytes
+					bytesCopied += bytesWrite;
+					chunkSizer.measured(bytesWrite, System.nanoTime() - started);
+					pr.progress(bytesCopied);
+					cache.written(bytesCopied);
+				}
+
+				// Truncate if larger (can be the case during overwrite)
+				if (io.size(outChannel) > ct.sourceFile().size()) {
+					pr.event(new TruncateEvent(ct.sourceFile().size()));
+					io.truncate(outChannel, ct.sourceFile().size());
+				}
+
+				// Done
+				copyComplete = true;
+			} catch (ClosedByInterruptException e) {
+				throw new InterruptedException();
+			} catch (IOException e) {
+				pr.error(switch (e) {
+				case NoSuchFileException _ -> "Error no such file";
+				default -> "Copy problem";
+				}, e.getMessage());
+				chunkSizer.retried();
+				waitBeforeRetry();
+			} finally {
+				// Close channels, ignore problems
+				close(inChannel);
+				close(outChannel);
+				cache.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,396 @@
+package ct.action.copy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import ct.action.copy.io.IOWrapper;
+import ct.action.copy.model.CopyTask;
+import ct.action.copy.progress.IProgressEvent.RestartEvent;
+import ct.action.copy.progress.IProgressEvent.RestartType;
+import ct.action.copy.progress.IProgressEvent.TruncateEvent;
+import ct.action.copy.progress.IProgressReport;
+import ct.app.App;
+import ct.app.Settings.RobustCopySettings;
+import ct.util.Utils;
+
+/**
+ * Splits a file into byte ranges that are copied concurrently, each range on
+ * its own pair of channels and with its own retry loop. Range progress is kept
+ * in a small sidecar file next to the target, so a resumed copy only sends the
+ * ranges that did not complete. Without a valid sidecar the target length says
+ * nothing, ranges land out of order, so the copy starts over.
+ */
+public class MultiStreamCopy extends RobustCopy {
+
+	private static final long PROGRESS_INTERVAL_MS = 250;
+	private static final long SAVE_INTERVAL_MS = 1000;
+	private static final String RANGES_SUFFIX = ".ct-ranges";
+	private static final String TEMP_SUFFIX = ".tmp";
+	// "CTRANGE1"
+	private static final long RANGES_MAGIC = 0x435452414E474531L;
+	private static final int RANGES_HEADER = Long.BYTES * 2 + Integer.BYTES;
+	private static final int RANGE_ENTRY = Long.BYTES * 3;
+	private static final int MAX_RANGES = 1024;
+
+	private static class Range {
+		final long start;
+		final long end;
+		volatile long position;
+
+		Range(long start, long end, long position) {
+			this.start = start;
+			this.end = end;
+			this.position = position;
+		}
+
+		boolean isComplete() {
+			return position >= end;
+		}
+	}
+
+	MultiStreamCopy(RobustCopySettings settings, IOWrapper io, IProgressReport pr) {
+		super(settings, io, pr);
+	}
+
+	@Override
+	int numBuffers() {
+		// One buffer per stream
+		return settings.streams();
+	}
+
+	@Override
+	boolean inlineChecksum() {
+		// Streams read ranges out of order
+		return false;
+	}
+
+	@Override
+	void copyFile(CopyTask ct, long startByte) throws InterruptedException {
+		final long size = ct.sourceFile().size();
+		final Path rangesFile = rangesFile(ct.targetFile().path());
+
+		// Resume from saved ranges, bytes below the target length may be holes without them
+		List<Range> ranges = startByte > 0 ? loadRanges(rangesFile, size) : null;
+		if (ranges == null) {
+			if (startByte > 0) {
+				pr.warning("Warning no valid range file, copying from start", ct.toString());
+				pr.event(new RestartEvent(0, RestartType.copy));
+			}
+			ranges = split(size);
+		}
+
+		// Make sure ranges are persisted before any data lands out of order
+		List<Range> pending = ranges.stream().filter(r -> !r.isComplete()).toList();
+		if (!pending.isEmpty()) {
+			storeRanges(rangesFile, size, ranges);
+			copyRanges(ct, ranges, pending, rangesFile);
+		}
+
+		// Truncate if larger (can be the case during overwrite)
+		truncate(ct);
+
+		// Ranges are no longer needed
+		try {
+			io.deleteIfExists(rangesFile);
+		} catch (IOException e) {
+			pr.warning("Failed to remove range file", e.getMessage());
+		}
+	}
+
+	private void copyRanges(CopyTask ct, List<Range> ranges, List<Range> pending, Path rangesFile)
+			throws InterruptedException {
+		final Queue<Range> queue = new ConcurrentLinkedQueue<>(pending);
+		final int numStreams = Math.min(settings.streams(), pending.size());
+		final CountDownLatch latch = new CountDownLatch(numStreams);
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		final List<Thread> threads = new ArrayList<>();
+		final String name = Thread.currentThread().getName();
+
+		// Start streams, each takes ranges from queue until empty
+		for (int i = 0; i < numStreams; i++) {
+			final ByteBuffer bb = buffers.next();
+			final int streamId = i + 1;
+			threads.add(App.thread().name(name + "Stream" + streamId).start(() -> {
+				try {
+					Range range;
+					while ((range = queue.poll()) != null) {
+						copyRange(ct, range, bb, streamId);
+					}
+				} catch (InterruptedException _) {
+					// Stopped by copyRanges
+				} catch (RuntimeException | Error e) {
+					failure.compareAndSet(null, e);
+				} finally {
+					latch.countDown();
+				}
+			}));
+		}
+
+		// Report progress and persist ranges until all streams are done
+		try {
+			long reported = -1;
+			long saved = System.currentTimeMillis();
+			boolean done = false;
+			while (!done) {
+				done = latch.await(PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+				if (failure.get() != null) {
+					stop(threads);
+					throw new RuntimeException("Stream failed: " + ct, failure.get());
+				}
+
+				long copied = copied(ranges);
+				if (copied != reported) {
+					pr.resumable(resumable(ranges));
+					pr.progress(copied);
+					reported = copied;
+				}
+
+				if (!done && saved + SAVE_INTERVAL_MS <= System.currentTimeMillis()) {
+					saveRanges(rangesFile, ct.sourceFile().size(), ranges);
+					saved = System.currentTimeMillis();
+				}
+			}
+		} catch (InterruptedException e) {
+			stop(threads);
+			saveRanges(rangesFile, ct.sourceFile().size(), ranges);
+			throw e;
+		}
+	}
+
+	private void copyRange(CopyTask ct, Range range, ByteBuffer bb, int streamId) throws InterruptedException {
+		// States
+		FileChannel inChannel = null;
+		FileChannel outChannel = null;
+		long bytesCopied = range.position;
+
+		// Error handling loop
+		while (!range.isComplete()) {
+			try {
+				// Open files
+				inChannel = io.open(ct.sourceFile().path(), StandardOpenOption.READ);
+				outChannel = io.open(ct.targetFile().path(), StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+
+				// Restart with Rollback, never past start of range
+				bytesCopied = Math.max(range.start,
+						bytesCopied - settings.bufferSize() * settings.rollbackBuffersNum());
+				range.position = bytesCopied;
+				if (bytesCopied > range.start) {
+					pr.event(new RestartEvent(bytesCopied, RestartType.copy));
+				}
+
+				// Copy all bytes of range
+				while (bytesCopied < range.end) {
+					// Copy chunk, never past end of range
+					bb.clear().limit((int) Math.min(bb.capacity(), range.end - bytesCopied));
+					int bytesRead = io.read(inChannel, bb, bytesCopied);
+					int bytesWrite = io.write(outChannel, bb.flip(), bytesCopied);
+
+					// Error checking
+					if (bytesRead == -1) {
+						throw new IOException("Unexpected EOF at: " + Utils.size(bytesCopied) + ", expected size: "
+								+ Utils.size(ct.sourceFile().size()));
+					}
+					if (bytesRead == 0) {
+						throw new IOException("Unexpected 0 byte read at: " + Utils.size(bytesCopied));
+					}
+					if (bytesWrite == 0) {
+						throw new IOException("Unexpected 0 byte write at: " + Utils.size(bytesCopied));
+					}
+					if (bytesRead != bytesWrite) {
+						throw new IOException("Unexpected mismatch at: " + Utils.size(bytesCopied) + ", read: "
+								+ Utils.size(bytesRead) + ", write: " + Utils.size(bytesWrite));
+					}
+
+					// Successfully copied bytes
+					bytesCopied += bytesRead;
+					range.position = bytesCopied;
+				}
+			} catch (ClosedByInterruptException e) {
+				throw new InterruptedException();
+			} catch (IOException e) {
+				pr.error(switch (e) {
+				case NoSuchFileException _ -> "Error no such file (stream " + streamId + ")";
+				default -> "Copy problem (stream " + streamId + ")";
+				}, e.getMessage());
+				waitBeforeRetry();
+			} finally {
+				// Close channels, ignore problems
+				close(inChannel);
+				close(outChannel);
+			}
+		}
+	}
+
+	private void truncate(CopyTask ct) throws InterruptedException {
+		boolean truncateComplete = false;
+		FileChannel outChannel = null;
+
+		while (!truncateComplete) {
+			try {
+				outChannel = io.open(ct.targetFile().path(), StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+				if (io.size(outChannel) > ct.sourceFile().size()) {
+					pr.event(new TruncateEvent(ct.sourceFile().size()));
+					io.truncate(outChannel, ct.sourceFile().size());
+				}
+				truncateComplete = true;
+			} catch (ClosedByInterruptException e) {
+				throw new InterruptedException();
+			} catch (IOException e) {
+				pr.error("Truncate problem", e.getMessage());
+				waitBeforeRetry();
+			} finally {
+				close(outChannel);
+			}
+		}
+	}
+
+	private List<Range> split(long size) {
+		List<Range> ranges = new ArrayList<>();
+		if (size > 0) {
+			// Align ranges to buffer size, so all but the last range read full buffers
+			long rangeSize = Math.ceilDiv(Math.ceilDiv(size, settings.streams()), settings.bufferSize())
+					* settings.bufferSize();
+			for (long start = 0; start < size; start += rangeSize) {
+				ranges.add(new Range(start, Math.min(size, start + rangeSize), start));
+			}
+		}
+		return ranges;
+	}
+
+	private static long copied(List<Range> ranges) {
+		long copied = ranges.isEmpty() ? 0 : ranges.getFirst().start;
+		for (Range r : ranges) {
+			copied += r.position - r.start;
+		}
+		return copied;
+	}
+
+	private static long resumable(List<Range> ranges) {
+		// Ranges are contiguous, target is complete up to the first incomplete one
+		for (Range r : ranges) {
+			if (!r.isComplete()) {
+				return r.position;
+			}
+		}
+		return ranges.isEmpty() ? 0 : ranges.getLast().end;
+	}
+
+	private static void stop(List<Thread> threads) {
+		threads.forEach(Thread::interrupt);
+		for (Thread t : threads) {
+			try {
+				t.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	static Path rangesFile(Path target) {
+		return target.resolveSibling(target.getFileName() + RANGES_SUFFIX);
+	}
+
+	private void storeRanges(Path rangesFile, long size, List<Range> ranges) throws InterruptedException {
+		while (!saveRanges(rangesFile, size, ranges)) {
+			waitBeforeRetry();
+		}
+	}
+
+	private boolean saveRanges(Path rangesFile, long size, List<Range> ranges) throws InterruptedException {
+		ByteBuffer bb = ByteBuffer.allocate(RANGES_HEADER + RANGE_ENTRY * ranges.size());
+		bb.putLong(RANGES_MAGIC).putLong(size).putInt(ranges.size());
+		for (Range r : ranges) {
+			bb.putLong(r.start).putLong(r.end).putLong(r.position);
+		}
+		bb.flip();
+
+		// Written aside and moved in place, a crash leaves the old or the new ranges
+		Path temp = rangesFile.resolveSibling(rangesFile.getFileName() + TEMP_SUFFIX);
+		FileChannel channel = null;
+		try {
+			channel = io.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			while (bb.hasRemaining()) {
+				if (io.write(channel, bb) <= 0) {
+					throw new IOException("Unexpected 0 byte write at: " + Utils.size(bb.position()));
+				}
+			}
+			io.force(channel, false);
+			close(channel);
+			io.move(temp, rangesFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			return true;
+		} catch (ClosedByInterruptException e) {
+			throw new InterruptedException();
+		} catch (IOException e) {
+			pr.error("Range file problem", e.getMessage());
+			return false;
+		} finally {
+			close(channel);
+		}
+	}
+
+	private List<Range> loadRanges(Path rangesFile, long size) throws InterruptedException {
+		FileChannel channel = null;
+		try {
+			channel = io.open(rangesFile, StandardOpenOption.READ);
+			long fileSize = io.size(channel);
+			if (fileSize < RANGES_HEADER || fileSize > RANGES_HEADER + (long) RANGE_ENTRY * MAX_RANGES) {
+				return null;
+			}
+
+			ByteBuffer bb = ByteBuffer.allocate((int) fileSize);
+			while (bb.hasRemaining()) {
+				if (io.read(channel, bb) <= 0) {
+					return null;
+				}
+			}
+			bb.flip();
+
+			// Validate
+			if (bb.getLong() != RANGES_MAGIC || bb.getLong() != size) {
+				return null;
+			}
+			int num = bb.getInt();
+			if (fileSize != RANGES_HEADER + (long) RANGE_ENTRY * num) {
+				return null;
+			}
+
+			// Ranges must be contiguous up to end of file
+			List<Range> ranges = new ArrayList<>();
+			long next = -1;
+			for (int i = 0; i < num; i++) {
+				Range r = new Range(bb.getLong(), bb.getLong(), bb.getLong());
+				if ((next != -1 && r.start != next) || r.start > r.position || r.position > r.end) {
+					return null;
+				}
+				next = r.end;
+				ranges.add(r);
+			}
+			return next == size ? ranges : null;
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (ClosedByInterruptException e) {
+			throw new InterruptedException();
+		} catch (IOException e) {
+			pr.warning("Ignoring range file", e.getMessage());
+			return null;
+		} finally {
+			close(channel);
+		}
+	}
+}
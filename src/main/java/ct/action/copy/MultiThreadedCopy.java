@@ -4,14 +4,17 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedByInterruptException;
 import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 
 import ct.action.copy.io.Buffers;
 import ct.action.copy.io.IOWrapper;
+import ct.action.copy.io.PageCacheAdvisor;
 import ct.action.copy.model.CopyTask;
-import ct.action.copy.progress.IProgressEvent.CopyProgressEvent;
 import ct.action.copy.progress.IProgressEvent.RestartEvent;
 import ct.action.copy.progress.IProgressEvent.RestartType;
 import ct.action.copy.progress.IProgressEvent.TruncateEvent;
@@ -20,143 +23,282 @@ import ct.app.App;
 import ct.app.Settings.RobustCopySettings;
 import ct.util.Utils;
 
+/**
+ * Pipelined copy, a reader thread keeps up to pipeline depth buffers ahead of
+ * the writer (current thread), so read and write latency overlap. The reader
+ * fills all free buffers with one scatter read. The writer owns all restarts,
+ * on any problem it rolls back and starts a new generation, which makes the
+ * reader reopen the source at the new position and the writer discard
+ * everything read in older generations.
+ */
 public class MultiThreadedCopy extends RobustCopy {
 
-	private static final int MT_BUFFERS_IN_FLIGHT = 2;
-	private static final int MT_BUFFERS_QUEUE = 2;
+	private static record Chunk(int generation, long position, ByteBuffer bb, Throwable failure) {
 
-	private final Buffers buffers;
+		static Chunk readProblem(int generation) {
+			return new Chunk(generation, -1, null, null);
+		}
 
-	MultiThreadedCopy(RobustCopySettings settings, IOWrapper io, IProgressReport pr) {
-		super(settings, io, pr);
+		static Chunk failure(Throwable failure) {
+			return new Chunk(-1, -1, null, failure);
+		}
+	}
 
-		// Allocate Buffer
-		this.buffers = new Buffers(MT_BUFFERS_IN_FLIGHT + MT_BUFFERS_QUEUE, settings.bufferSize());
+	private static class ReadProblemException extends IOException {
+		private static final long serialVersionUID = 1L;
 	}
 
-	@Override
-	void copyFile(CopyTask ct, long startByte) throws InterruptedException {
-		// Thread sync
-		final BlockingQueue<ByteBuffer> syncQueue = new ArrayBlockingQueue<>(MT_BUFFERS_QUEUE);
+	private static class Pipeline {
+		final BlockingQueue<ByteBuffer> free;
+		final BlockingQueue<Chunk> filled;
 
-		// Read Thread
-		App.thread().name(Thread.currentThread().getName() + "Reader").start(() -> {
-			try {
-				// Read States
-				boolean readComplete = false;
-				FileChannel inChannel = null;
-				long bytesRead = startByte;
-
-				// Read error handling loop
-				while (!readComplete) {
-					try {
-						// Open source file
-						inChannel = io.open(ct.sourceFile().path(), StandardOpenOption.READ);
-
-						// Read restart
-						if (bytesRead > 0) {
-							pr.event(new RestartEvent(bytesRead, RestartType.read));
-							io.position(inChannel, bytesRead);
-						}
+		volatile int generation = 0;
+		volatile long restartPos;
+		volatile boolean finished = false;
 
-						// Read all bytes
-						while (bytesRead < ct.sourceFile().size()) {
-							// Read bytes
-							int read = io.read(inChannel, buffers.current().clear());
+		Pipeline(Buffers buffers, long restartPos) {
+			this.free = new ArrayBlockingQueue<>(buffers.count());
+			// Room for all buffers plus one problem report, reader never blocks on put
+			this.filled = new ArrayBlockingQueue<>(buffers.count() + 1);
+			this.restartPos = restartPos;
+			for (int i = 0; i < buffers.count(); i++) {
+				free.add(buffers.next());
+			}
+		}
 
-							// Error checking
-							if (read == -1) {
-								throw new IOException("Unexpected EOF at: " + Utils.size(bytesRead)
-										+ ", expected size: " + Utils.size(ct.sourceFile().size()));
-							}
-							if (read == 0) {
-								throw new IOException("Unexpected 0 byte read at: " + Utils.size(bytesRead));
-							}
+		synchronized void restart(long position) {
+			restartPos = position;
+			generation++;
+			notifyAll();
+		}
 
-							// Successfully read bytes
-							syncQueue.put(buffers.next());
-							bytesRead += read;
-						}
+		synchronized void finish() {
+			finished = true;
+			notifyAll();
+		}
 
-						// Read done
-						readComplete = true;
-					} catch (IOException e) {
-						pr.error("Read problem", e.getMessage());
-						waitBeforeRetry();
-					} finally {
-						close(inChannel);
-					}
-				}
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
-				throw new AssertionError("Interrupt not implemented yet", e);
+		synchronized void awaitRestart(int gen) throws InterruptedException {
+			while (generation == gen && !finished) {
+				wait();
 			}
-		});
+		}
 
-		// Write in current thread
+		void recycle(Chunk chunk) {
+			if (chunk.bb() != null) {
+				free.add(chunk.bb());
+			}
+		}
+	}
+
+	MultiThreadedCopy(RobustCopySettings settings, IOWrapper io, IProgressReport pr) {
+		super(settings, io, pr);
+	}
+
+	@Override
+	int numBuffers() {
+		// Read ahead buffers plus the one being written
+		return settings.pipelineDepth() + 1;
+	}
 
+	@Override
+	void copyFile(CopyTask ct, long startByte) throws InterruptedException {
 		// Write states
 		boolean writeComplete = false;
 		FileChannel outChannel = null;
-		long bytesWritten = startByte;
-		boolean takeBuffer = true;
-		ByteBuffer bb = null;
+		long bytesWritten = rollback(startByte);
+		PageCacheAdvisor cache = cacheAdvisor(ct);
 
-		// Write error handling loop
-		while (!writeComplete) {
-			try {
-				// Open target file
-				outChannel = io.open(ct.targetFile().path(), StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+		// Read in separate thread
+		final Pipeline p = new Pipeline(buffers, bytesWritten);
+		final Thread reader = App.thread().name(Thread.currentThread().getName() + "Reader")
+				.start(() -> readAll(ct, p));
 
-				// Write restart
-				if (bytesWritten > 0) {
-					pr.event(new RestartEvent(bytesWritten, RestartType.write));
-					io.position(outChannel, bytesWritten);
-				}
+		// Write in current thread
+		try {
+			// Write error handling loop
+			while (!writeComplete) {
+				Chunk chunk = null;
+				try {
+					// Open target file
+					outChannel = io.open(ct.targetFile().path(), StandardOpenOption.WRITE, StandardOpenOption.CREATE);
 
-				// Write all bytes
-				while (bytesWritten < ct.sourceFile().size()) {
-					// Take buffer from read thread
-					if (takeBuffer) {
-						bb = syncQueue.take().flip();
-						takeBuffer = false;
+					// Write restart
+					if (bytesWritten > 0) {
+						pr.event(new RestartEvent(bytesWritten, RestartType.write));
 					}
 
-					// Write bytes
-					int write = io.write(outChannel, bb.rewind());
+					// Write all bytes
+					while (bytesWritten < ct.sourceFile().size()) {
+						// Take buffer from read thread
+						chunk = p.filled.take();
+						if (chunk.failure() != null) {
+							throw new RuntimeException("Reader failed: " + ct, chunk.failure());
+						}
+						if (chunk.generation() != p.generation) {
+							// Read before restart, discard
+							p.recycle(chunk);
+							chunk = null;
+							continue;
+						}
+						if (chunk.bb() == null) {
+							throw new ReadProblemException();
+						}
+
+						// Write bytes
+						int write = io.write(outChannel, chunk.bb(), chunk.position());
 
-					// Error checking
-					if (write == 0) {
-						throw new IOException("Unexpected 0 byte write at: " + Utils.size(bytesWritten));
+						// Error checking
+						if (write == 0) {
+							throw new IOException("Unexpected 0 byte write at: " + Utils.size(bytesWritten));
+						}
+						if (chunk.bb().limit() != write) {
+							throw new IOException("Unexpected mismatch at: " + Utils.size(bytesWritten) + ", read: "
+									+ Utils.size(chunk.bb().limit()) + ", write: " + Utils.size(write));
+						}
+
+						// Successfully written bytes
+						bytesWritten += write;
+						p.recycle(chunk);
+						chunk = null;
+						pr.progress(bytesWritten);
+						cache.written(bytesWritten);
 					}
-					if (bb.limit() != write) {
-						throw new IOException("Unexpected mismatch at: " + Utils.size(bytesWritten) + ", read: "
-								+ Utils.size(bb.limit()) + ", write: " + Utils.size(write));
+
+					// Truncate if larger (can be the case during overwrite)
+					if (io.size(outChannel) > ct.sourceFile().size()) {
+						pr.event(new TruncateEvent(ct.sourceFile().size()));
+						io.truncate(outChannel, ct.sourceFile().size());
 					}
 
-					// Successfully written bytes
-					bytesWritten += write;
-					takeBuffer = true;
-					pr.event(new CopyProgressEvent(bytesWritten));
+					// Write done
+					writeComplete = true;
+				} catch (ReadProblemException e) {
+					// Already reported by reader
+					waitBeforeRetry();
+					bytesWritten = rollback(bytesWritten);
+					p.restart(bytesWritten);
+				} catch (ClosedByInterruptException e) {
+					throw new InterruptedException();
+				} catch (IOException e) {
+					pr.error(switch (e) {
+					case NoSuchFileException _ -> "Error no such file";
+					default -> "Write problem";
+					}, e.getMessage());
+					waitBeforeRetry();
+					bytesWritten = rollback(bytesWritten);
+					p.restart(bytesWritten);
+				} finally {
+					close(outChannel);
+					cache.close();
+					if (chunk != null) {
+						p.recycle(chunk);
+					}
 				}
+			}
+		} finally {
+			// Stop reader, it is either waiting for a restart or has to be cancelled
+			p.finish();
+			if (!writeComplete) {
+				reader.interrupt();
+			}
+			try {
+				reader.join();
+			} catch (InterruptedException e) {
+				reader.interrupt();
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
 
-				// Truncate if larger (can be the case during overwrite)
-				if (io.size(outChannel) > ct.sourceFile().size()) {
-					pr.event(new TruncateEvent(ct.sourceFile().size()));
-					io.truncate(outChannel, ct.sourceFile().size());
+	private void readAll(CopyTask ct, Pipeline p) {
+		PageCacheAdvisor cache = cacheAdvisor(ct);
+		try {
+			// Read error handling loop
+			while (!p.finished) {
+				FileChannel inChannel = null;
+				ByteBuffer[] bbs = null;
+				final int gen = p.generation;
+				long bytesRead = p.restartPos;
+				try {
+					// Open source file
+					inChannel = io.open(ct.sourceFile().path(), StandardOpenOption.READ);
+
+					// Read restart
+					checksum.rollback(bytesRead);
+					if (bytesRead > 0) {
+						pr.event(new RestartEvent(bytesRead, RestartType.read));
+						io.position(inChannel, bytesRead);
+					}
+
+					// Read all bytes, unless writer restarts
+					while (bytesRead < ct.sourceFile().size() && gen == p.generation) {
+						// Fill all free buffers with one read
+						bbs = takeFree(p);
+						cache.reading(bytesRead);
+						long read = io.read(inChannel, bbs);
+
+						// Error checking
+						if (read == -1) {
+							throw new IOException("Unexpected EOF at: " + Utils.size(bytesRead) + ", expected size: "
+									+ Utils.size(ct.sourceFile().size()));
+						}
+						if (read == 0) {
+							throw new IOException("Unexpected 0 byte read at: " + Utils.size(bytesRead));
+						}
+
+						// Successfully read bytes, pass filled buffers to writer and keep the rest
+						for (int i = 0; i < bbs.length; i++) {
+							int filled = bbs[i].position();
+							if (filled > 0) {
+								checksum.update(bytesRead, bbs[i].flip());
+								p.filled.put(new Chunk(gen, bytesRead, bbs[i], null));
+								bytesRead += filled;
+							} else {
+								p.free.add(bbs[i]);
+							}
+							bbs[i] = null;
+						}
+						bbs = null;
+					}
+				} catch (ClosedByInterruptException e) {
+					throw new InterruptedException();
+				} catch (IOException e) {
+					pr.error(switch (e) {
+					case NoSuchFileException _ -> "Error no such file";
+					default -> "Read problem";
+					}, e.getMessage());
+					p.filled.put(Chunk.readProblem(gen));
+				} finally {
+					close(inChannel);
+					cache.close();
+					if (bbs != null) {
+						for (ByteBuffer bb : bbs) {
+							if (bb != null) {
+								p.free.add(bb);
+							}
+						}
+					}
 				}
 
-				// Write done
-				writeComplete = true;
-			} catch (ClosedByInterruptException | InterruptedException e) {
-				Thread.currentThread().interrupt();
-				throw new AssertionError("Interrupt not implemented yet", e);
-			} catch (IOException e) {
-				pr.error("Write problem", e.getMessage());
-				waitBeforeRetry();
-			} finally {
-				close(outChannel);
+				// Wait until writer restarts or is done
+				p.awaitRestart(gen);
 			}
+		} catch (InterruptedException e) {
+			// Cancelled by writer
+		} catch (RuntimeException | Error e) {
+			p.filled.offer(Chunk.failure(e));
 		}
 	}
+
+	private static ByteBuffer[] takeFree(Pipeline p) throws InterruptedException {
+		List<ByteBuffer> bbs = new ArrayList<>();
+		bbs.add(p.free.take());
+		p.free.drainTo(bbs);
+		bbs.forEach(ByteBuffer::clear);
+		return bbs.toArray(ByteBuffer[]::new);
+	}
+
+	private long rollback(long position) {
+		return Math.max(0, position - settings.bufferSize() * settings.rollbackBuffersNum());
+	}
 }
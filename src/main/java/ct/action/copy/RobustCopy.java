@@ -1,44 +1,106 @@
 package ct.action.copy;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.ClosedByInterruptException;
 import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.FileTime;
 import java.time.Duration;
 
+import ct.action.copy.io.BufferPool;
+import ct.action.copy.io.Buffers;
+import ct.action.copy.io.ChunkSizer;
 import ct.action.copy.io.IOWrapper;
+import ct.action.copy.io.PageCacheAdvisor;
+import ct.action.copy.io.StreamChecksum;
 import ct.action.copy.model.CopyTask;
+import ct.action.copy.model.FileRecord;
+import ct.action.copy.model.PartialFile;
+import ct.action.copy.progress.IProgressEvent.AbortEvent;
+import ct.action.copy.progress.IProgressEvent.ChecksumEvent;
 import ct.action.copy.progress.IProgressEvent.CopyEndEvent;
 import ct.action.copy.progress.IProgressEvent.CopyStartEvent;
 import ct.action.copy.progress.IProgressEvent.ModifiedTimeEvent;
+import ct.action.copy.progress.IProgressEvent.RestartEvent;
+import ct.action.copy.progress.IProgressEvent.RestartType;
 import ct.action.copy.progress.IProgressEvent.ResumeEvent;
 import ct.action.copy.progress.IProgressEvent.WaitEndEvent;
 import ct.action.copy.progress.IProgressEvent.WaitStartEvent;
 import ct.action.copy.progress.IProgressReport;
-import ct.app.Settings;
+import ct.app.App;
+import ct.app.Settings.Checksum;
+import ct.app.Settings.CopyMode;
 import ct.app.Settings.RobustCopySettings;
+import ct.util.Native.UnsupportedException;
 import ct.util.Utils;
 
 public abstract class RobustCopy {
 
 	public static RobustCopy create(RobustCopySettings settings, IOWrapper io, IProgressReport pr) {
-		if (Settings.devMode) {
+		RobustCopy engine = createEngine(settings, io, pr);
+		// Delta sync decided per copy task, selected engine copies new targets
+		if (settings.delta()) {
+			engine = new DeltaCopy(settings, io, pr, engine);
+		}
+		// Clone decided per copy task, selected engine is the fallback
+		return settings.reflink() ? new CloneCopy(settings, io, pr, engine) : engine;
+	}
+
+	private static RobustCopy createEngine(RobustCopySettings settings, IOWrapper io, IProgressReport pr) {
+		if (settings.streams() > 1) {
+			return new MultiStreamCopy(settings, io, pr);
+		}
+		if (settings.pipelineDepth() > 0) {
 			return new MultiThreadedCopy(settings, io, pr);
 		}
-		if (settings.zeroCopy()) {
-			return new ZeroCopy(settings, io, pr);
+		if (settings.asyncOps() > 0) {
+			return new AsyncCopy(settings, io, pr);
 		}
-		return new DirectBufferCopy(settings, io, pr);
+		return switch (settings.mode()) {
+		case DIRECT_BUFFER -> new DirectBufferCopy(settings, io, pr);
+		case ZERO_COPY -> new ZeroCopy(settings, io, pr);
+		case MAPPED -> new MappedCopy(settings, io, pr);
+		case SERVER_SIDE -> new ServerSideCopy(settings, io, pr);
+		case DIRECT_IO -> new DirectIOCopy(settings, io, pr);
+		case SPARSE -> new SparseCopy(settings, io, pr);
+		};
 	}
 
+	private static final StreamChecksum NO_CHECKSUM = new StreamChecksum(Checksum.NONE);
+	private static final int CHECKSUM_BUFFER_SIZE = 1 << 20;
+
+	// Copies of a partial file before it is left for the next run
+	private static final int PARTIAL_ATTEMPTS = 3;
+
+	// Coarsest modified time of common file systems, FAT rounds to 2 seconds
+	private static final long MODIFIED_TIME_PRECISION_MS = 2000;
+
 	protected final RobustCopySettings settings;
 	protected final IOWrapper io;
 	protected final IProgressReport pr;
+	protected final ChunkSizer chunkSizer;
+	private final BufferPool pool;
+
+	// Buffers of the file being copied
+	protected Buffers buffers;
+
+	// Checksum of the file being copied, updated by engines that read the source
+	protected StreamChecksum checksum = NO_CHECKSUM;
 
 	RobustCopy(RobustCopySettings settings, IOWrapper io, IProgressReport pr) {
 		this.settings = settings;
 		this.io = io;
 		this.pr = pr;
+
+		// Adaptive chunk size when a floor below buffer size is set
+		int minChunk = settings.minBufferSize() > 0 ? settings.minBufferSize() : settings.bufferSize();
+		this.chunkSizer = new ChunkSizer(minChunk, settings.bufferSize());
+		this.pool = BufferPool.shared(settings.bufferBudget());
 	}
 
 	public void copy(CopyTask ct) throws InterruptedException {
@@ -59,26 +121,352 @@ public abstract class RobustCopy {
 			}
 		}
 
-		// Copy file
-		copyFile(ct, startByte);
+		if (settings.partial()) {
+			if (!copyPartial(ct, startByte)) {
+				// Not renamed into place, copied again by the next run
+				pr.abort(new AbortEvent(ct));
+				return;
+			}
+		} else {
+			copyContent(ct, startByte);
 
-		// Set last modified time to same as source
-		FileTime lastModifiedTime = getLastModifiedTime(ct.sourceFile().path());
-		pr.event(new ModifiedTimeEvent(lastModifiedTime));
-		setLastModifiedTime(ct.targetFile().path(), lastModifiedTime);
+			// Set last modified time to same as source
+			FileTime lastModifiedTime = getLastModifiedTime(ct.sourceFile().path());
+			pr.event(new ModifiedTimeEvent(lastModifiedTime));
+			setLastModifiedTime(ct.targetFile().path(), lastModifiedTime);
+		}
 
 		// End
 		pr.event(new CopyEndEvent(ct));
 	}
 
+	/**
+	 * Copies the content and reports its checksum, if enabled.
+	 *
+	 * @return digest of the source, null without checksum
+	 */
+	private String copyContent(CopyTask ct, long startByte) throws InterruptedException {
+		// Reserve disk space
+		preallocate(ct);
+
+		// Copy file
+		StreamChecksum streamChecksum = new StreamChecksum(settings.checksum());
+		if (!streamChecksum.enabled()) {
+			copyBuffered(ct, startByte);
+			return null;
+		} else if (inlineChecksum()) {
+			copyChecksummed(ct, startByte, streamChecksum);
+		} else {
+			copyAndHash(ct, startByte, streamChecksum);
+		}
+
+		// Checksum of source, rest that was not hashed while copying
+		hashFile(ct.sourceFile().path(), streamChecksum, ct.sourceFile().size());
+		String digest = streamChecksum.hex();
+		pr.event(new ChecksumEvent(streamChecksum.algorithm(), digest));
+		return digest;
+	}
+
+	/**
+	 * Copies into a hidden partial file next to the target, renamed into place
+	 * once size, modified time and checksum are confirmed, so the target is
+	 * never seen half written.
+	 *
+	 * @return false when the partial file is still mismatching after
+	 *         {@value #PARTIAL_ATTEMPTS} copies, it is kept and not renamed
+	 */
+	private boolean copyPartial(CopyTask ct, long startByte) throws InterruptedException {
+		FileTime lastModifiedTime = getLastModifiedTime(ct.sourceFile().path());
+		Path partial = PartialFile.path(ct.targetFile().path(), ct.sourceFile().size(), lastModifiedTime);
+		CopyTask work = new CopyTask(ct.sourceFile(), FileRecord.targetFile(partial));
+
+		// Source changed since analysis, its partial file is another one
+		if (startByte > 0 && !exists(partial)) {
+			pr.warning("Warning partial file missing", partial.getFileName().toString());
+			pr.event(new RestartEvent(0, RestartType.copy));
+			startByte = 0;
+		}
+
+		for (int attempt = 1;; attempt++) {
+			String digest = copyContent(work, startByte);
+			pr.event(new ModifiedTimeEvent(lastModifiedTime));
+			setLastModifiedTime(partial, lastModifiedTime);
+			if (verifyPartial(work, lastModifiedTime, digest)) {
+				break;
+			}
+			if (attempt == PARTIAL_ATTEMPTS) {
+				pr.error("Partial file kept, mismatching after " + PARTIAL_ATTEMPTS + " copies",
+						partial.getFileName().toString());
+				return false;
+			}
+			pr.event(new RestartEvent(0, RestartType.copy));
+			startByte = 0;
+		}
+
+		// Atomic rename, replaces an existing target
+		boolean success = false;
+		while (!success) {
+			try {
+				io.move(partial, ct.targetFile().path(), StandardCopyOption.ATOMIC_MOVE,
+						StandardCopyOption.REPLACE_EXISTING);
+				success = true;
+			} catch (IOException e) {
+				pr.error("Error renaming partial file", e.getMessage());
+				waitBeforeRetry();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Partial file has the size of the source, and its digest, if enabled. A
+	 * modified time the target file system could not keep is reported, not
+	 * copied again, as another copy would not change it.
+	 */
+	private boolean verifyPartial(CopyTask work, FileTime lastModifiedTime, String digest)
+			throws InterruptedException {
+		Path partial = work.targetFile().path();
+		long size = work.sourceFile().size();
+		while (true) {
+			FileChannel channel = null;
+			try {
+				channel = io.open(partial, StandardOpenOption.READ);
+				long partialSize = io.size(channel);
+				FileTime partialTime = io.getLastModifiedTime(partial);
+				if (partialSize != size) {
+					pr.error("Partial file mismatch", Utils.size(partialSize) + ", expected: " + Utils.size(size));
+					return false;
+				}
+
+				// Rounded by the target file system, e.g. to 100 ns, 1 us or 2 s
+				if (Math.abs(partialTime.toMillis() - lastModifiedTime.toMillis()) >= MODIFIED_TIME_PRECISION_MS) {
+					pr.warning("Warning partial file modified time", partialTime + ", expected: " + lastModifiedTime);
+				}
+				break;
+			} catch (ClosedByInterruptException e) {
+				throw new InterruptedException();
+			} catch (IOException e) {
+				pr.error("Error verifying partial file", e.getMessage());
+				waitBeforeRetry();
+			} finally {
+				close(channel);
+			}
+		}
+		if (digest == null) {
+			return true;
+		}
+
+		// Target bytes read back, what landed is what was read
+		StreamChecksum partialChecksum = new StreamChecksum(settings.checksum());
+		hashFile(partial, partialChecksum, size);
+		String partialDigest = partialChecksum.hex();
+		if (!partialDigest.equals(digest)) {
+			pr.error("Partial file checksum mismatch", partialDigest + ", expected: " + digest);
+			return false;
+		}
+		return true;
+	}
+
+	private boolean exists(Path path) throws InterruptedException {
+		while (true) {
+			try {
+				io.getLastModifiedTime(path);
+				return true;
+			} catch (NoSuchFileException e) {
+				return false;
+			} catch (IOException e) {
+				pr.error("Error getting modified time", e.getMessage());
+				waitBeforeRetry();
+			}
+		}
+	}
+
 	abstract void copyFile(CopyTask ct, long startByte) throws InterruptedException;
 
+	/**
+	 * Rolled back bytes are compared with the target, only the ones that did not
+	 * land are rewritten.
+	 */
+	boolean verifyRollback() {
+		return settings.verifyRollback() && settings.rollbackBuffersNum() > 0;
+	}
+
+	/**
+	 * Buffers needed while copying one file.
+	 */
+	int numBuffers() {
+		return 0;
+	}
+
+	/**
+	 * Source bytes pass through the buffers of the copy loop, which update the
+	 * checksum.
+	 */
+	boolean inlineChecksum() {
+		return true;
+	}
+
+	/**
+	 * Copy file with buffers from the shared pool, held only while copying.
+	 */
+	void copyBuffered(CopyTask ct, long startByte) throws InterruptedException {
+		// No larger than the bytes to copy, small files take little of the budget
+		long remaining = ct.sourceFile().size() - startByte;
+		int size = (int) Math.min(settings.bufferSize(), Math.max(Buffers.ALIGNMENT, remaining));
+		int minSize = Math.min(size,
+				settings.minBufferSize() > 0 ? settings.minBufferSize() : BufferPool.MIN_BUFFER_SIZE);
+		buffers = pool.acquire(numBuffers(), size, minSize);
+		try {
+			copyFile(ct, startByte);
+		} finally {
+			releaseBuffers();
+		}
+	}
+
+	/**
+	 * Copy file with a fallback engine, which continues the checksum.
+	 */
+	protected void copyFallback(RobustCopy fallback, CopyTask ct, long startByte) throws InterruptedException {
+		releaseBuffers();
+		fallback.checksum = checksum;
+		try {
+			fallback.copyBuffered(ct, startByte);
+		} finally {
+			fallback.checksum = NO_CHECKSUM;
+		}
+	}
+
+	/**
+	 * Replaces the buffers with ones aligned to alignment bytes and at least that
+	 * large, from the shared pool.
+	 */
+	protected void acquireAligned(int alignment) throws InterruptedException {
+		int size = Math.max(buffers.size(), alignment);
+		int num = buffers.count();
+		releaseBuffers();
+		buffers = pool.acquire(num, size, alignment, alignment);
+	}
+
+	/**
+	 * Release buffers early, before handing over to a fallback that acquires its
+	 * own.
+	 */
+	protected void releaseBuffers() {
+		if (buffers != null) {
+			buffers.release();
+			buffers = null;
+		}
+	}
+
+	/**
+	 * Compares target with source chunk by chunk from position up to end, with
+	 * two buffers. Returns start of the first chunk that did not land, end when
+	 * all did.
+	 */
+	protected long landed(FileChannel in, FileChannel out, long position, long end) throws IOException {
+		if (position >= end) {
+			return end;
+		}
+		ByteBuffer source = buffers.next();
+		ByteBuffer target = buffers.next();
+		while (position < end) {
+			int length = (int) Math.min(end - position, Math.min(chunkSizer.size(), source.capacity()));
+			int bytesRead = io.read(in, source.clear().limit(length), position);
+			if (bytesRead <= 0) {
+				return position;
+			}
+			int bytesReadBack = io.read(out, target.clear().limit(bytesRead), position);
+			if (bytesReadBack != bytesRead || source.flip().mismatch(target.flip()) != -1) {
+				return position;
+			}
+			position += bytesRead;
+		}
+		return position;
+	}
+
+	private void copyChecksummed(CopyTask ct, long startByte, StreamChecksum streamChecksum)
+			throws InterruptedException {
+		// Resumed part is not read by the copy loop
+		hashFile(ct.sourceFile().path(), streamChecksum, startByte);
+		checksum = streamChecksum;
+		try {
+			copyBuffered(ct, startByte);
+		} finally {
+			checksum = NO_CHECKSUM;
+		}
+	}
+
+	private void copyAndHash(CopyTask ct, long startByte, StreamChecksum streamChecksum)
+			throws InterruptedException {
+		// Bytes never reach the copy loop, parallel read only pass over the source
+		Thread pass = App.thread().name(Thread.currentThread().getName() + "Checksum").start(() -> {
+			FileChannel inChannel = null;
+			try {
+				inChannel = io.open(ct.sourceFile().path(), StandardOpenOption.READ);
+				hash(inChannel, streamChecksum, ct.sourceFile().size());
+			} catch (IOException e) {
+				// Progress is reported by the copying thread only, it hashes the rest
+			} finally {
+				close(inChannel);
+			}
+		});
+		try {
+			copyBuffered(ct, startByte);
+			pass.join();
+		} finally {
+			pass.interrupt();
+		}
+	}
+
+	/**
+	 * Hashes file from the checksum position up to end.
+	 */
+	private void hashFile(Path path, StreamChecksum streamChecksum, long end) throws InterruptedException {
+		while (streamChecksum.position() < end) {
+			FileChannel inChannel = null;
+			try {
+				inChannel = io.open(path, StandardOpenOption.READ);
+				hash(inChannel, streamChecksum, end);
+			} catch (ClosedByInterruptException e) {
+				throw new InterruptedException();
+			} catch (IOException e) {
+				pr.error(switch (e) {
+				case NoSuchFileException _ -> "Error no such file";
+				default -> "Checksum problem";
+				}, e.getMessage());
+				waitBeforeRetry();
+			} finally {
+				close(inChannel);
+			}
+		}
+	}
+
+	private void hash(FileChannel in, StreamChecksum streamChecksum, long end) throws IOException {
+		ByteBuffer bb = ByteBuffer.allocate((int) Math.min(settings.bufferSize(), CHECKSUM_BUFFER_SIZE));
+		while (streamChecksum.position() < end) {
+			long position = streamChecksum.position();
+			int bytesRead = io.read(in, bb.clear().limit((int) Math.min(end - position, bb.capacity())), position);
+			if (bytesRead == -1) {
+				throw new IOException("Unexpected EOF at: " + Utils.size(position) + ", expected size: "
+						+ Utils.size(end));
+			}
+			if (bytesRead == 0) {
+				throw new IOException("Unexpected 0 byte read at: " + Utils.size(position));
+			}
+			streamChecksum.update(position, bb.flip());
+		}
+	}
+
 	protected void waitBeforeRetry() throws InterruptedException {
 		pr.event(new WaitStartEvent(settings.waitBeforeRetryTimeSec()));
 		Thread.sleep(Duration.ofSeconds(settings.waitBeforeRetryTimeSec()));
 		pr.event(new WaitEndEvent());
 	}
 
+	protected PageCacheAdvisor cacheAdvisor(CopyTask ct) {
+		return new PageCacheAdvisor(io, settings.cacheWindow(), ct.sourceFile().path(), ct.targetFile().path());
+	}
+
 	protected void close(FileChannel channel) {
 		if (channel != null) {
 			try {
@@ -91,6 +479,28 @@ public abstract class RobustCopy {
 		}
 	}
 
+	protected void close(AsynchronousFileChannel channel) {
+		if (channel != null) {
+			try {
+				if (channel.isOpen()) {
+					io.close(channel);
+				}
+			} catch (IOException e) {
+				// Ignore
+			}
+		}
+	}
+
+	protected void closeFd(int fd) {
+		if (fd >= 0) {
+			try {
+				io.closeFd(fd);
+			} catch (IOException e) {
+				// Ignore
+			}
+		}
+	}
+
 	private void createDirectories(Path path) throws InterruptedException {
 		Path success = null;
 		while (success == null) {
@@ -103,6 +513,31 @@ public abstract class RobustCopy {
 		}
 	}
 
+	private void preallocate(CopyTask ct) throws InterruptedException {
+		// Not for sparse targets or clones, they share or skip extents
+		if (!settings.preallocate() || settings.reflink() || settings.mode() == CopyMode.SPARSE
+				|| ct.sourceFile().size() == 0) {
+			return;
+		}
+		boolean success = false;
+		while (!success) {
+			int fd = -1;
+			try {
+				fd = io.openFd(ct.targetFile().path(), true);
+				io.allocateFd(fd, ct.sourceFile().size());
+				success = true;
+			} catch (UnsupportedException e) {
+				// Optional, copy allocates while writing
+				success = true;
+			} catch (IOException e) {
+				pr.error("Error reserving disk space", e.getMessage());
+				waitBeforeRetry();
+			} finally {
+				closeFd(fd);
+			}
+		}
+	}
+
 	private FileTime getLastModifiedTime(Path path) throws InterruptedException {
 		FileTime fileTime = null;
 		while (fileTime == null) {
@@ -0,0 +1,133 @@
+package ct.action.copy;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+
+import ct.action.copy.io.IOWrapper;
+import ct.action.copy.io.PageCacheAdvisor;
+import ct.action.copy.model.CopyTask;
+import ct.action.copy.progress.IProgressEvent.RestartEvent;
+import ct.action.copy.progress.IProgressEvent.RestartType;
+import ct.action.copy.progress.IProgressEvent.TruncateEvent;
+import ct.action.copy.progress.IProgressReport;
+import ct.app.Settings.RobustCopySettings;
+import ct.util.Native.UnsupportedException;
+import ct.util.Utils;
+
+/**
+ * Copies with copy_file_range at explicit offsets, in chunks of buffer size,
+ * so no bytes pass through this process. When source and target are on the
+ * same network share the file server does the copy. Falls back to a direct
+ * buffer copy when the platform, kernel or file system does not support it.
+ */
+public class ServerSideCopy extends RobustCopy {
+
+	private final DirectBufferCopy fallback;
+
+	// Unsupported on the first file, the rest are copied by the fallback without trying again
+	private boolean supported = true;
+
+	ServerSideCopy(RobustCopySettings settings, IOWrapper io, IProgressReport pr) {
+		super(settings, io, pr);
+		this.fallback = new DirectBufferCopy(settings, io, pr);
+	}
+
+	@Override
+	boolean inlineChecksum() {
+		// Bytes are copied in the kernel or by the file server
+		return false;
+	}
+
+	@Override
+	void copyFile(CopyTask ct, long startByte) throws InterruptedException {
+		if (!supported) {
+			copyFallback(fallback, ct, startByte);
+			return;
+		}
+
+		// States
+		boolean copyComplete = false;
+		boolean unsupported = false;
+		int inFd = -1;
+		int outFd = -1;
+		long bytesCopied = startByte;
+		PageCacheAdvisor cache = cacheAdvisor(ct);
+
+		// Error handling loop
+		while (!copyComplete && !unsupported) {
+			try {
+				// Open files
+				inFd = io.openFd(ct.sourceFile().path(), false);
+				outFd = io.openFd(ct.targetFile().path(), true);
+
+				// Restart with Rollback
+				bytesCopied = Math.max(0, bytesCopied - settings.bufferSize() * settings.rollbackBuffersNum());
+				if (bytesCopied > 0) {
+					pr.event(new RestartEvent(bytesCopied, RestartType.copy));
+				}
+
+				// Copy all bytes
+				while (bytesCopied < ct.sourceFile().size()) {
+					// Native call is not interruptible
+					if (Thread.interrupted()) {
+						throw new InterruptedException();
+					}
+
+					// Copy chunk
+					long toCopy = Math.min(ct.sourceFile().size() - bytesCopied, chunkSizer.size());
+					cache.reading(bytesCopied);
+					long started = System.nanoTime();
+					long chunkCopied = io.copyFileRange(inFd, bytesCopied, outFd, bytesCopied, toCopy);
+
+					// Error checking, copy of less bytes than requested is allowed
+					if (chunkCopied == 0) {
+						throw new IOException("Unexpected 0 byte copy at: " + Utils.size(bytesCopied)
+								+ ", expected size: " + Utils.size(ct.sourceFile().size()));
+					}
+					if (chunkCopied > toCopy) {
+						throw new IOException("Unexpected mismatch at: " + Utils.size(bytesCopied) + ", expected: "
+								+ Utils.size(toCopy) + ", actual: " + Utils.size(chunkCopied));
+					}
+
+					// Successfully copied bytes
+					bytesCopied += chunkCopied;
+					chunkSizer.measured(chunkCopied, System.nanoTime() - started);
+					pr.progress(bytesCopied);
+					cache.written(bytesCopied);
+				}
+
+				// Truncate if larger (can be the case during overwrite)
+				if (io.sizeFd(outFd) > ct.sourceFile().size()) {
+					pr.event(new TruncateEvent(ct.sourceFile().size()));
+					io.truncateFd(outFd, ct.sourceFile().size());
+				}
+
+				// Done
+				copyComplete = true;
+			} catch (UnsupportedException e) {
+				pr.warning("Server-side copy not supported, using direct buffer", e.getMessage());
+				unsupported = true;
+				supported = false;
+			} catch (IOException e) {
+				pr.error(switch (e) {
+				case NoSuchFileException _ -> "Error no such file";
+				default -> "Copy problem";
+				}, e.getMessage());
+				chunkSizer.retried();
+				waitBeforeRetry();
+			} finally {
+				// Close files, ignore problems
+				closeFd(inFd);
+				closeFd(outFd);
+				cache.close();
+				inFd = -1;
+				outFd = -1;
+			}
+		}
+
+		// Fallback
+		if (unsupported) {
+			copyFallback(fallback, ct, bytesCopied);
+		}
+	}
+}
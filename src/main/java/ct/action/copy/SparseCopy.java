@@ -0,0 +1,176 @@
+package ct.action.copy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+
+import ct.action.copy.io.IOWrapper;
+import ct.action.copy.io.PageCacheAdvisor;
+import ct.action.copy.model.CopyTask;
+import ct.action.copy.progress.IProgressEvent.RestartEvent;
+import ct.action.copy.progress.IProgressEvent.RestartType;
+import ct.action.copy.progress.IProgressEvent.TruncateEvent;
+import ct.action.copy.progress.IProgressReport;
+import ct.app.Settings.RobustCopySettings;
+import ct.util.Native.UnsupportedException;
+import ct.util.Utils;
+
+/**
+ * Copies only the data extents of sparse files, found with lseek SEEK_DATA and
+ * SEEK_HOLE. The target is cut at the restart position and extended to the
+ * source size once the last extent is written, so holes stay unallocated and
+ * an interrupted target is never longer than the bytes copied, which resume
+ * trusts. Progress is reported in logical bytes, skipped holes count as
+ * copied. Falls back to a direct buffer copy when the platform or file system
+ * does not support it.
+ */
+public class SparseCopy extends RobustCopy {
+
+	private final DirectBufferCopy fallback;
+
+	// Unsupported on the first file, the rest are copied by the fallback without trying again
+	private boolean supported = true;
+
+	SparseCopy(RobustCopySettings settings, IOWrapper io, IProgressReport pr) {
+		super(settings, io, pr);
+		this.fallback = new DirectBufferCopy(settings, io, pr);
+	}
+
+	@Override
+	int numBuffers() {
+		return 1;
+	}
+
+	@Override
+	void copyFile(CopyTask ct, long startByte) throws InterruptedException {
+		if (!supported) {
+			copyFallback(fallback, ct, startByte);
+			return;
+		}
+
+		// States
+		boolean copyComplete = false;
+		boolean unsupported = false;
+		int inFd = -1;
+		int outFd = -1;
+		FileChannel inChannel = null;
+		FileChannel outChannel = null;
+		long bytesCopied = startByte;
+		PageCacheAdvisor cache = cacheAdvisor(ct);
+		final long size = ct.sourceFile().size();
+		ByteBuffer bb = buffers.next();
+
+		// Error handling loop
+		while (!copyComplete && !unsupported) {
+			try {
+				// Open files, descriptors for extents and length, channels for data
+				inFd = io.openFd(ct.sourceFile().path(), false);
+				outFd = io.openFd(ct.targetFile().path(), true);
+				inChannel = io.open(ct.sourceFile().path(), StandardOpenOption.READ);
+				outChannel = io.open(ct.targetFile().path(), StandardOpenOption.WRITE);
+
+				// Restart with Rollback
+				bytesCopied = Math.max(0, bytesCopied - settings.bufferSize() * settings.rollbackBuffersNum());
+				checksum.rollback(bytesCopied);
+				if (bytesCopied > 0) {
+					pr.event(new RestartEvent(bytesCopied, RestartType.copy));
+				}
+
+				// Drop old bytes after restart, extents written beyond the end leave holes
+				if (io.sizeFd(outFd) > size) {
+					pr.event(new TruncateEvent(size));
+				}
+				io.truncateFd(outFd, bytesCopied);
+
+				// Copy all data extents
+				while (bytesCopied < size) {
+					// Skip hole
+					long dataStart = io.seekData(inFd, bytesCopied);
+					if (dataStart == -1 || dataStart >= size) {
+						checksum.zeros(bytesCopied, size - bytesCopied);
+						bytesCopied = size;
+						pr.progress(bytesCopied);
+						break;
+					}
+					if (dataStart > bytesCopied) {
+						checksum.zeros(bytesCopied, dataStart - bytesCopied);
+						bytesCopied = dataStart;
+						pr.progress(bytesCopied);
+					}
+					long dataEnd = io.seekHole(inFd, dataStart);
+					dataEnd = dataEnd == -1 ? size : Math.min(dataEnd, size);
+
+					// Copy extent
+					while (bytesCopied < dataEnd) {
+						int chunk = (int) Math.min(dataEnd - bytesCopied, Math.min(chunkSizer.size(), bb.capacity()));
+						cache.reading(bytesCopied);
+						long started = System.nanoTime();
+						int bytesRead = io.read(inChannel, bb.clear().limit(chunk), bytesCopied);
+						checksum.update(bytesCopied, bb.flip());
+						int bytesWrite = io.write(outChannel, bb, bytesCopied);
+
+						// Error checking
+						if (bytesRead == -1) {
+							throw new IOException("Unexpected EOF at: " + Utils.size(bytesCopied) + ", expected size: "
+									+ Utils.size(size));
+						}
+						if (bytesRead == 0) {
+							throw new IOException("Unexpected 0 byte read at: " + Utils.size(bytesCopied));
+						}
+						if (bytesWrite == 0) {
+							throw new IOException("Unexpected 0 byte write at: " + Utils.size(bytesCopied));
+						}
+						if (bytesRead != bytesWrite) {
+							throw new IOException("Unexpected mismatch at: " + Utils.size(bytesCopied) + ", read: "
+									+ Utils.size(bytesRead) + ", write: " + Utils.size(bytesWrite));
+						}
+
+						// Successfully copied bytes
+						bytesCopied += bytesRead;
+						chunkSizer.measured(bytesRead, System.nanoTime() - started);
+						pr.progress(bytesCopied);
+						cache.written(bytesCopied);
+					}
+				}
+
+				// Extend, rest of target is one hole
+				io.truncateFd(outFd, size);
+
+				// Done
+				copyComplete = true;
+			} catch (UnsupportedException e) {
+				pr.warning("Sparse copy not supported, using direct buffer", e.getMessage());
+				unsupported = true;
+				supported = false;
+			} catch (ClosedByInterruptException e) {
+				throw new InterruptedException();
+			} catch (IOException e) {
+				pr.error(switch (e) {
+				case NoSuchFileException _ -> "Error no such file";
+				default -> "Copy problem";
+				}, e.getMessage());
+				chunkSizer.retried();
+				waitBeforeRetry();
+			} finally {
+				// Close files, ignore problems
+				close(inChannel);
+				close(outChannel);
+				inChannel = null;
+				outChannel = null;
+				closeFd(inFd);
+				closeFd(outFd);
+				cache.close();
+				inFd = -1;
+				outFd = -1;
+			}
+		}
+
+		// Fallback
+		if (unsupported) {
+			copyFallback(fallback, ct, bytesCopied);
+		}
+	}
+}
@@ -7,8 +7,8 @@ import java.nio.file.NoSuchFileException;
 import java.nio.file.StandardOpenOption;
 
 import ct.action.copy.io.IOWrapper;
+import ct.action.copy.io.PageCacheAdvisor;
 import ct.action.copy.model.CopyTask;
-import ct.action.copy.progress.IProgressEvent.CopyProgressEvent;
 import ct.action.copy.progress.IProgressEvent.RestartEvent;
 import ct.action.copy.progress.IProgressEvent.RestartType;
 import ct.action.copy.progress.IProgressEvent.TruncateEvent;
@@ -22,6 +22,18 @@ public class ZeroCopy extends RobustCopy {
 		super(settings, io, pr);
 	}
 
+	@Override
+	int numBuffers() {
+		// Source and target chunk to verify the rolled back bytes
+		return verifyRollback() ? 2 : 0;
+	}
+
+	@Override
+	boolean inlineChecksum() {
+		// Bytes are transferred by the kernel, source is hashed in a parallel pass
+		return false;
+	}
+
 	@Override
 	void copyFile(CopyTask ct, long startByte) throws InterruptedException {
 		// States
@@ -29,16 +41,21 @@ public class ZeroCopy extends RobustCopy {
 		FileChannel inChannel = null;
 		FileChannel outChannel = null;
 		long bytesCopied = startByte;
+		PageCacheAdvisor cache = cacheAdvisor(ct);
 
 		// Error handling loop
 		while (!copyComplete) {
 			try {
 				// Open files
 				inChannel = io.open(ct.sourceFile().path(), StandardOpenOption.READ);
-				outChannel = io.open(ct.targetFile().path(), StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+				outChannel = verifyRollback()
+						? io.open(ct.targetFile().path(), StandardOpenOption.READ, StandardOpenOption.WRITE,
+								StandardOpenOption.CREATE)
+						: io.open(ct.targetFile().path(), StandardOpenOption.WRITE, StandardOpenOption.CREATE);
 
-				// Restart with Rollback
-				bytesCopied = Math.max(0, bytesCopied - settings.bufferSize() * settings.rollbackBuffersNum());
+				// Restart with Rollback, verified at first chunk that did not land
+				long rollback = Math.max(0, bytesCopied - settings.bufferSize() * settings.rollbackBuffersNum());
+				bytesCopied = verifyRollback() ? landed(inChannel, outChannel, rollback, bytesCopied) : rollback;
 				if (bytesCopied > 0) {
 					pr.event(new RestartEvent(bytesCopied, RestartType.write));
 					io.position(outChannel, bytesCopied);
@@ -47,7 +64,9 @@ public class ZeroCopy extends RobustCopy {
 				// Copy all bytes
 				while (bytesCopied < ct.sourceFile().size()) {
 					// Copy chunk
-					long toTransfer = Math.min(ct.sourceFile().size() - bytesCopied, settings.bufferSize());
+					long toTransfer = Math.min(ct.sourceFile().size() - bytesCopied, chunkSizer.size());
+					cache.reading(bytesCopied);
+					long started = System.nanoTime();
 					long bytesTransfered = io.transferTo(inChannel, bytesCopied, toTransfer, outChannel);
 
 					// Error checking
@@ -61,7 +80,9 @@ public class ZeroCopy extends RobustCopy {
 
 					// Successfully copied bytes
 					bytesCopied += bytesTransfered;
-					pr.event(new CopyProgressEvent(bytesCopied));
+					chunkSizer.measured(bytesTransfered, System.nanoTime() - started);
+					pr.progress(bytesCopied);
+					cache.written(bytesCopied);
 				}
 
 				// Truncate if larger (can be the case during overwrite)
@@ -79,11 +100,13 @@ public class ZeroCopy extends RobustCopy {
 				case NoSuchFileException _ -> "Error no such file";
 				default -> "Copy problem";
 				}, e.getMessage());
+				chunkSizer.retried();
 				waitBeforeRetry();
 			} finally {
 				// Close channels, ignore problems
 				close(inChannel);
 				close(outChannel);
+				cache.close();
 			}
 		}
 	}
@@ -0,0 +1,86 @@
+package ct.action.copy.io;
+
+/**
+ * Process wide budget for copy buffers of all workers. A request that does
+ * not fit gets smaller buffers, down to a minimum size, and blocks until
+ * other workers release theirs when not even that fits. Each of the workers
+ * gets at most its share of the budget, so the first does not starve the rest.
+ */
+public class BufferPool {
+
+	public static final int MIN_BUFFER_SIZE = 1 << 16;
+
+	private static BufferPool shared;
+
+	private final long budget;
+
+	private int workers = 1;
+	private long reserved = 0;
+
+	public BufferPool(long budget) {
+		if (budget <= 0) {
+			throw new IllegalArgumentException("Invalid buffer budget: " + budget);
+		}
+		this.budget = budget;
+	}
+
+	/**
+	 * Pool of this process, replaced only when the budget changes.
+	 */
+	public static synchronized BufferPool shared(long budget) {
+		if (shared == null || shared.budget != budget) {
+			shared = new BufferPool(budget);
+		}
+		return shared;
+	}
+
+	/**
+	 * Workers copying at the same time.
+	 */
+	public synchronized BufferPool workers(int workers) {
+		this.workers = Math.max(1, workers);
+		return this;
+	}
+
+	/**
+	 * Num buffers of size bytes, or smaller but at least minSize bytes when the
+	 * budget is short.
+	 */
+	public Buffers acquire(int num, int size, int minSize) throws InterruptedException {
+		return acquire(num, size, minSize, Buffers.ALIGNMENT);
+	}
+
+	/**
+	 * Num buffers as acquire, with addresses aligned to alignment bytes, a power
+	 * of two.
+	 */
+	public synchronized Buffers acquire(int num, int size, int minSize, int alignment) throws InterruptedException {
+		if (num <= 0) {
+			return new Buffers(0, 0);
+		}
+		// Request larger than the whole budget would wait forever
+		int floor = (int) Math.max(1, Math.min(minSize, budget / num));
+		// Share of one worker, at least the minimum
+		long share = Math.max(floor, budget / workers / num);
+
+		while (true) {
+			long free = budget - reserved;
+			long fit = Math.min(Math.min(size, share), free / num);
+			if (fit >= floor) {
+				int actual = fit == size ? size : (int) Math.max(floor, Long.highestOneBit(fit));
+				reserved += (long) num * actual;
+				return new Buffers(num, actual, alignment, this);
+			}
+			wait();
+		}
+	}
+
+	public synchronized long reserved() {
+		return reserved;
+	}
+
+	synchronized void release(long bytes) {
+		reserved -= bytes;
+		notifyAll();
+	}
+}
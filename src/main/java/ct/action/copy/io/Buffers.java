@@ -1,22 +1,50 @@
 package ct.action.copy.io;
 
+import java.lang.foreign.Arena;
 import java.nio.ByteBuffer;
 
+import ct.app.App;
+
+/**
+ * Off-heap buffers of one arena, freed together on release. Buffers from a
+ * pool also return their bytes to the pool budget.
+ */
 public class Buffers {
 
+	public static final int ALIGNMENT = 4096;
+
+	private static final long CLOSE_RETRY_MS = 100;
+
 	private final ByteBuffer[] buffers;
+	private final int size;
+	private final int alignment;
+	private final Arena arena;
+	private final BufferPool pool;
 
 	private int index = 0;
+	private boolean released = false;
 
 	public Buffers(int num, int size) {
-		buffers = new ByteBuffer[num];
+		this(num, size, ALIGNMENT, null);
+	}
+
+	Buffers(int num, int size, int alignment, BufferPool pool) {
+		this(num, size, alignment, pool, Arena.ofShared());
+	}
+
+	Buffers(int num, int size, int alignment, BufferPool pool, Arena arena) {
+		this.buffers = new ByteBuffer[num];
+		this.size = size;
+		this.alignment = alignment;
+		this.arena = arena;
+		this.pool = pool;
 
 		allocate(size);
 	}
 
 	private void allocate(int size) {
 		for (int i = 0; i < buffers.length; i++) {
-			buffers[i] = ByteBuffer.allocateDirect(size);
+			buffers[i] = arena.allocate(size, alignment).asByteBuffer();
 		}
 	}
 
@@ -29,4 +57,53 @@ public class Buffers {
 	public ByteBuffer current() {
 		return buffers[index];
 	}
+
+	/**
+	 * Capacity of each buffer.
+	 */
+	public int size() {
+		return size;
+	}
+
+	public int count() {
+		return buffers.length;
+	}
+
+	/**
+	 * Free memory now, buffers must not be used afterwards. Buffers still used by
+	 * an aborted asynchronous operation are freed, and returned to the pool, once
+	 * it completes.
+	 */
+	public void release() {
+		if (released) {
+			return;
+		}
+		released = true;
+		if (!close()) {
+			App.thread().name("BufferRelease").start(this::closeWhenUnused);
+		}
+	}
+
+	private boolean close() {
+		try {
+			arena.close();
+		} catch (IllegalStateException e) {
+			// Shared arena memory is only freed by close, bytes stay charged
+			return false;
+		}
+		if (pool != null) {
+			pool.release((long) buffers.length * size);
+		}
+		return true;
+	}
+
+	private void closeWhenUnused() {
+		try {
+			while (!close()) {
+				Thread.sleep(CLOSE_RETRY_MS);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
 }
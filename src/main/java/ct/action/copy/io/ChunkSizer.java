@@ -0,0 +1,68 @@
+package ct.action.copy.io;
+
+/**
+ * AIMD chunk size between a floor and a ceiling. Grows additively while the
+ * measured throughput holds, halves when a chunk is much slower than the
+ * average and drops sharply after a retry. With floor equal to ceiling the
+ * size is fixed.
+ */
+public class ChunkSizer {
+
+	private static final int GROW_STEPS = 16;
+	private static final double SLOW_RATIO = 0.5;
+	private static final int RETRY_DIVISOR = 4;
+	private static final double AVERAGE_WEIGHT = 0.25;
+
+	private final int min;
+	private final int max;
+	private final int step;
+
+	private int size;
+	private double avgThroughput = 0;
+
+	public ChunkSizer(int min, int max) {
+		if (min <= 0 || min > max) {
+			throw new IllegalArgumentException("Invalid chunk size range: " + min + " - " + max);
+		}
+		this.min = min;
+		this.max = max;
+		this.step = Math.max(min, (max - min) / GROW_STEPS);
+		this.size = max;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isFixed() {
+		return min == max;
+	}
+
+	/**
+	 * Chunk of bytes copied in nanos, adjust size for next chunk.
+	 */
+	public void measured(long bytes, long nanos) {
+		if (isFixed() || bytes <= 0) {
+			return;
+		}
+
+		double throughput = (double) bytes / Math.max(1, nanos);
+		if (avgThroughput > 0 && throughput < avgThroughput * SLOW_RATIO) {
+			// Multiplicative decrease
+			size = Math.max(min, size / 2);
+		} else {
+			// Additive increase
+			size = (int) Math.min(max, (long) size + step);
+		}
+		avgThroughput = avgThroughput == 0 ? throughput
+				: avgThroughput + AVERAGE_WEIGHT * (throughput - avgThroughput);
+	}
+
+	/**
+	 * Copy problem, continue with small chunks so a retry wastes less.
+	 */
+	public void retried() {
+		size = Math.max(min, size / RETRY_DIVISOR);
+		avgThroughput = 0;
+	}
+}
@@ -1,15 +1,38 @@
 package ct.action.copy.io;
 
 import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
 import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.CopyOption;
+import java.nio.file.FileStore;
 import java.nio.file.Files;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.nio.file.attribute.FileTime;
+import java.util.concurrent.CompletableFuture;
+
+import ct.util.Native;
+import ct.util.Native.Advice;
 
 public class FilesIO implements IOWrapper {
 
+	private static final CompletionHandler<Integer, CompletableFuture<Integer>> COMPLETE = new CompletionHandler<>() {
+		@Override
+		public void completed(Integer result, CompletableFuture<Integer> future) {
+			future.complete(result);
+		}
+
+		@Override
+		public void failed(Throwable exc, CompletableFuture<Integer> future) {
+			future.completeExceptionally(exc);
+		}
+	};
+
 	@Override
 	public Path createDirectories(Path path) throws IOException {
 		return Files.createDirectories(path);
@@ -25,6 +48,21 @@ public class FilesIO implements IOWrapper {
 		return Files.setLastModifiedTime(path, time);
 	}
 
+	@Override
+	public boolean deleteIfExists(Path path) throws IOException {
+		return Files.deleteIfExists(path);
+	}
+
+	@Override
+	public Path move(Path source, Path target, CopyOption... options) throws IOException {
+		return Files.move(source, target, options);
+	}
+
+	@Override
+	public FileStore getFileStore(Path path) throws IOException {
+		return Files.getFileStore(path);
+	}
+
 	@Override
 	public FileChannel open(Path path, OpenOption... options) throws IOException {
 		return FileChannel.open(path, options);
@@ -45,11 +83,37 @@ public class FilesIO implements IOWrapper {
 		return channel.write(src);
 	}
 
+	@Override
+	public int read(FileChannel channel, ByteBuffer dst, long position) throws IOException {
+		return channel.read(dst, position);
+	}
+
+	@Override
+	public int write(FileChannel channel, ByteBuffer src, long position) throws IOException {
+		return channel.write(src, position);
+	}
+
+	@Override
+	public long read(FileChannel channel, ByteBuffer[] dsts) throws IOException {
+		return channel.read(dsts);
+	}
+
+	@Override
+	public long write(FileChannel channel, ByteBuffer[] srcs) throws IOException {
+		return channel.write(srcs);
+	}
+
 	@Override
 	public long transferTo(FileChannel source, long position, long count, FileChannel target) throws IOException {
 		return source.transferTo(position, count, target);
 	}
 
+	@Override
+	public MemorySegment map(FileChannel channel, MapMode mode, long position, long size, Arena arena)
+			throws IOException {
+		return channel.map(mode, position, size, arena);
+	}
+
 	@Override
 	public long size(FileChannel channel) throws IOException {
 		return channel.size();
@@ -60,8 +124,103 @@ public class FilesIO implements IOWrapper {
 		return channel.truncate(size);
 	}
 
+	@Override
+	public void force(FileChannel channel, boolean metaData) throws IOException {
+		channel.force(metaData);
+	}
+
 	@Override
 	public void close(FileChannel channel) throws IOException {
 		channel.close();
 	}
+
+	@Override
+	public AsynchronousFileChannel openAsync(Path path, OpenOption... options) throws IOException {
+		return AsynchronousFileChannel.open(path, options);
+	}
+
+	@Override
+	public CompletableFuture<Integer> read(AsynchronousFileChannel channel, ByteBuffer dst, long position) {
+		CompletableFuture<Integer> future = new CompletableFuture<>();
+		channel.read(dst, position, future, COMPLETE);
+		return future;
+	}
+
+	@Override
+	public CompletableFuture<Integer> write(AsynchronousFileChannel channel, ByteBuffer src, long position) {
+		CompletableFuture<Integer> future = new CompletableFuture<>();
+		channel.write(src, position, future, COMPLETE);
+		return future;
+	}
+
+	@Override
+	public long size(AsynchronousFileChannel channel) throws IOException {
+		return channel.size();
+	}
+
+	@Override
+	public AsynchronousFileChannel truncate(AsynchronousFileChannel channel, long size) throws IOException {
+		return channel.truncate(size);
+	}
+
+	@Override
+	public void close(AsynchronousFileChannel channel) throws IOException {
+		channel.close();
+	}
+
+	@Override
+	public int openFd(Path path, boolean write) throws IOException {
+		return Native.open(path, write);
+	}
+
+	@Override
+	public void probeDirect(Path path, boolean write) throws IOException {
+		Native.probeDirect(path, write);
+	}
+
+	@Override
+	public long copyFileRange(int inFd, long inPosition, int outFd, long outPosition, long count)
+			throws IOException {
+		return Native.copyFileRange(inFd, inPosition, outFd, outPosition, count);
+	}
+
+	@Override
+	public void cloneFd(int inFd, int outFd) throws IOException {
+		Native.clone(inFd, outFd);
+	}
+
+	@Override
+	public long seekData(int fd, long position) throws IOException {
+		return Native.seekData(fd, position);
+	}
+
+	@Override
+	public long seekHole(int fd, long position) throws IOException {
+		return Native.seekHole(fd, position);
+	}
+
+	@Override
+	public void adviseFd(int fd, long position, long length, Advice advice) throws IOException {
+		Native.fadvise(fd, position, length, advice);
+	}
+
+	@Override
+	public void allocateFd(int fd, long size) throws IOException {
+		Native.allocate(fd, size);
+	}
+
+	@Override
+	public long sizeFd(int fd) throws IOException {
+		return Native.size(fd);
+	}
+
+	@Override
+	public void truncateFd(int fd, long size) throws IOException {
+		Native.truncate(fd, size);
+	}
+
+	@Override
+	public void closeFd(int fd) throws IOException {
+		Native.close(fd);
+	}
 }
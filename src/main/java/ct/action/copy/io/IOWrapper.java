@@ -1,17 +1,27 @@
 package ct.action.copy.io;
 
 import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
 import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.CopyOption;
+import java.nio.file.FileStore;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.nio.file.attribute.FileTime;
+import java.util.concurrent.CompletableFuture;
+
+import ct.util.Native.Advice;
 
 public interface IOWrapper {
 
 	enum WT {
-		createDirectories, getLastModifiedTime, setLastModifiedTime, open, position, read, write, transferTo, size,
-		truncate, close
+		createDirectories, getLastModifiedTime, setLastModifiedTime, deleteIfExists, move, getFileStore, open, position,
+		read, write, transferTo, copyFileRange, clone, seek, advise, allocate, map, size, truncate, force,
+		close
 	};
 
 	// Files
@@ -22,6 +32,12 @@ public interface IOWrapper {
 
 	Path setLastModifiedTime(Path path, FileTime time) throws IOException;
 
+	boolean deleteIfExists(Path path) throws IOException;
+
+	Path move(Path source, Path target, CopyOption... options) throws IOException;
+
+	FileStore getFileStore(Path path) throws IOException;
+
 	// FileChannel
 
 	FileChannel open(Path path, OpenOption... options) throws IOException;
@@ -32,11 +48,70 @@ public interface IOWrapper {
 
 	int write(FileChannel channel, ByteBuffer src) throws IOException;
 
+	// Positional, does not use or change channel position, counts as read/write
+
+	int read(FileChannel channel, ByteBuffer dst, long position) throws IOException;
+
+	int write(FileChannel channel, ByteBuffer src, long position) throws IOException;
+
+	// Scatter/Gather, counts as read/write
+
+	long read(FileChannel channel, ByteBuffer[] dsts) throws IOException;
+
+	long write(FileChannel channel, ByteBuffer[] srcs) throws IOException;
+
 	long transferTo(FileChannel source, long position, long count, FileChannel target) throws IOException;
 
+	MemorySegment map(FileChannel channel, MapMode mode, long position, long size, Arena arena) throws IOException;
+
 	long size(FileChannel channel) throws IOException;
 
 	FileChannel truncate(FileChannel channel, long size) throws IOException;
 
+	void force(FileChannel channel, boolean metaData) throws IOException;
+
 	void close(FileChannel channel) throws IOException;
+
+	// AsynchronousFileChannel, counts as open/read/write/size/truncate/close
+
+	AsynchronousFileChannel openAsync(Path path, OpenOption... options) throws IOException;
+
+	CompletableFuture<Integer> read(AsynchronousFileChannel channel, ByteBuffer dst, long position)
+			throws IOException;
+
+	CompletableFuture<Integer> write(AsynchronousFileChannel channel, ByteBuffer src, long position)
+			throws IOException;
+
+	long size(AsynchronousFileChannel channel) throws IOException;
+
+	AsynchronousFileChannel truncate(AsynchronousFileChannel channel, long size) throws IOException;
+
+	void close(AsynchronousFileChannel channel) throws IOException;
+
+	// Native file descriptors, counts as open/size/truncate/close
+
+	int openFd(Path path, boolean write) throws IOException;
+
+	/**
+	 * Throws unsupported when the file system rejects direct I/O for the file.
+	 */
+	void probeDirect(Path path, boolean write) throws IOException;
+
+	long copyFileRange(int inFd, long inPosition, int outFd, long outPosition, long count) throws IOException;
+
+	void cloneFd(int inFd, int outFd) throws IOException;
+
+	long seekData(int fd, long position) throws IOException;
+
+	long seekHole(int fd, long position) throws IOException;
+
+	void adviseFd(int fd, long position, long length, Advice advice) throws IOException;
+
+	void allocateFd(int fd, long size) throws IOException;
+
+	long sizeFd(int fd) throws IOException;
+
+	void truncateFd(int fd, long size) throws IOException;
+
+	void closeFd(int fd) throws IOException;
 }
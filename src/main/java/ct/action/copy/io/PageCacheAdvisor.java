@@ -0,0 +1,121 @@
+package ct.action.copy.io;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import ct.util.Native.Advice;
+
+/**
+ * Page cache hints with posix_fadvise, so streaming a large file neither
+ * evicts the working set of other services nor waits on the default read
+ * ahead. Reads one window of the source ahead (WILLNEED) and drops copied
+ * ranges of source and target (DONTNEED). Advice applies to the file, so it
+ * uses its own descriptors, opened on first use. Only a hint, any problem
+ * disables it.
+ */
+public class PageCacheAdvisor {
+
+	private final IOWrapper io;
+	private final long window;
+	private final Path source;
+	private final Path target;
+
+	private boolean disabled;
+	private int inFd = -1;
+	private int outFd = -1;
+	private long readAhead = 0;
+	private long sourceDropped = 0;
+	private long targetDropped = 0;
+
+	public PageCacheAdvisor(IOWrapper io, long window, Path source, Path target) {
+		this.io = io;
+		this.window = window;
+		this.source = source;
+		this.target = target;
+		this.disabled = window <= 0;
+	}
+
+	/**
+	 * Source is read from position next.
+	 */
+	public void reading(long position) {
+		if (disabled) {
+			return;
+		}
+		try {
+			if (inFd == -1) {
+				inFd = io.openFd(source, false);
+			}
+
+			// Rollback
+			if (position < readAhead - window) {
+				readAhead = position;
+			}
+			sourceDropped = Math.min(sourceDropped, position);
+
+			// Read next window ahead, once half of the current one is read
+			if (position + window / 2 >= readAhead) {
+				long from = Math.max(position, readAhead);
+				io.adviseFd(inFd, from, position + window - from, Advice.WILLNEED);
+				readAhead = position + window;
+			}
+
+			// Drop read source
+			if (position - sourceDropped >= window) {
+				io.adviseFd(inFd, sourceDropped, position - sourceDropped, Advice.DONTNEED);
+				sourceDropped = position;
+			}
+		} catch (IOException e) {
+			disable();
+		}
+	}
+
+	/**
+	 * Target is written up to position.
+	 */
+	public void written(long position) {
+		if (disabled) {
+			return;
+		}
+		try {
+			if (outFd == -1) {
+				outFd = io.openFd(target, true);
+			}
+
+			// Rollback
+			targetDropped = Math.min(targetDropped, position);
+
+			// Drop written target, dirty pages are only dropped after write back
+			// started by the previous advice, so the previous window is repeated
+			if (position - targetDropped >= window) {
+				long from = Math.max(0, targetDropped - window);
+				io.adviseFd(outFd, from, position - from, Advice.DONTNEED);
+				targetDropped = position;
+			}
+		} catch (IOException e) {
+			disable();
+		}
+	}
+
+	public void close() {
+		closeFd(inFd);
+		closeFd(outFd);
+		inFd = -1;
+		outFd = -1;
+	}
+
+	private void disable() {
+		disabled = true;
+		close();
+	}
+
+	private void closeFd(int fd) {
+		if (fd != -1) {
+			try {
+				io.closeFd(fd);
+			} catch (IOException e) {
+				// Ignore
+			}
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package ct.action.copy.io;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+/**
+ * Last chunks copied, kept in their buffers so a verified rollback after a
+ * target problem compares and rewrites them from memory instead of reading the
+ * source again. Retained chunks are contiguous and end where reading continues,
+ * the chunk of a failed write is not retained. Each chunk keeps the CRC32C of
+ * the bytes read, a chunk changed in memory since is dropped and read again.
+ */
+public class RetentionRing {
+
+	private static final int CRC_CHUNK_SIZE = 1 << 13;
+
+	private final ByteBuffer[] buffers;
+	private final long[] positions;
+	private final int[] crcs;
+	private final CRC32C crc = new CRC32C();
+	private final byte[] chunk = new byte[CRC_CHUNK_SIZE];
+
+	private int head = 0;
+	private int count = 0;
+
+	/**
+	 * Ring of the next num buffers.
+	 */
+	public RetentionRing(Buffers buffers, int num) {
+		this.buffers = new ByteBuffer[num];
+		this.positions = new long[num];
+		this.crcs = new int[num];
+		for (int i = 0; i < this.buffers.length; i++) {
+			this.buffers[i] = buffers.next();
+		}
+	}
+
+	/**
+	 * Buffer to read the next chunk into, evicts the oldest chunk.
+	 */
+	public ByteBuffer next() {
+		if (count == buffers.length) {
+			count--;
+		}
+		return buffers[head];
+	}
+
+	/**
+	 * Buffer of next holds the chunk read at position, up to its limit. Not
+	 * retained until written.
+	 */
+	public void read(long position) {
+		positions[head] = position;
+		crcs[head] = crc(buffers[head]);
+	}
+
+	/**
+	 * Chunk of the last read is retained.
+	 */
+	public void retain() {
+		head = (head + 1) % buffers.length;
+		count++;
+	}
+
+	/**
+	 * Retained chunk containing position, positioned there, or null when not
+	 * retained. A chunk changed since read is dropped, with the ones after it.
+	 */
+	public ByteBuffer from(long position) {
+		for (int i = 0; i < count; i++) {
+			int index = (head - count + i + buffers.length) % buffers.length;
+			long start = positions[index];
+			if (position >= start && position < start + buffers[index].limit()) {
+				if (crc(buffers[index]) != crcs[index]) {
+					head = index;
+					count = i;
+					return null;
+				}
+				return buffers[index].position((int) (position - start));
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Position is retained, or where reading continues.
+	 */
+	public boolean covers(long position) {
+		return count > 0 && position >= positions[(head - count + buffers.length) % buffers.length];
+	}
+
+	public void clear() {
+		count = 0;
+	}
+
+	private int crc(ByteBuffer bb) {
+		// Buffers of shared arenas have no address for CRC32C, copied in chunks
+		crc.reset();
+		for (int offset = 0; offset < bb.limit(); offset += chunk.length) {
+			int length = Math.min(bb.limit() - offset, chunk.length);
+			bb.get(offset, chunk, 0, length);
+			crc.update(chunk, 0, length);
+		}
+		return (int) crc.getValue();
+	}
+}
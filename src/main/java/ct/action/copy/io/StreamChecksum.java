@@ -0,0 +1,218 @@
+package ct.action.copy.io;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.zip.CRC32C;
+
+import ct.app.Settings.Checksum;
+
+/**
+ * Checksum of the source computed from the buffers of the copy loop, while
+ * they are still hot, instead of a second full read. Hashes the source in
+ * order: chunks beyond the hashed position are ignored, so the caller reads
+ * them later. A rollback resets the hash to the restart position, from a
+ * checkpoint of the last chunks, so bytes read again replace the suspect ones.
+ * Disabled with Checksum.NONE.
+ */
+public class StreamChecksum {
+
+	private static final int CHUNK_SIZE = 1 << 13;
+	private static final byte[] ZEROS = new byte[CHUNK_SIZE];
+	private static final int CHECKPOINTS = 64;
+	// CRC32C polynomial, reversed
+	private static final int POLY = 0x82F63B78;
+
+	/**
+	 * Hash state with bytes up to position.
+	 */
+	private record Checkpoint(long position, int crc, MessageDigest digest) {
+	}
+
+	private final Checksum algorithm;
+	private final CRC32C crc;
+	private final byte[] chunk;
+	private final Deque<Checkpoint> checkpoints = new ArrayDeque<>();
+
+	private MessageDigest digest;
+	private int crcValue = 0;
+	private long position = 0;
+
+	public StreamChecksum(Checksum algorithm) {
+		this.algorithm = algorithm;
+		this.crc = algorithm == Checksum.CRC32C ? new CRC32C() : null;
+		this.chunk = crc != null ? new byte[CHUNK_SIZE] : null;
+		this.digest = newDigest(algorithm);
+	}
+
+	private static MessageDigest newDigest(Checksum algorithm) {
+		try {
+			return algorithm == Checksum.SHA_256 ? MessageDigest.getInstance(algorithm.toString()) : null;
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public boolean enabled() {
+		return algorithm != Checksum.NONE;
+	}
+
+	public Checksum algorithm() {
+		return algorithm;
+	}
+
+	/**
+	 * Source is hashed up to position.
+	 */
+	public long position() {
+		return position;
+	}
+
+	/**
+	 * Data read at position, from its position up to its limit. Buffer position
+	 * is kept.
+	 */
+	public void update(long position, ByteBuffer data) {
+		long end = position + data.remaining();
+		if (!enabled() || position > this.position || end <= this.position) {
+			return;
+		}
+		checkpoint();
+		int start = data.position();
+		data.position(start + (int) (this.position - position));
+		if (crc != null) {
+			crc.reset();
+			if (data.isDirect()) {
+				// Buffers of shared arenas have no address for CRC32C, copied in chunks
+				while (data.hasRemaining()) {
+					int length = Math.min(data.remaining(), chunk.length);
+					data.get(chunk, 0, length);
+					crc.update(chunk, 0, length);
+				}
+			} else {
+				crc.update(data);
+			}
+			crcValue = combine(crcValue, (int) crc.getValue(), end - this.position);
+		} else {
+			digest.update(data);
+		}
+		data.position(start);
+		this.position = end;
+	}
+
+	/**
+	 * Bytes from position on are read again, hash is reset there. Without a
+	 * checkpoint there, it is reset to the last one before, and the bytes in
+	 * between are read from the source after the copy.
+	 */
+	public void rollback(long position) {
+		if (!enabled() || position >= this.position) {
+			return;
+		}
+		while (!checkpoints.isEmpty() && checkpoints.peekLast().position() > position) {
+			checkpoints.pollLast();
+		}
+		Checkpoint cp = checkpoints.pollLast();
+		if (cp == null) {
+			cp = new Checkpoint(0, 0, newDigest(algorithm));
+		}
+		this.position = cp.position();
+		crcValue = cp.crc();
+		digest = cp.digest();
+	}
+
+	private void checkpoint() {
+		MessageDigest copy = null;
+		if (digest != null) {
+			try {
+				copy = (MessageDigest) digest.clone();
+			} catch (CloneNotSupportedException e) {
+				// Rollback starts from the beginning
+				checkpoints.clear();
+				return;
+			}
+		}
+		if (checkpoints.size() == CHECKPOINTS) {
+			checkpoints.pollFirst();
+		}
+		checkpoints.addLast(new Checkpoint(position, crcValue, copy));
+	}
+
+	/**
+	 * Hole of length zero bytes at position.
+	 */
+	public void zeros(long position, long length) {
+		while (length > 0) {
+			int chunk = (int) Math.min(length, ZEROS.length);
+			update(position, ByteBuffer.wrap(ZEROS, 0, chunk));
+			position += chunk;
+			length -= chunk;
+		}
+	}
+
+	/**
+	 * Digest in hex, once the whole source is hashed.
+	 */
+	public String hex() {
+		if (crc != null) {
+			return "%08x".formatted(crcValue);
+		}
+		return digest == null ? null : HexFormat.of().formatHex(digest.digest());
+	}
+
+	/**
+	 * CRC32C of two parts from the CRC32C of each, as zlib crc32_combine.
+	 */
+	static int combine(int crc1, int crc2, long length2) {
+		int[] even = new int[32];
+		int[] odd = new int[32];
+
+		// Operator for one zero bit
+		odd[0] = POLY;
+		int row = 1;
+		for (int n = 1; n < 32; n++) {
+			odd[n] = row;
+			row <<= 1;
+		}
+		// Two and four zero bits
+		square(even, odd);
+		square(odd, even);
+
+		// Apply length2 zero bytes to crc1
+		while (length2 > 0) {
+			square(even, odd);
+			if ((length2 & 1) != 0) {
+				crc1 = times(even, crc1);
+			}
+			length2 >>= 1;
+			if (length2 == 0) {
+				break;
+			}
+			square(odd, even);
+			if ((length2 & 1) != 0) {
+				crc1 = times(odd, crc1);
+			}
+			length2 >>= 1;
+		}
+		return crc1 ^ crc2;
+	}
+
+	private static int times(int[] matrix, int vector) {
+		int sum = 0;
+		for (int i = 0; vector != 0; i++, vector >>>= 1) {
+			if ((vector & 1) != 0) {
+				sum ^= matrix[i];
+			}
+		}
+		return sum;
+	}
+
+	private static void square(int[] square, int[] matrix) {
+		for (int n = 0; n < 32; n++) {
+			square[n] = times(matrix, matrix[n]);
+		}
+	}
+}
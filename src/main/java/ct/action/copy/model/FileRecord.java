@@ -1,23 +1,33 @@
 package ct.action.copy.model;
 
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 
 import ct.util.Utils;
 
-public record FileRecord(Path path, long size, long position, Path relativeFromSource) {
+/**
+ * File of a copy task, sources with the last modified time of the analysis,
+ * null when not analysed.
+ */
+public record FileRecord(Path path, long size, long position, Path relativeFromSource, FileTime modified) {
 
 	private static final long NO_SIZE = -1;
 
 	public static FileRecord sourceFile(Path path, long size, Path relativeFromSource) {
-		return new FileRecord(path, size, 0, relativeFromSource);
+		return new FileRecord(path, size, 0, relativeFromSource, null);
 	}
 
 	public static FileRecord targetFile(Path path) {
-		return new FileRecord(path, NO_SIZE, 0, null);
+		return new FileRecord(path, NO_SIZE, 0, null, null);
 	}
 
 	public static FileRecord resumeSource(Path path, long size, long position, Path relativeFromSource) {
-		return new FileRecord(path, size, position, relativeFromSource);
+		return new FileRecord(path, size, position, relativeFromSource, null);
+	}
+
+	public static FileRecord analysedSource(Path path, long size, FileTime modified, long position,
+			Path relativeFromSource) {
+		return new FileRecord(path, size, position, relativeFromSource, modified);
 	}
 
 	@Override
@@ -0,0 +1,43 @@
+package ct.action.copy.model;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Hidden sibling a target is written to before it is renamed into place. The
+ * name carries size and last modified time of the source it is copied from, so
+ * it is resumed only while the source is unchanged, e.g.
+ * ".movie.mkv.1048576-1700000000000.ct-partial".
+ */
+public record PartialFile(String name, long size, long modifiedMillis) {
+
+	public static final String SUFFIX = ".ct-partial";
+
+	private static final Pattern NAME = Pattern.compile("\\.(.+)\\.(\\d+)-(-?\\d+)" + Pattern.quote(SUFFIX));
+
+	public static Path path(Path target, long size, FileTime modified) {
+		return target.resolveSibling(fileName(target.getFileName().toString(), size, modified.toMillis()));
+	}
+
+	public static String fileName(String name, long size, long modifiedMillis) {
+		return "." + name + "." + size + "-" + modifiedMillis + SUFFIX;
+	}
+
+	/**
+	 * Partial file of a name, empty for any other file.
+	 */
+	public static Optional<PartialFile> parse(String fileName) {
+		Matcher m = NAME.matcher(fileName);
+		if (!fileName.endsWith(SUFFIX) || !m.matches()) {
+			return Optional.empty();
+		}
+		try {
+			return Optional.of(new PartialFile(m.group(1), Long.parseLong(m.group(2)), Long.parseLong(m.group(3))));
+		} catch (NumberFormatException e) {
+			return Optional.empty();
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package ct.action.copy.model;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Directories of the source tree, relative from the parent of the source, as a
+ * tree of interned names. Tasks keep the id of their directory instead of
+ * paths, source, relative and target paths are built when a task is read.
+ */
+public class PathTable {
+
+	public static final int ROOT = 0;
+
+	private record Child(int parent, String name) {
+	}
+
+	private final Path sourceRoot;
+	private final Path targetDir;
+	private final Map<Child, Integer> ids = new HashMap<>();
+	private int[] parents = new int[64];
+	private String[] names = new String[64];
+	private int size = 1;
+
+	/**
+	 * Table of a copy from the source directory into the target directory.
+	 */
+	public PathTable(Path sourceDir, Path targetDir) {
+		this.sourceRoot = sourceDir.getParent();
+		this.targetDir = targetDir;
+	}
+
+	/**
+	 * Id of a directory, added when new.
+	 */
+	public synchronized int directory(int parent, String name) {
+		return ids.computeIfAbsent(new Child(parent, name), _ -> {
+			if (size == parents.length) {
+				parents = Arrays.copyOf(parents, size * 2);
+				names = Arrays.copyOf(names, size * 2);
+			}
+			parents[size] = parent;
+			names[size] = name;
+			return size++;
+		});
+	}
+
+	/**
+	 * Id of the directory of a relative path, added when new.
+	 */
+	public int directoryOf(Path relative) {
+		int dir = ROOT;
+		Path parent = relative.getParent();
+		if (parent != null) {
+			for (Path name : parent) {
+				dir = directory(dir, name.toString());
+			}
+		}
+		return dir;
+	}
+
+	public Path relative(int dir, String name) {
+		String[] segments;
+		synchronized (this) {
+			int depth = 0;
+			for (int d = dir; d != ROOT; d = parents[d]) {
+				depth++;
+			}
+			segments = new String[depth + 1];
+			segments[depth] = name;
+			for (int d = dir; d != ROOT; d = parents[d]) {
+				segments[--depth] = names[d];
+			}
+		}
+		return Path.of(segments[0], Arrays.copyOfRange(segments, 1, segments.length));
+	}
+
+	public Path source(Path relative) {
+		return sourceRoot.resolve(relative);
+	}
+
+	public Path target(Path relative) {
+		return targetDir.resolve(relative);
+	}
+}
@@ -0,0 +1,19 @@
+package ct.action.copy.model;
+
+import java.nio.file.attribute.FileTime;
+
+/**
+ * Durable offset of an unfinished file of an interrupted copy, with size and
+ * last modified time of the source it was copied from.
+ */
+public record ResumePoint(long size, long modifiedMillis, long offset) {
+
+	/**
+	 * Offset when the source is unchanged and the target, or its partial file,
+	 * holds the bytes up to it, else 0.
+	 */
+	public long verified(long sourceSize, FileTime sourceModified, long landed) {
+		boolean unchanged = sourceSize == size && sourceModified.toMillis() == modifiedMillis;
+		return unchanged && landed >= offset ? offset : 0;
+	}
+}
@@ -0,0 +1,124 @@
+package ct.action.copy.model;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copy tasks stored by column, directory id, name, size, modified time and
+ * position, a few dozen bytes per file instead of records with three paths.
+ * Tasks are built when read, equal to the ones added.
+ */
+public class TaskTable extends AbstractList<CopyTask> {
+
+	private static final int INITIAL_CAPACITY = 16;
+	private static final long NO_MODIFIED = Long.MIN_VALUE;
+
+	private final PathTable paths;
+	private int[] dirs = new int[0];
+	private String[] names = new String[0];
+	private long[] sizes = new long[0];
+	private long[] modified = new long[0];
+	private long[] positions = new long[0];
+	private int size = 0;
+
+	public TaskTable(PathTable paths) {
+		this.paths = paths;
+	}
+
+	/**
+	 * Adds a task, modified time of the source is null when not known, kept in
+	 * nanoseconds.
+	 */
+	public void add(int dir, String name, long fileSize, FileTime fileModified, long position) {
+		ensureCapacity(size + 1);
+		dirs[size] = dir;
+		names[size] = name;
+		sizes[size] = fileSize;
+		modified[size] = fileModified == null ? NO_MODIFIED : fileModified.to(TimeUnit.NANOSECONDS);
+		positions[size] = position;
+		size++;
+		modCount++;
+	}
+
+	/**
+	 * Adds a task by its relative path, source and target are where the table
+	 * places it.
+	 */
+	@Override
+	public boolean add(CopyTask ct) {
+		Path relative = ct.sourceFile().relativeFromSource();
+		add(paths.directoryOf(relative), relative.getFileName().toString(), ct.sourceFile().size(),
+				ct.sourceFile().modified(), ct.sourceFile().position());
+		return true;
+	}
+
+	/**
+	 * Appends the tasks of a table with the same directories.
+	 */
+	public void addAll(TaskTable other) {
+		addAll(other, 0, other.size);
+	}
+
+	/**
+	 * Appends the tasks from index from, inclusive, to index to, exclusive, of a
+	 * table with the same directories.
+	 */
+	public void addAll(TaskTable other, int from, int to) {
+		if (other.paths != paths) {
+			throw new IllegalArgumentException("Tables of different directories");
+		}
+		Objects.checkFromToIndex(from, to, other.size);
+		int length = to - from;
+		ensureCapacity(size + length);
+		System.arraycopy(other.dirs, from, dirs, size, length);
+		System.arraycopy(other.names, from, names, size, length);
+		System.arraycopy(other.sizes, from, sizes, size, length);
+		System.arraycopy(other.modified, from, modified, size, length);
+		System.arraycopy(other.positions, from, positions, size, length);
+		size += length;
+		modCount++;
+	}
+
+	@Override
+	public CopyTask get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException(index);
+		}
+		Path relative = paths.relative(dirs[index], names[index]);
+		FileTime fileModified = modified[index] == NO_MODIFIED ? null
+				: FileTime.from(modified[index], TimeUnit.NANOSECONDS);
+		return new CopyTask(FileRecord.analysedSource(paths.source(relative), sizes[index], fileModified,
+				positions[index], relative), FileRecord.targetFile(paths.target(relative)));
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void clear() {
+		dirs = new int[0];
+		names = new String[0];
+		sizes = new long[0];
+		modified = new long[0];
+		positions = new long[0];
+		size = 0;
+		modCount++;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > dirs.length) {
+			int grown = Math.max(capacity, Math.max(INITIAL_CAPACITY, dirs.length * 2));
+			dirs = Arrays.copyOf(dirs, grown);
+			names = Arrays.copyOf(names, grown);
+			sizes = Arrays.copyOf(sizes, grown);
+			modified = Arrays.copyOf(modified, grown);
+			positions = Arrays.copyOf(positions, grown);
+		}
+	}
+}
@@ -3,6 +3,7 @@ package ct.action.copy.progress;
 import java.nio.file.attribute.FileTime;
 
 import ct.action.copy.model.CopyTask;
+import ct.app.Settings.Checksum;
 
 public sealed interface IProgressEvent {
 
@@ -28,6 +29,12 @@ public sealed interface IProgressEvent {
 	record TruncateEvent(long size) implements IProgressEvent {
 	}
 
+	record DeltaEvent(long written, long saved) implements IProgressEvent {
+	}
+
+	record ChecksumEvent(Checksum algorithm, String digest) implements IProgressEvent {
+	}
+
 	record ModifiedTimeEvent(FileTime time) implements IProgressEvent {
 	}
 
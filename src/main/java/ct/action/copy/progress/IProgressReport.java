@@ -1,6 +1,7 @@
 package ct.action.copy.progress;
 
 import ct.action.copy.progress.IProgressEvent.AbortEvent;
+import ct.action.copy.progress.IProgressEvent.CopyProgressEvent;
 import ct.action.copy.progress.IProgressEvent.ErrorEvent;
 import ct.action.copy.progress.IProgressEvent.WarningEvent;
 
@@ -10,6 +11,22 @@ public interface IProgressReport {
 
 	void abort(AbortEvent event);
 
+	/**
+	 * Bytes copied of the current file, called for every chunk. Implementations
+	 * must not allocate or block, the default is for reports that print every
+	 * event anyway.
+	 */
+	default void progress(long position) throws InterruptedException {
+		event(new CopyProgressEvent(position));
+	}
+
+	/**
+	 * Target is complete up to position, where a restarted copy resumes. Only
+	 * for engines that copy out of order, for the rest it is the progress.
+	 */
+	default void resumable(long position) throws InterruptedException {
+	}
+
 	default void warning(String desc, String cause) throws InterruptedException {
 		event(new WarningEvent(desc, cause));
 	}
@@ -5,9 +5,12 @@ import java.io.InputStream;
 import java.lang.Thread.Builder;
 import java.util.Properties;
 
+import ct.app.Settings.CopyMode;
+import ct.app.Settings.RobustCopySettings;
 import ct.runner.AnalyseRunner;
 import ct.util.AnsiEscapeCodes.Color;
 import ct.util.Native;
+import ct.util.Utils;
 
 public class App {
 
@@ -16,6 +19,12 @@ public class App {
 	static final int WAIT_TIME = 10;
 	static final int ROLLBACK_BUFFERS = 0;
 	static final int NUM_FILES_SIMULTANEOUSLY = 2;
+	static final int STREAMS = 1;
+	static final int PIPELINE_DEPTH = 0;
+	static final int MIN_BUFF_SIZE = 0;
+	static final int ASYNC_OPS = 0;
+	static final int CACHE_WINDOW = 0;
+	static final int BUFFER_BUDGET = 30;
 
 	private static final boolean VIRTUAL_THREADS = true;
 
@@ -114,6 +123,28 @@ public class App {
 		if (Settings.devMode) {
 			warning("Dev Mode", "enabled");
 		}
+		RobustCopySettings rc = settings.robustCopy();
+		boolean modeSelected = rc.mode() != CopyMode.DIRECT_BUFFER;
+		if (rc.streams() > 1 && (rc.pipelineDepth() > 0 || rc.asyncOps() > 0 || modeSelected)) {
+			warning("Multi-Stream enabled, ignoring", rc.mode());
+		} else if (rc.pipelineDepth() > 0 && (rc.asyncOps() > 0 || modeSelected)) {
+			warning("Pipelined mode enabled, ignoring", rc.mode());
+		} else if (rc.asyncOps() > 0 && modeSelected) {
+			warning("Async mode enabled, ignoring", rc.mode());
+		}
+		boolean adaptive = rc.minBufferSize() > 0;
+		if (adaptive && (rc.streams() > 1 || rc.pipelineDepth() > 0 || rc.asyncOps() > 0)) {
+			warning("Adaptive buffer size not supported in this mode, ignoring", Utils.size(rc.minBufferSize()));
+		}
+		if (rc.cacheWindow() > 0 && (rc.mode() == CopyMode.DIRECT_IO || rc.streams() > 1)) {
+			warning("Page cache hints not supported in this mode, ignoring", Utils.size(rc.cacheWindow()));
+		}
+		if (rc.verifyRollback() && rc.rollbackBuffersNum() == 0) {
+			warning("Rollback verify needs -u, ignoring", "-V");
+		}
+		if (settings.multiFile().streaming() && settings.multiFile().journal()) {
+			warning("Journal enabled, plans all files before copying, ignoring", "-S");
+		}
 		if (settings.multiFile().logMode() && settings.multiFile().filesSimultaneously() > 1) {
 			warning("Log Mode enabled, -n is treated as 1, but set to", settings.multiFile().filesSimultaneously());
 		}
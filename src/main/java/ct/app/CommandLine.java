@@ -6,6 +6,8 @@ import java.nio.file.Paths;
 import java.util.Optional;
 
 import ct.app.Settings.AnalyseSettings;
+import ct.app.Settings.Checksum;
+import ct.app.Settings.CopyMode;
 import ct.app.Settings.MultiFileSettings;
 import ct.app.Settings.RobustCopySettings;
 
@@ -25,22 +27,44 @@ public class CommandLine {
 				Options - Defaults in parentheses, D = Disabled, E = Eanbled:
 				  Functional:
 				    -h    Show this help, and exit.
+				    -H    Checksum each file with SHA-256 while copying, reports the digest. (D)
+				    -I    Index the target tree in <dst>, later runs list only target directories changed since. (D)
 				    -d    Dry Run, analyse only, skips file copy. (D)
+				    -C    Checksum each file with CRC32C while copying, reports the digest. (D)
+				    -g n  Adaptive buffer size, chunks vary between 2^n bytes and -s, 9-30. (%7$d = D)
+				    -J    Journal copy progress in <dst>, a restarted -J copy resumes unfinished files from it. (D)
+				    -j    Disable reserving disk space for target files (fallocate), Linux only. (E)
+				    -m n  Copy each file in n concurrent streams (byte ranges), 1-16. (%5$d)
 				    -n n  Copy multiple files at the same time, 1-8. (%1$d)
 				    -o    Overwrite mismatching files instead of skipping them. (D)
+				    -O    Overwrite mismatching files with delta sync, rewrites differing blocks of local targets. (D)
+				    -P    Write targets as hidden .ct-partial files, renamed into place once verified. (D)
 				    -r    Resume mismatching files instead of skipping them. (D)
+				    -S    Stream analysis into the copy, starts with the first file found, not with -J. (D)
 				    -s n  Copy buffer size, in format 2^n bytes, 9-30. (%4$d)
 				    -u n  Rollback n buffers on copy problem, 0-10. (%3$d)
+				    -V    Verify rolled back buffers against the target, rewrites from memory when retained. (D)
+				    -y n  Memory budget for copy buffers of all files, 2^n bytes, 20-40. (%10$d)
 				  Modes:
 				    -l    Log mode, disables dynamic progress updates and implies -n 1. (D)
+				    -p n  Pipelined mode, reader thread keeps n buffers ahead of writer, 0-16. (%6$d = D)
+				    -q n  Async mode, keeps n reads and n writes in flight, 0-64. (%8$d = D)
 				    -z    Zero-Copy Mode, uses transferTo instead of directByteBuffer. (D)
+				    -a    Memory-Mapped Mode, writes directly from mapped source windows. (D)
+				    -k    Clone files with reflink on copy-on-write file systems, else use selected mode. (D)
+				    -i    Direct I/O Mode, bypasses page cache (O_DIRECT) with block aligned buffers. (D)
+				    -f n  Page cache hints, reads ahead 2^n bytes and drops copied data from cache, 16-30. (%9$d = D)
+				    -e    Server-Side Mode, copy_file_range lets the file server copy, Linux only. (D)
+				    -t    Sparse Mode, copies only data extents and recreates holes, Linux only. (D)
 				    -x    Dev mode, enables experimental features. (D)
 				  Visual:
 				    -b    Enable show all sizes in raw bytes instead of human readable. (D)
 				    -c    Disable colors in text output. (E)
 				    -v    Verbose output, for debugging purpose. (D)
 				    -w n  Max width of dynamic content, 40-500. (%2$d)
-				""".formatted(App.NUM_FILES_SIMULTANEOUSLY, App.TERMINAL_WIDTH, App.ROLLBACK_BUFFERS, App.BUFF_SIZE));
+				""".formatted(App.NUM_FILES_SIMULTANEOUSLY, App.TERMINAL_WIDTH, App.ROLLBACK_BUFFERS, App.BUFF_SIZE,
+				App.STREAMS, App.PIPELINE_DEPTH, App.MIN_BUFF_SIZE, App.ASYNC_OPS, App.CACHE_WINDOW,
+				App.BUFFER_BUDGET));
 	}
 
 	private static enum ReqParams {
@@ -48,7 +72,8 @@ public class CommandLine {
 	}
 
 	private static enum OptParams {
-		NONE, TERM_WIDTH, MULTIPLE_FILES, ROLLBACK_BUFFERS, BUFFER_SIZE;
+		NONE, TERM_WIDTH, MULTIPLE_FILES, ROLLBACK_BUFFERS, BUFFER_SIZE, STREAMS, PIPELINE_DEPTH, MIN_BUFFER_SIZE,
+		ASYNC_OPS, CACHE_WINDOW, BUFFER_BUDGET;
 	}
 
 	static void parseOutputArgs(String[] args) {
@@ -77,11 +102,26 @@ public class CommandLine {
 		boolean overwrite = false;
 		boolean resume = false;
 		boolean logMode = false;
-		boolean zeroMode = false;
+		boolean journal = false;
+		boolean partial = false;
+		boolean verifyRollback = false;
+		boolean streaming = false;
+		boolean index = false;
+		boolean reflink = false;
+		boolean preallocate = true;
+		boolean delta = false;
+		Checksum checksum = Checksum.NONE;
+		CopyMode mode = CopyMode.DIRECT_BUFFER;
 		int filesSimultaneously = App.NUM_FILES_SIMULTANEOUSLY;
 		int terminalWidth = App.TERMINAL_WIDTH;
 		int rollbackBuffers = App.ROLLBACK_BUFFERS;
 		int bufferExponent = App.BUFF_SIZE;
+		int streams = App.STREAMS;
+		int pipelineDepth = App.PIPELINE_DEPTH;
+		int minBufferExponent = App.MIN_BUFF_SIZE;
+		int asyncOps = App.ASYNC_OPS;
+		int cacheWindowExponent = App.CACHE_WINDOW;
+		int bufferBudgetExponent = App.BUFFER_BUDGET;
 
 		// Parse
 		for (String arg : args) {
@@ -95,13 +135,33 @@ public class CommandLine {
 					case 'o' -> {
 						overwrite = true;
 						resume = false;
+						delta = false;
+					}
+					case 'O' -> {
+						overwrite = true;
+						resume = false;
+						delta = true;
 					}
 					case 'r' -> {
 						resume = true;
 						overwrite = false;
+						delta = false;
 					}
 					case 'l' -> logMode = true;
-					case 'z' -> zeroMode = true;
+					case 'J' -> journal = true;
+					case 'P' -> partial = true;
+					case 'V' -> verifyRollback = true;
+					case 'S' -> streaming = true;
+					case 'I' -> index = true;
+					case 'z' -> mode = CopyMode.ZERO_COPY;
+					case 'a' -> mode = CopyMode.MAPPED;
+					case 'e' -> mode = CopyMode.SERVER_SIDE;
+					case 'i' -> mode = CopyMode.DIRECT_IO;
+					case 't' -> mode = CopyMode.SPARSE;
+					case 'k' -> reflink = true;
+					case 'j' -> preallocate = false;
+					case 'C' -> checksum = Checksum.CRC32C;
+					case 'H' -> checksum = Checksum.SHA_256;
 					case 'b', 'c', 'v', 'x' -> {
 						// Handled in parseOutputArgs
 					}
@@ -109,6 +169,12 @@ public class CommandLine {
 					case 'n' -> optParams = OptParams.MULTIPLE_FILES;
 					case 'u' -> optParams = OptParams.ROLLBACK_BUFFERS;
 					case 's' -> optParams = OptParams.BUFFER_SIZE;
+					case 'm' -> optParams = OptParams.STREAMS;
+					case 'p' -> optParams = OptParams.PIPELINE_DEPTH;
+					case 'g' -> optParams = OptParams.MIN_BUFFER_SIZE;
+					case 'q' -> optParams = OptParams.ASYNC_OPS;
+					case 'f' -> optParams = OptParams.CACHE_WINDOW;
+					case 'y' -> optParams = OptParams.BUFFER_BUDGET;
 					default -> {
 						App.error("Invalid parameter", arg.charAt(i));
 						return Optional.empty();
@@ -141,6 +207,12 @@ public class CommandLine {
 						case MULTIPLE_FILES -> filesSimultaneously = Integer.parseInt(arg);
 						case ROLLBACK_BUFFERS -> rollbackBuffers = Integer.parseInt(arg);
 						case BUFFER_SIZE -> bufferExponent = Integer.parseInt(arg);
+						case STREAMS -> streams = Integer.parseInt(arg);
+						case PIPELINE_DEPTH -> pipelineDepth = Integer.parseInt(arg);
+						case MIN_BUFFER_SIZE -> minBufferExponent = Integer.parseInt(arg);
+						case ASYNC_OPS -> asyncOps = Integer.parseInt(arg);
+						case CACHE_WINDOW -> cacheWindowExponent = Integer.parseInt(arg);
+						case BUFFER_BUDGET -> bufferBudgetExponent = Integer.parseInt(arg);
 						}
 					} catch (NumberFormatException e) {
 						App.error("N must be a number", arg);
@@ -191,11 +263,45 @@ public class CommandLine {
 			return Optional.empty();
 		}
 
+		if (streams < 1 || streams > 16) {
+			App.error("Invlaid value for -m", streams);
+			return Optional.empty();
+		}
+
+		if (pipelineDepth < 0 || pipelineDepth > 16) {
+			App.error("Invlaid value for -p", pipelineDepth);
+			return Optional.empty();
+		}
+
+		if (minBufferExponent != 0 && (minBufferExponent < 9 || minBufferExponent > bufferExponent)) {
+			App.error("Invlaid value for -g", minBufferExponent);
+			return Optional.empty();
+		}
+
+		if (asyncOps < 0 || asyncOps > 64) {
+			App.error("Invlaid value for -q", asyncOps);
+			return Optional.empty();
+		}
+
+		if (cacheWindowExponent != 0 && (cacheWindowExponent < 16 || cacheWindowExponent > 30)) {
+			App.error("Invlaid value for -f", cacheWindowExponent);
+			return Optional.empty();
+		}
+
+		if (bufferBudgetExponent < 20 || bufferBudgetExponent > 40) {
+			App.error("Invlaid value for -y", bufferBudgetExponent);
+			return Optional.empty();
+		}
+
 		// Done
-		AnalyseSettings aSettings = new AnalyseSettings(sourceDir, targetDir, dryRun, overwrite, resume);
+		AnalyseSettings aSettings = new AnalyseSettings(sourceDir, targetDir, dryRun, overwrite, resume,
+				partial, index);
 		RobustCopySettings rcSettings = new RobustCopySettings(1 << bufferExponent, App.WAIT_TIME, rollbackBuffers,
-				zeroMode);
-		MultiFileSettings mfSettings = new MultiFileSettings(logMode, filesSimultaneously, terminalWidth);
+				mode, streams, pipelineDepth, minBufferExponent == 0 ? 0 : 1 << minBufferExponent,
+				asyncOps, reflink, cacheWindowExponent == 0 ? 0 : 1 << cacheWindowExponent,
+				preallocate, 1L << bufferBudgetExponent, delta, checksum, partial, verifyRollback);
+		MultiFileSettings mfSettings = new MultiFileSettings(logMode, filesSimultaneously, terminalWidth,
+				journal, streaming);
 		return Optional.of(new Settings(aSettings, rcSettings, mfSettings));
 	}
 }
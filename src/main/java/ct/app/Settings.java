@@ -5,34 +5,175 @@ import java.nio.file.Path;
 public record Settings(AnalyseSettings analyse, RobustCopySettings robustCopy, MultiFileSettings multiFile) {
 
 	public static record AnalyseSettings(Path sourceDir, Path targetDir, boolean dryRun, boolean overwrite,
-			boolean resume) {
+			boolean resume, boolean partial, boolean index) {
+	}
+
+	public static enum CopyMode {
+		DIRECT_BUFFER("Direct Buffer"), ZERO_COPY("Zero-Copy"), MAPPED("Memory-Mapped"), SERVER_SIDE("Server-Side"),
+		DIRECT_IO("Direct I/O"), SPARSE("Sparse");
+
+		private final String text;
+
+		CopyMode(String text) {
+			this.text = text;
+		}
+
+		@Override
+		public String toString() {
+			return text;
+		}
+	}
+
+	public static enum Checksum {
+		NONE("None"), CRC32C("CRC32C"), SHA_256("SHA-256");
+
+		private final String text;
+
+		Checksum(String text) {
+			this.text = text;
+		}
+
+		@Override
+		public String toString() {
+			return text;
+		}
 	}
 
 	public static record RobustCopySettings(int bufferSize, int waitBeforeRetryTimeSec, int rollbackBuffersNum,
-			boolean zeroCopy) {
+			CopyMode mode, int streams, int pipelineDepth, int minBufferSize, int asyncOps, boolean reflink,
+			int cacheWindow, boolean preallocate, long bufferBudget, boolean delta, Checksum checksum,
+			boolean partial, boolean verifyRollback) {
 	}
 
-	public static record MultiFileSettings(boolean logMode, int filesSimultaneously, int terminalWidth) {
+	public static record MultiFileSettings(boolean logMode, int filesSimultaneously, int terminalWidth,
+			boolean journal, boolean streaming) {
 	}
 
+	private static final long TEST_BUFFER_BUDGET = 1L << 30;
+
 	public static boolean verbose = false;
 	public static boolean rawBytes = false;
 	public static boolean terminalColor = true;
 	public static boolean terminalUserInterface = true;
 	public static boolean devMode = false;
 
-	public static Settings testBufferSizes(int bufferSize, boolean zeroCopy) {
-		return testFactory(bufferSize, 0, 0, 0, zeroCopy);
+	/**
+	 * Settings for tests and benchmarks, only the options exercised are set.
+	 */
+	public static TestBuilder test(int bufferSize) {
+		return new TestBuilder(bufferSize);
 	}
 
-	public static Settings testRobustCopy(int bufferSize, int rollbackBuffersNum, boolean zeroCopy) {
-		return testFactory(bufferSize, 0, rollbackBuffersNum, 0, zeroCopy);
-	}
+	public static class TestBuilder {
+
+		private final int bufferSize;
+		private int waitBeforeRetryTimeSec = 0;
+		private int rollbackBuffersNum = 0;
+		private int filesSimultaneously = 0;
+		private CopyMode mode = CopyMode.DIRECT_BUFFER;
+		private int streams = 1;
+		private int pipelineDepth = 0;
+		private int minBufferSize = 0;
+		private int asyncOps = 0;
+		private boolean reflink = false;
+		private int cacheWindow = 0;
+		private boolean preallocate = false;
+		private long bufferBudget = TEST_BUFFER_BUDGET;
+		private boolean delta = false;
+		private Checksum checksum = Checksum.NONE;
+		private boolean partial = false;
+		private boolean verifyRollback = false;
+
+		private TestBuilder(int bufferSize) {
+			this.bufferSize = bufferSize;
+		}
+
+		public TestBuilder waitBeforeRetry(int sec) {
+			this.waitBeforeRetryTimeSec = sec;
+			return this;
+		}
+
+		public TestBuilder rollback(int buffersNum) {
+			this.rollbackBuffersNum = buffersNum;
+			return this;
+		}
+
+		public TestBuilder filesSimultaneously(int files) {
+			this.filesSimultaneously = files;
+			return this;
+		}
+
+		public TestBuilder mode(CopyMode mode) {
+			this.mode = mode;
+			return this;
+		}
+
+		public TestBuilder streams(int streams) {
+			this.streams = streams;
+			return this;
+		}
+
+		public TestBuilder pipelineDepth(int depth) {
+			this.pipelineDepth = depth;
+			return this;
+		}
+
+		public TestBuilder minBufferSize(int size) {
+			this.minBufferSize = size;
+			return this;
+		}
+
+		public TestBuilder asyncOps(int ops) {
+			this.asyncOps = ops;
+			return this;
+		}
+
+		public TestBuilder reflink(boolean reflink) {
+			this.reflink = reflink;
+			return this;
+		}
+
+		public TestBuilder cacheWindow(int window) {
+			this.cacheWindow = window;
+			return this;
+		}
+
+		public TestBuilder preallocate(boolean preallocate) {
+			this.preallocate = preallocate;
+			return this;
+		}
+
+		public TestBuilder bufferBudget(long budget) {
+			this.bufferBudget = budget;
+			return this;
+		}
+
+		public TestBuilder delta(boolean delta) {
+			this.delta = delta;
+			return this;
+		}
+
+		public TestBuilder checksum(Checksum checksum) {
+			this.checksum = checksum;
+			return this;
+		}
+
+		public TestBuilder partial(boolean partial) {
+			this.partial = partial;
+			return this;
+		}
+
+		public TestBuilder verifyRollback(boolean verifyRollback) {
+			this.verifyRollback = verifyRollback;
+			return this;
+		}
 
-	public static Settings testFactory(int bufferSize, int waitBeforeRetryTimeSec, int rollbackBuffersNum,
-			int filesSimultaneously, boolean zeroCopy) {
-		return new Settings(new AnalyseSettings(null, null, false, false, false),
-				new RobustCopySettings(bufferSize, waitBeforeRetryTimeSec, rollbackBuffersNum, zeroCopy),
-				new MultiFileSettings(false, filesSimultaneously, App.TERMINAL_WIDTH));
+		public Settings build() {
+			return new Settings(new AnalyseSettings(null, null, false, false, false, partial, false),
+					new RobustCopySettings(bufferSize, waitBeforeRetryTimeSec, rollbackBuffersNum, mode, streams,
+							pipelineDepth, minBufferSize, asyncOps, reflink, cacheWindow, preallocate, bufferBudget,
+							delta, checksum, partial, verifyRollback),
+					new MultiFileSettings(false, filesSimultaneously, App.TERMINAL_WIDTH, false, false));
+		}
 	}
 }
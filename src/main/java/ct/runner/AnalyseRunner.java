@@ -1,11 +1,22 @@
 package ct.runner;
 
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
 import ct.action.AnalyseAction;
 import ct.action.AnalyseResult;
+import ct.action.TargetIndex;
+import ct.action.copy.model.ResumePoint;
 import ct.app.App;
 import ct.app.Settings;
+import ct.runner.copy.CopyJournal;
+import ct.runner.copy.TaskQueue;
 import ct.tui.FileList;
 import ct.tui.OptionSummary;
+import ct.util.AnsiEscapeCodes.Color;
 
 public class AnalyseRunner {
 
@@ -13,8 +24,30 @@ public class AnalyseRunner {
 		OptionSummary.show(settings);
 
 		App.info();
+		TargetIndex index = TargetIndex.load(settings.analyse());
+		try {
+			execute(settings, index);
+		} finally {
+			// Dry run leaves the target untouched
+			if (!settings.analyse().dryRun()) {
+				index.save();
+			}
+		}
+	}
+
+	private static void execute(Settings settings, TargetIndex index) {
+		if (settings.multiFile().streaming() && !settings.multiFile().journal() && !settings.analyse().dryRun()) {
+			stream(settings, index);
+			return;
+		}
+
+		// Unfinished files of an interrupted copy resume from their durable offsets
+		Map<Path, ResumePoint> journaled = CopyJournal.load(settings);
+		if (!journaled.isEmpty()) {
+			App.info("Resuming from journal");
+		}
 		App.infonn("Analysing files...");
-		AnalyseResult files = AnalyseAction.findAllFiles(settings.analyse());
+		AnalyseResult files = AnalyseAction.findAllFiles(settings, index, journaled, null);
 		App.info("complete");
 
 		FileList.show(files, settings.analyse());
@@ -26,7 +59,47 @@ public class AnalyseRunner {
 		} else if (files.copy().isEmpty()) {
 			App.infolb("Up to date");
 		} else {
-			CopyRunner.execute(files, settings);
+			CopyRunner.execute(files, settings, index);
+		}
+	}
+
+	/**
+	 * Copies files while the analysis is running, the file list is shown once
+	 * both are done.
+	 */
+	private static void stream(Settings settings, TargetIndex index) {
+		App.info("Analysing files while copying");
+		TaskQueue tasks = TaskQueue.streaming();
+		FutureTask<AnalyseResult> analysis = new FutureTask<>(() -> {
+			try {
+				return AnalyseAction.findAllFiles(settings, index, tasks::put);
+			} finally {
+				tasks.complete();
+			}
+		});
+		App.thread().name("Analyser").start(analysis);
+
+		CopyRunner.execute(tasks, settings, index);
+
+		AnalyseResult files;
+		try {
+			files = analysis.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof CancellationException) {
+				// Copy stopped before the analysis was done
+				return;
+			}
+			throw new RuntimeException(e.getCause());
+		}
+
+		FileList.show(files, settings.analyse());
+		if (tasks.total() == 0) {
+			App.infolb("Up to date");
+		} else {
+			App.infolb(Color.WHITE_INTENSE.highlight("+ + + Files copied while analysing", tasks.total()));
 		}
 	}
 }
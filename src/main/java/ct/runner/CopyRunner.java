@@ -3,10 +3,13 @@ package ct.runner;
 import java.time.Duration;
 
 import ct.action.AnalyseResult;
+import ct.action.TargetIndex;
 import ct.action.copy.io.FilesIO;
 import ct.app.App;
 import ct.app.Settings;
+import ct.runner.copy.CopyJournal;
 import ct.runner.copy.ICopyRunnerModule;
+import ct.runner.copy.TaskQueue;
 import ct.util.Utils;
 import ct.util.Utils.Timer;
 
@@ -14,19 +17,34 @@ public class CopyRunner {
 
 	private static Thread shutdownHookThread;
 
-	public static void execute(AnalyseResult files, Settings settings) {
+	public static void execute(AnalyseResult files, Settings settings, TargetIndex index) {
+		copy(TaskQueue.of(files.copy()), CopyJournal.create(settings, files.copy()), index, settings);
+	}
+
+	/**
+	 * Copies tasks while the analysis streams them, without journal since the
+	 * plan is not known up front.
+	 */
+	public static void execute(TaskQueue tasks, Settings settings, TargetIndex index) {
+		copy(tasks, CopyJournal.disabled(), index, settings);
+	}
+
+	private static void copy(TaskQueue tasks, CopyJournal journal, TargetIndex index, Settings settings) {
 		Timer timer = Utils.timer();
-		createAndAddShutdownHook();
+		createAndAddShutdownHook(journal);
 		try {
-			ICopyRunnerModule cm = ICopyRunnerModule.create(settings, new FilesIO());
-			cm.copyAll(files.copy());
+			ICopyRunnerModule cm = ICopyRunnerModule.create(settings, new FilesIO(), journal, index);
+			cm.copyAll(tasks);
 		} finally {
+			// Streaming analysis stops once no worker takes its tasks
+			tasks.close();
+			journal.close();
 			removeShutdownHook();
 			App.infolb(timer.elapsedSeconds("Copy Finished in"));
 		}
 	}
 
-	private static void createAndAddShutdownHook() {
+	private static void createAndAddShutdownHook(CopyJournal journal) {
 		final Thread mainThread = Thread.currentThread();
 		shutdownHookThread = new Thread(() -> {
 			try {
@@ -36,6 +54,8 @@ public class CopyRunner {
 				if (!terminated) {
 					App.error("Graceful shutdown failed, hard exiting, timeout reached", App.SHUTDOWN_HARD_WAIT);
 				}
+				// Last positions of aborted files, also when workers did not stop
+				journal.commit();
 			} catch (InterruptedException e) {
 				Thread.currentThread().interrupt();
 				throw new AssertionError("Unexpected interrupt in shutdown hook", e);
@@ -0,0 +1,480 @@
+package ct.runner.copy;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+
+import ct.action.copy.model.CopyTask;
+import ct.action.copy.model.FileRecord;
+import ct.action.copy.model.PartialFile;
+import ct.action.copy.model.ResumePoint;
+import ct.action.copy.progress.IProgressEvent;
+import ct.action.copy.progress.IProgressEvent.AbortEvent;
+import ct.action.copy.progress.IProgressEvent.CopyEndEvent;
+import ct.action.copy.progress.IProgressEvent.CopyStartEvent;
+import ct.action.copy.progress.IProgressEvent.RestartEvent;
+import ct.action.copy.progress.IProgressReport;
+import ct.app.App;
+import ct.app.Settings;
+import ct.app.Settings.AnalyseSettings;
+
+/**
+ * Binary journal of a copy run in the target directory, so the analysis of a
+ * restarted copy resumes unfinished files from durably written offsets instead
+ * of the target length. Starts with the plan, one record per file, followed by offset and done
+ * records, each with a CRC32C so a torn tail after a crash is ignored. Workers
+ * only publish positions, a committer forces the targets and then appends the
+ * records of all files with one journal write and sync (group commit), so a
+ * recorded offset is never ahead of the bytes on disk.
+ */
+public class CopyJournal {
+
+	public static final String FILE_NAME = ".ct-journal";
+	static final long COMMIT_INTERVAL_MS = 1000;
+
+	// "CTJRNL01"
+	private static final long MAGIC = 0x43544A524E4C3031L;
+	private static final byte TASK = 1;
+	private static final byte OFFSET = 2;
+	private static final byte DONE = 3;
+	private static final int NONE = -1;
+
+	private static final CopyJournal DISABLED = new CopyJournal(null, List.of(), 0, true, false);
+
+	private final Path file;
+	private final List<CopyTask> tasks;
+	private final boolean ordered;
+	private final boolean partial;
+	private final Path[] partials;
+	private final Map<CopyTask, Integer> ids = new HashMap<>();
+	private final AtomicIntegerArray slotIds;
+	private final AtomicLongArray slotPositions;
+	private final Queue<Integer> finished = new ConcurrentLinkedQueue<>();
+	private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+	// Committer state, record being built is appended with its checksum
+	private final ByteBuffer record = ByteBuffer.allocate(1 + Integer.BYTES + Long.BYTES * 3 + Short.BYTES + 0xFFFF);
+	private final CRC32C crc = new CRC32C();
+	private final int[] committedIds;
+	private final long[] committedPositions;
+	private FileChannel channel;
+	private Thread committer;
+	private boolean closed = false;
+	private int doneCount = 0;
+
+	private CopyJournal(Path file, List<CopyTask> tasks, int slots, boolean ordered, boolean partial) {
+		this.file = file;
+		this.tasks = tasks;
+		this.ordered = ordered;
+		this.partial = partial;
+		this.partials = new Path[tasks.size()];
+		this.slotIds = new AtomicIntegerArray(slots);
+		this.slotPositions = new AtomicLongArray(slots);
+		this.committedIds = new int[slots];
+		this.committedPositions = new long[slots];
+		for (int i = 0; i < slots; i++) {
+			slotIds.set(i, NONE);
+			committedIds[i] = NONE;
+		}
+		for (int i = 0; i < tasks.size(); i++) {
+			ids.put(tasks.get(i), i);
+		}
+	}
+
+	public static CopyJournal disabled() {
+		return DISABLED;
+	}
+
+	static Path journalFile(Path targetDir) {
+		return targetDir.resolve(FILE_NAME);
+	}
+
+	/**
+	 * Journal of the tasks when enabled, with one slot per file copied at the
+	 * same time. Else a journal of a previous run is removed, it would resume
+	 * files copied since from stale offsets.
+	 */
+	public static CopyJournal create(Settings settings, List<CopyTask> tasks) {
+		return create(settings, tasks, COMMIT_INTERVAL_MS);
+	}
+
+	/**
+	 * Journal committed every interval ms, 0 commits only when asked and on
+	 * close.
+	 */
+	static CopyJournal create(Settings settings, List<CopyTask> tasks, long commitInterval) {
+		Path file = journalFile(settings.analyse().targetDir());
+		if (!settings.multiFile().journal()) {
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException e) {
+				App.warning("Journal problem", e.getMessage());
+			}
+			return DISABLED;
+		}
+		int slots = settings.multiFile().logMode() ? 1 : settings.multiFile().filesSimultaneously();
+		CopyJournal journal = new CopyJournal(file, tasks, slots, settings.robustCopy().streams() <= 1,
+				settings.robustCopy().partial());
+		try {
+			journal.writePlan(settings.analyse().sourceDir());
+		} catch (IOException e) {
+			App.warning("Journal disabled", e.getMessage());
+			return DISABLED;
+		}
+		journal.committer = App.thread().name("JournalCommitter").start(() -> journal.commitLoop(commitInterval));
+		return journal;
+	}
+
+	/**
+	 * Resume points of the unfinished files of the journal of a previous run
+	 * from the same source, by path relative from source. Empty when the journal
+	 * is not enabled or there is none, a journal of a complete run is removed
+	 * unless a dry run.
+	 */
+	public static Map<Path, ResumePoint> load(Settings settings) {
+		AnalyseSettings as = settings.analyse();
+		Path file = journalFile(as.targetDir());
+		if (!settings.multiFile().journal() || !Files.exists(file)) {
+			return Map.of();
+		}
+
+		List<Entry> entries = new ArrayList<>();
+		try (CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(Files.newInputStream(file)),
+				new CRC32C()); DataInputStream in = new DataInputStream(checked)) {
+			if (in.readLong() != MAGIC || !in.readUTF().equals(as.sourceDir().toString())) {
+				App.warning("Ignoring journal of another copy", file);
+				return Map.of();
+			}
+			readRecords(checked, in, entries);
+		} catch (IOException e) {
+			App.warning("Ignoring journal", e.getMessage());
+			return Map.of();
+		}
+
+		// Only unfinished files, without any the run is complete
+		Map<Path, ResumePoint> journaled = new HashMap<>();
+		for (Entry e : entries) {
+			if (!e.done) {
+				journaled.put(e.relative, new ResumePoint(e.size, e.modified, e.offset));
+			}
+		}
+		if (journaled.isEmpty() && !as.dryRun()) {
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException e) {
+				App.warning("Journal problem", e.getMessage());
+			}
+		}
+		return journaled;
+	}
+
+	/**
+	 * Report of a worker, publishes its positions to the slot.
+	 */
+	public IProgressReport report(int slot, IProgressReport pr) {
+		return this == DISABLED ? pr : new JournalReport(slot, pr);
+	}
+
+	/**
+	 * Group commit, forces targets and appends their offset and done records.
+	 * Also called by the shutdown hook.
+	 */
+	public synchronized void commit() {
+		if (channel == null) {
+			return;
+		}
+		try {
+			// Position is consistent with the task when the slot is unchanged meanwhile
+			for (int slot = 0; slot < slotIds.length(); slot++) {
+				int id = slotIds.get(slot);
+				long position = slotPositions.get(slot);
+				if (id == NONE || id != slotIds.get(slot)
+						|| (id == committedIds[slot] && position == committedPositions[slot])) {
+					continue;
+				}
+				if (force(id, false)) {
+					record(OFFSET, id).putLong(position);
+					append();
+					committedIds[slot] = id;
+					committedPositions[slot] = position;
+				}
+			}
+
+			// Finished files, target complete and modified time set
+			Integer id;
+			while ((id = finished.peek()) != null) {
+				if (force(id, true)) {
+					record(DONE, id);
+					append();
+					doneCount++;
+				}
+				finished.poll();
+			}
+
+			// One write and sync for all records
+			if (pending.size() > 0) {
+				ByteBuffer bb = ByteBuffer.wrap(pending.toByteArray());
+				while (bb.hasRemaining()) {
+					channel.write(bb);
+				}
+				channel.force(false);
+				pending.reset();
+			}
+		} catch (IOException e) {
+			// Records are kept and written by the next commit
+		}
+	}
+
+	/**
+	 * Stops committing, removes the journal once all files are done.
+	 */
+	public void close() {
+		if (this == DISABLED) {
+			return;
+		}
+		// Channels are closed by I/O of an interrupted thread
+		boolean interrupted = Thread.interrupted();
+		try {
+			synchronized (this) {
+				closed = true;
+				notifyAll();
+			}
+			committer.join();
+			commit();
+			synchronized (this) {
+				channel.close();
+				channel = null;
+				if (doneCount == tasks.size()) {
+					Files.deleteIfExists(file);
+				} else if (pending.size() > 0) {
+					App.warning("Journal not up to date", file);
+				}
+			}
+		} catch (InterruptedException e) {
+			interrupted = true;
+		} catch (IOException e) {
+			App.warning("Journal problem", e.getMessage());
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	void start(int slot, CopyTask ct) {
+		// Slot is released first, so the committer never pairs the new position with the old task
+		slotIds.set(slot, NONE);
+		slotPositions.set(slot, ct.sourceFile().position());
+		slotIds.set(slot, ids.getOrDefault(ct, NONE));
+	}
+
+	void position(int slot, long position) {
+		slotPositions.set(slot, position);
+	}
+
+	void done(int slot) {
+		int id = slotIds.get(slot);
+		slotIds.set(slot, NONE);
+		if (id != NONE) {
+			finished.add(id);
+		}
+	}
+
+	private synchronized void commitLoop(long interval) {
+		// Not interrupted, that would close the journal channel during a commit
+		while (!closed) {
+			try {
+				wait(interval);
+			} catch (InterruptedException e) {
+				return;
+			}
+			commit();
+		}
+	}
+
+	private synchronized void writePlan(Path sourceDir) throws IOException {
+		// Written aside and moved in place, a crash leaves the old or the new journal
+		DataOutputStream out = new DataOutputStream(pending);
+		out.writeLong(MAGIC);
+		out.writeUTF(sourceDir.toString());
+		for (int id = 0; id < tasks.size(); id++) {
+			FileRecord source = tasks.get(id).sourceFile();
+			// Analysed modified time, stat only for tasks not from an analysis
+			FileTime modified = source.modified() != null ? source.modified()
+					: Files.getLastModifiedTime(source.path());
+			byte[] path = source.relativeFromSource().toString().getBytes(StandardCharsets.UTF_8);
+			record(TASK, id).putLong(source.size()).putLong(modified.toMillis()).putLong(source.position())
+					.putShort((short) path.length).put(path);
+			if (partial) {
+				partials[id] = PartialFile.path(tasks.get(id).targetFile().path(), source.size(), modified);
+			}
+			append();
+		}
+
+		Path temp = file.resolveSibling(FILE_NAME + ".tmp");
+		try (FileChannel fc = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer bb = ByteBuffer.wrap(pending.toByteArray());
+			while (bb.hasRemaining()) {
+				fc.write(bb);
+			}
+			fc.force(false);
+		}
+		pending.reset();
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+
+	private ByteBuffer record(byte type, int id) {
+		return record.clear().put(type).putInt(id);
+	}
+
+	private void append() {
+		crc.reset();
+		crc.update(record.array(), 0, record.position());
+		record.putInt((int) crc.getValue());
+		pending.write(record.array(), 0, record.position());
+	}
+
+	private boolean force(int id, boolean done) throws IOException {
+		// Bytes of the target are durable before the record that covers them, written to the partial file until done
+		Path target = partial && !done ? partials[id] : tasks.get(id).targetFile().path();
+		try (FileChannel fc = FileChannel.open(target, StandardOpenOption.WRITE)) {
+			fc.force(false);
+			return true;
+		} catch (NoSuchFileException e) {
+			return false;
+		}
+	}
+
+	private static class Entry {
+		final Path relative;
+		final long size;
+		final long modified;
+		long offset;
+		boolean done;
+
+		Entry(Path relative, long size, long modified, long offset) {
+			this.relative = relative;
+			this.size = size;
+			this.modified = modified;
+			this.offset = offset;
+		}
+	}
+
+	private static void readRecords(CheckedInputStream checked, DataInputStream in, List<Entry> entries)
+			throws IOException {
+		try {
+			while (true) {
+				checked.getChecksum().reset();
+				int type = in.read();
+				if (type == -1) {
+					return;
+				}
+				int id = in.readInt();
+				Entry entry = null;
+				long offset = 0;
+				switch (type) {
+				case TASK -> {
+					long size = in.readLong();
+					long modified = in.readLong();
+					long position = in.readLong();
+					byte[] path = in.readNBytes(in.readUnsignedShort());
+					entry = new Entry(Paths.get(new String(path, StandardCharsets.UTF_8)), size, modified, position);
+				}
+				case OFFSET -> offset = in.readLong();
+				case DONE -> {
+				}
+				default -> {
+					return;
+				}
+				}
+
+				// Torn or corrupt tail, records up to here are durable
+				int crc = (int) checked.getChecksum().getValue();
+				if (in.readInt() != crc) {
+					return;
+				}
+				if (type == TASK) {
+					if (id != entries.size()) {
+						return;
+					}
+					entries.add(entry);
+				} else if (id < 0 || id >= entries.size()) {
+					return;
+				} else if (type == OFFSET) {
+					entries.get(id).offset = offset;
+				} else {
+					entries.get(id).done = true;
+				}
+			}
+		} catch (EOFException e) {
+			// Torn tail
+		}
+	}
+
+	private class JournalReport implements IProgressReport {
+
+		private final int slot;
+		private final IProgressReport pr;
+
+		JournalReport(int slot, IProgressReport pr) {
+			this.slot = slot;
+			this.pr = pr;
+		}
+
+		@Override
+		public void event(IProgressEvent event) throws InterruptedException {
+			switch (event) {
+			case CopyStartEvent e -> start(slot, e.ct());
+			case RestartEvent e when ordered -> position(slot, e.pos());
+			case CopyEndEvent _ -> done(slot);
+			default -> {
+			}
+			}
+			pr.event(event);
+		}
+
+		@Override
+		public void progress(long position) throws InterruptedException {
+			if (ordered) {
+				position(slot, position);
+			}
+			pr.progress(position);
+		}
+
+		@Override
+		public void resumable(long position) throws InterruptedException {
+			position(slot, position);
+			pr.resumable(position);
+		}
+
+		@Override
+		public void abort(AbortEvent event) {
+			pr.abort(event);
+		}
+	}
+}
@@ -2,15 +2,21 @@ package ct.runner.copy;
 
 import java.util.List;
 
+import ct.action.TargetIndex;
 import ct.action.copy.io.IOWrapper;
 import ct.action.copy.model.CopyTask;
 import ct.app.Settings;
 
 public interface ICopyRunnerModule {
 
-	void copyAll(List<CopyTask> tasks);
+	void copyAll(TaskQueue tasks);
 
-	static ICopyRunnerModule create(Settings s, IOWrapper io) {
-		return s.multiFile().logMode() ? new LogModeCopy(s, io) : new MultiFileCopy(s, io);
+	default void copyAll(List<CopyTask> tasks) {
+		copyAll(TaskQueue.of(tasks));
+	}
+
+	static ICopyRunnerModule create(Settings s, IOWrapper io, CopyJournal journal, TargetIndex index) {
+		return s.multiFile().logMode() ? new LogModeCopy(s, io, journal, index)
+				: new MultiFileCopy(s, io, journal, index);
 	}
 }
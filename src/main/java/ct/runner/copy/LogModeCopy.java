@@ -1,8 +1,8 @@
 package ct.runner.copy;
 
-import java.util.List;
-
+import ct.action.TargetIndex;
 import ct.action.copy.RobustCopy;
+import ct.action.copy.io.BufferPool;
 import ct.action.copy.io.IOWrapper;
 import ct.action.copy.model.CopyTask;
 import ct.action.copy.progress.IProgressEvent.AbortEvent;
@@ -16,23 +16,32 @@ public class LogModeCopy implements ICopyRunnerModule {
 
 	private final RobustCopySettings settings;
 	private final IOWrapper io;
+	private final CopyJournal journal;
+	private final TargetIndex index;
 
-	public LogModeCopy(Settings settings, IOWrapper io) {
+	public LogModeCopy(Settings settings, IOWrapper io, CopyJournal journal, TargetIndex index) {
 		this.settings = settings.robustCopy();
 		this.io = io;
+		this.journal = journal;
+		this.index = index;
+		BufferPool.shared(this.settings.bufferBudget()).workers(1);
 	}
 
 	@Override
-	public void copyAll(List<CopyTask> tasks) {
-		IProgressReport pr = new StdoutProgress();
+	public void copyAll(TaskQueue tasks) {
+		IProgressReport pr = journal.report(0, index.report(new StdoutProgress()));
 		RobustCopy rc = RobustCopy.create(settings, io, pr);
-		for (CopyTask task : tasks) {
-			try {
+		CopyTask task = null;
+		try {
+			while ((task = tasks.take()) != null) {
 				App.info();
 				rc.copy(task);
-			} catch (InterruptedException e) {
+				task = null;
+			}
+		} catch (InterruptedException e) {
+			// Not aborted while waiting for the analysis
+			if (task != null) {
 				pr.abort(new AbortEvent(task));
-				return;
 			}
 		}
 	}
@@ -3,14 +3,16 @@ package ct.runner.copy;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 
+import ct.action.TargetIndex;
 import ct.action.copy.RobustCopy;
+import ct.action.copy.io.BufferPool;
 import ct.action.copy.io.IOWrapper;
 import ct.action.copy.model.CopyTask;
 import ct.action.copy.progress.IProgressEvent;
 import ct.action.copy.progress.IProgressEvent.AbortEvent;
+import ct.action.copy.progress.IProgressEvent.CopyProgressEvent;
+import ct.action.copy.progress.IProgressEvent.CopyStartEvent;
 import ct.action.copy.progress.IProgressReport;
 import ct.app.App;
 import ct.app.Settings;
@@ -18,12 +20,14 @@ import ct.tui.copy.AnsiTerminalProgress;
 
 public class MultiFileCopy implements ICopyRunnerModule {
 
-	private static final int QUEUE_SIZE_PER_THREAD = 4;
+	private static final long FRAME_TIME = 100;
 	private static final String NAME_PREFIX = "CopyWorker";
 
 	private final Settings settings;
 	private final IOWrapper io;
-	private final BlockingQueue<ProgressUpdate> progressQueue;
+	private final CopyJournal journal;
+	private final TargetIndex index;
+	private final ProgressBoard board;
 
 	private static class WorkerThread {
 		private final Thread thread;
@@ -42,39 +46,39 @@ public class MultiFileCopy implements ICopyRunnerModule {
 		}
 	}
 
-	public MultiFileCopy(Settings settings, IOWrapper io) {
+	public MultiFileCopy(Settings settings, IOWrapper io, CopyJournal journal, TargetIndex index) {
 		this.settings = settings;
 		this.io = io;
-		progressQueue = new ArrayBlockingQueue<>(settings.multiFile().filesSimultaneously() * QUEUE_SIZE_PER_THREAD);
+		this.journal = journal;
+		this.index = index;
+		board = new ProgressBoard(settings.multiFile().filesSimultaneously());
+		BufferPool.shared(settings.robustCopy().bufferBudget()).workers(settings.multiFile().filesSimultaneously());
 	}
 
 	@Override
-	public void copyAll(List<CopyTask> tasks) {
-		AnsiTerminalProgress progress = new AnsiTerminalProgress(settings.multiFile(), tasks.size());
+	public void copyAll(TaskQueue tasks) {
+		AnsiTerminalProgress progress = new AnsiTerminalProgress(settings.multiFile());
 		List<WorkerThread> threads = new ArrayList<>();
 
-		BlockingQueue<CopyTask> copyTaskQueue = new ArrayBlockingQueue<>(tasks.size(), false, tasks);
-
 		for (int tId = 0; tId < settings.multiFile().filesSimultaneously(); tId++) {
-			threads.add(new WorkerThread(workerThread(tId, copyTaskQueue)));
+			threads.add(new WorkerThread(workerThread(tId, tasks)));
 		}
 
-		eventLoop(threads, progress);
+		eventLoop(threads, tasks, progress);
 	}
 
-	private void eventLoop(List<WorkerThread> threads, AnsiTerminalProgress progress) {
+	private void eventLoop(List<WorkerThread> threads, TaskQueue tasks, AnsiTerminalProgress progress) {
 		try {
-			// Run until done
+			// Run until done, one frame at a time
+			long[] drawn = new long[threads.size()];
 			while (threads.stream().anyMatch(WorkerThread::isActive)) {
-				ProgressUpdate pu = progressQueue.take();
-				if (pu.exception() != null) {
-					App.error("Exception thrown by", threadName(pu.threadId()));
-					throw pu.exception();
-				} else if (pu.event() != null) {
-					progress.update(pu.event(), pu.threadId());
-				} else {
-					threads.get(pu.threadId()).eof();
-					progress.eof(pu.threadId());
+				Thread.sleep(FRAME_TIME);
+				// Grows while the analysis streams tasks
+				progress.total(tasks.total(), tasks.isComplete());
+				for (int tId = 0; tId < threads.size(); tId++) {
+					if (threads.get(tId).isActive()) {
+						frame(tId, threads.get(tId), progress, drawn);
+					}
 				}
 			}
 		} catch (Throwable t) {
@@ -111,24 +115,52 @@ public class MultiFileCopy implements ICopyRunnerModule {
 		}
 	}
 
-	private Thread workerThread(final int tId, BlockingQueue<CopyTask> copyTaskQueue) {
-		ProgressSender ps = new ProgressSender(tId, progressQueue);
-		return App.thread().name(threadName(tId)).uncaughtExceptionHandler((_, e) -> {
-			try {
-				ps.exception(e);
-			} catch (InterruptedException _) {
-				// Just let thread die
-			}
-		}).start(() -> {
-			RobustCopy rc = RobustCopy.create(settings.robustCopy(), io, ps);
+	private void frame(int tId, WorkerThread w, AnsiTerminalProgress progress, long[] drawn) throws Throwable {
+		// Sampled first, belongs to the file of the events drained below
+		long position = board.position(tId);
+		boolean done = board.isDone(tId);
+		Throwable exception = board.exception(tId);
+		if (exception != null) {
+			App.error("Exception thrown by", threadName(tId));
+			throw exception;
+		}
+
+		// Discrete events
+		boolean started = false;
+		IProgressEvent event;
+		while ((event = board.poll(tId)) != null) {
+			started |= event instanceof CopyStartEvent;
+			progress.update(event, tId);
+		}
+
+		// Position may be of previous file if one started meanwhile
+		if (!started && position != ProgressBoard.UNKNOWN && position != drawn[tId]) {
+			drawn[tId] = position;
+			progress.progress(position, tId);
+		}
+
+		if (done) {
+			w.eof();
+			progress.eof(tId);
+		}
+	}
+
+	private Thread workerThread(final int tId, TaskQueue tasks) {
+		ProgressSender ps = new ProgressSender(tId, board);
+		return App.thread().name(threadName(tId)).uncaughtExceptionHandler((_, e) -> ps.exception(e)).start(() -> {
+			RobustCopy rc = RobustCopy.create(settings.robustCopy(), io, journal.report(tId, index.report(ps)));
 			CopyTask ct = null;
 			try {
-				while ((ct = copyTaskQueue.poll()) != null) {
+				while ((ct = tasks.take()) != null) {
 					rc.copy(ct);
+					ct = null;
 				}
 				ps.done();
 			} catch (InterruptedException e) {
-				ps.abort(new AbortEvent(ct));
+				// Not aborted while waiting for the analysis
+				if (ct != null) {
+					ps.abort(new AbortEvent(ct));
+				}
 			}
 		});
 	}
@@ -137,22 +169,31 @@ public class MultiFileCopy implements ICopyRunnerModule {
 		return NAME_PREFIX + (tId + 1);
 	}
 
-	public record ProgressUpdate(int threadId, IProgressEvent event, Throwable exception) {
-	}
-
 	private static class ProgressSender implements IProgressReport {
 
 		private final int threadId;
-		private final BlockingQueue<ProgressUpdate> mq;
+		private final ProgressBoard board;
 
-		public ProgressSender(int threadId, BlockingQueue<ProgressUpdate> mq) {
+		public ProgressSender(int threadId, ProgressBoard board) {
 			this.threadId = threadId;
-			this.mq = mq;
+			this.board = board;
 		}
 
 		@Override
 		public void event(IProgressEvent event) throws InterruptedException {
-			mq.put(new ProgressUpdate(threadId, event, null));
+			switch (event) {
+			case CopyProgressEvent e -> progress(e.size());
+			case CopyStartEvent _ -> {
+				board.position(threadId, ProgressBoard.UNKNOWN);
+				board.publish(threadId, event);
+			}
+			default -> board.publish(threadId, event);
+			}
+		}
+
+		@Override
+		public void progress(long position) {
+			board.position(threadId, position);
 		}
 
 		@Override
@@ -160,12 +201,12 @@ public class MultiFileCopy implements ICopyRunnerModule {
 			App.highlight("Aborted", event.ct().sourceFile());
 		}
 
-		void done() throws InterruptedException {
-			mq.put(new ProgressUpdate(threadId, null, null));
+		void done() {
+			board.done(threadId);
 		}
 
-		void exception(Throwable e) throws InterruptedException {
-			mq.put(new ProgressUpdate(threadId, null, e));
+		void exception(Throwable e) {
+			board.exception(threadId, e);
 		}
 	}
 }
@@ -0,0 +1,111 @@
+package ct.runner.copy;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import ct.action.copy.progress.IProgressEvent;
+
+/**
+ * Progress of the copy workers, shared with the UI without locks. Bytes copied
+ * go to a per worker counter the UI samples at its own frame rate, discrete
+ * events go through a single producer, single consumer ring per worker. Only
+ * discrete events ever wait, when the UI is a whole ring behind.
+ */
+class ProgressBoard {
+
+	static final long UNKNOWN = -1;
+
+	// Counters 128 bytes apart, workers do not share cache lines
+	private static final int PAD = 16;
+	private static final int RING_SIZE = 1 << 10;
+	private static final long FULL_WAIT_NANOS = 1_000_000;
+
+	private final AtomicLongArray positions;
+	private final Ring[] rings;
+
+	private static class Ring {
+		private final IProgressEvent[] events = new IProgressEvent[RING_SIZE];
+		private final AtomicLong head = new AtomicLong();
+		private final AtomicLong tail = new AtomicLong();
+		private volatile boolean done = false;
+		private volatile Throwable exception;
+
+		boolean offer(IProgressEvent event) {
+			long t = tail.getPlain();
+			if (t - head.getAcquire() == RING_SIZE) {
+				return false;
+			}
+			events[(int) (t & (RING_SIZE - 1))] = event;
+			tail.setRelease(t + 1);
+			return true;
+		}
+
+		IProgressEvent poll() {
+			long h = head.getPlain();
+			if (h == tail.getAcquire()) {
+				return null;
+			}
+			int i = (int) (h & (RING_SIZE - 1));
+			IProgressEvent event = events[i];
+			events[i] = null;
+			head.setRelease(h + 1);
+			return event;
+		}
+	}
+
+	ProgressBoard(int workers) {
+		positions = new AtomicLongArray(workers * PAD);
+		rings = new Ring[workers];
+		for (int tId = 0; tId < workers; tId++) {
+			positions.set(tId * PAD, UNKNOWN);
+			rings[tId] = new Ring();
+		}
+	}
+
+	/**
+	 * Bytes copied of the current file, never blocks.
+	 */
+	void position(int tId, long position) {
+		positions.setRelease(tId * PAD, position);
+	}
+
+	long position(int tId) {
+		return positions.getAcquire(tId * PAD);
+	}
+
+	void publish(int tId, IProgressEvent event) throws InterruptedException {
+		while (!rings[tId].offer(event)) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			LockSupport.parkNanos(FULL_WAIT_NANOS);
+		}
+	}
+
+	/**
+	 * Next event of worker, null when none is waiting.
+	 */
+	IProgressEvent poll(int tId) {
+		return rings[tId].poll();
+	}
+
+	/**
+	 * Worker published its last event.
+	 */
+	void done(int tId) {
+		rings[tId].done = true;
+	}
+
+	boolean isDone(int tId) {
+		return rings[tId].done;
+	}
+
+	void exception(int tId, Throwable e) {
+		rings[tId].exception = e;
+	}
+
+	Throwable exception(int tId) {
+		return rings[tId].exception;
+	}
+}
@@ -0,0 +1,116 @@
+package ct.runner.copy;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ct.action.copy.model.CopyTask;
+
+/**
+ * Copy tasks taken by the workers. Either all tasks of a finished analysis, or
+ * streamed by an analysis still running, bounded so workers copy the first
+ * files found while the analysis is never far ahead of them.
+ */
+public class TaskQueue {
+
+	static final int STREAM_CAPACITY = 1024;
+	private static final long POLL_MS = 100;
+
+	private final List<CopyTask> tasks;
+	private final AtomicInteger next = new AtomicInteger();
+	private final BlockingQueue<CopyTask> queue;
+	private final AtomicInteger total;
+	private volatile boolean complete;
+	private volatile boolean closed = false;
+
+	private TaskQueue(List<CopyTask> tasks, BlockingQueue<CopyTask> queue, int total, boolean complete) {
+		this.tasks = tasks;
+		this.queue = queue;
+		this.total = new AtomicInteger(total);
+		this.complete = complete;
+	}
+
+	/**
+	 * Tasks of a finished analysis, taken by index so a task is only built
+	 * when a worker takes it.
+	 */
+	public static TaskQueue of(List<CopyTask> tasks) {
+		return new TaskQueue(tasks, null, tasks.size(), true);
+	}
+
+	public static TaskQueue streaming() {
+		return new TaskQueue(null, new ArrayBlockingQueue<>(STREAM_CAPACITY), 0, false);
+	}
+
+	/**
+	 * Adds a task found by the analysis, waits while the queue is full.
+	 *
+	 * @throws CancellationException when the copy stopped, analysis is not
+	 *                               needed anymore
+	 */
+	public void put(CopyTask ct) {
+		// Counted first, a worker can take it before the total is read
+		total.incrementAndGet();
+		try {
+			while (!queue.offer(ct, POLL_MS, TimeUnit.MILLISECONDS)) {
+				if (closed) {
+					throw new CancellationException("Copy stopped");
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Analyse interrupted");
+		}
+	}
+
+	/**
+	 * No more tasks are added.
+	 */
+	public void complete() {
+		complete = true;
+	}
+
+	/**
+	 * Copy stopped, tasks are not taken anymore.
+	 */
+	public void close() {
+		closed = true;
+	}
+
+	/**
+	 * Next task, waits for the analysis when streamed.
+	 *
+	 * @return null when all tasks are taken
+	 */
+	public CopyTask take() throws InterruptedException {
+		if (tasks != null) {
+			int i = next.getAndIncrement();
+			return i < tasks.size() ? tasks.get(i) : null;
+		}
+		while (true) {
+			// Read before polling, the last task is added before completion
+			boolean done = complete;
+			CopyTask ct = done ? queue.poll() : queue.poll(POLL_MS, TimeUnit.MILLISECONDS);
+			if (ct != null || done) {
+				return ct;
+			}
+		}
+	}
+
+	/**
+	 * Tasks found so far.
+	 */
+	public int total() {
+		return total.get();
+	}
+
+	/**
+	 * Total is final.
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+}
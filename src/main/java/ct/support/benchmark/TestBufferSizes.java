@@ -15,6 +15,7 @@ import ct.action.copy.model.CopyTask;
 import ct.action.copy.model.FileRecord;
 import ct.app.App;
 import ct.app.Settings;
+import ct.app.Settings.CopyMode;
 import ct.support.SupportUtils;
 import ct.tui.copy.StdoutProgress;
 import ct.util.TestUtils;
@@ -23,8 +24,8 @@ import ct.util.Utils.Timer;
 
 public class TestBufferSizes {
 
-	private static final boolean DEV_MODE = true;
-	private static final boolean ZERO_COPY = true;
+	private static final CopyMode MODE = CopyMode.ZERO_COPY;
+	private static final int PIPELINE_DEPTH = 2;
 
 	public static void main(String[] args) throws Exception {
 		App.info("= = = = Copy Tool Buffer Test = = = =");
@@ -45,14 +46,13 @@ public class TestBufferSizes {
 			return;
 		}
 
-		Settings.devMode = DEV_MODE;
 		Path tempFile = Paths.get(System.getProperty("java.io.tmpdir"), "ct-test-buffer-temp-file");
 		App.info();
 		App.highlight("Test Dir ", testDir);
 		App.highlight("Temp File", tempFile);
 		App.highlight("Hash File", hashFile);
-		App.highlight("Zero Copy", ZERO_COPY);
-		App.highlight("Dev Mode ", Settings.devMode);
+		App.highlight("Copy Mode", MODE);
+		App.highlight("Pipeline ", PIPELINE_DEPTH);
 		App.info();
 
 		Timer timer = Utils.timer();
@@ -83,8 +83,9 @@ public class TestBufferSizes {
 				.append("), Size: ").append(Utils.size(source.size()));
 
 		long startTime = System.nanoTime();
-		RobustCopy robustCopy = RobustCopy.create(Settings.testBufferSizes(numBytes, ZERO_COPY).robustCopy(),
-				new FilesIO(), new StdoutProgress());
+		RobustCopy robustCopy = RobustCopy.create(
+				Settings.test(numBytes).mode(MODE).pipelineDepth(PIPELINE_DEPTH).build().robustCopy(), new FilesIO(),
+				new StdoutProgress());
 		robustCopy.copy(new CopyTask(source, target));
 		long elapsedNanos = System.nanoTime() - startTime;
 
@@ -13,6 +13,7 @@ import ct.action.copy.model.CopyTask;
 import ct.action.copy.model.FileRecord;
 import ct.app.App;
 import ct.app.Settings;
+import ct.app.Settings.CopyMode;
 import ct.support.SupportUtils;
 import ct.tui.copy.StdoutProgress;
 import ct.util.Utils;
@@ -20,8 +21,8 @@ import ct.util.Utils.Timer;
 
 public class TestLargeFile {
 
-	private static final boolean DEV_MODE = true;
-	private static final boolean ZERO_COPY = true;
+	private static final CopyMode MODE = CopyMode.ZERO_COPY;
+	private static final int PIPELINE_DEPTH = 2;
 	private static final int BUFF_FROM = 19;
 	private static final int BUFF_TO = 25;
 
@@ -44,7 +45,6 @@ public class TestLargeFile {
 			return;
 		}
 
-		Settings.devMode = DEV_MODE;
 		Path tempFile = Paths.get(System.getProperty("java.io.tmpdir"), "ct-test-largefile-temp-file");
 		FileRecord sourceFile = FileRecord.sourceFile(testFile, Files.size(testFile), testFile.getFileName());
 		App.info();
@@ -54,8 +54,8 @@ public class TestLargeFile {
 		App.highlight("Buff From", Utils.size(1 << BUFF_FROM));
 		App.highlight("Buff To  ", Utils.size(1 << BUFF_TO));
 		App.highlight("Num Tests", BUFF_TO - BUFF_FROM + 1);
-		App.highlight("Zero Copy", ZERO_COPY);
-		App.highlight("Dev Mode ", Settings.devMode);
+		App.highlight("Copy Mode", MODE);
+		App.highlight("Pipeline ", PIPELINE_DEPTH);
 		App.info();
 
 		Timer timer = Utils.timer();
@@ -82,8 +82,9 @@ public class TestLargeFile {
 				.append("), Size: ").append(Utils.size(source.size()));
 
 		long startTime = System.nanoTime();
-		RobustCopy robustCopy = RobustCopy.create(Settings.testBufferSizes(buff, ZERO_COPY).robustCopy(), new FilesIO(),
-				new StdoutProgress());
+		RobustCopy robustCopy = RobustCopy.create(
+				Settings.test(buff).mode(MODE).pipelineDepth(PIPELINE_DEPTH).build().robustCopy(),
+				new FilesIO(), new StdoutProgress());
 		robustCopy.copy(new CopyTask(source, target));
 		long elapsedNanos = System.nanoTime() - startTime;
 
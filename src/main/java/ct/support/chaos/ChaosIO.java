@@ -1,21 +1,30 @@
 package ct.support.chaos;
 
 import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
 import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.CopyOption;
+import java.nio.file.FileStore;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.nio.file.attribute.FileTime;
 import java.text.DecimalFormat;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 
 import ct.action.copy.io.FilesIO;
 import ct.action.copy.io.IOWrapper;
+import ct.util.Native.Advice;
 
 public class ChaosIO implements IOWrapper {
 
 	private static final int SCALE = 10_000;
+	private static final int ZERO_WRITE = -1;
 	private static final DecimalFormat df = new DecimalFormat("#.#####%");
 
 	private final int chance;
@@ -68,6 +77,24 @@ public class ChaosIO implements IOWrapper {
 		return io.setLastModifiedTime(path, time);
 	}
 
+	@Override
+	public boolean deleteIfExists(Path path) throws IOException {
+		chaos(WT.deleteIfExists);
+		return io.deleteIfExists(path);
+	}
+
+	@Override
+	public Path move(Path source, Path target, CopyOption... options) throws IOException {
+		chaos(WT.move);
+		return io.move(source, target, options);
+	}
+
+	@Override
+	public FileStore getFileStore(Path path) throws IOException {
+		chaos(WT.getFileStore);
+		return io.getFileStore(path);
+	}
+
 	@Override
 	public FileChannel open(Path path, OpenOption... options) throws IOException {
 		chaos(WT.open);
@@ -82,6 +109,41 @@ public class ChaosIO implements IOWrapper {
 
 	@Override
 	public int read(FileChannel channel, ByteBuffer dst) throws IOException {
+		Integer chaosResult = readChaos();
+		return chaosResult != null ? chaosResult : io.read(channel, dst);
+	}
+
+	@Override
+	public int write(FileChannel channel, ByteBuffer src) throws IOException {
+		int writeError = writeChaos(src.limit());
+		return writeError == ZERO_WRITE ? 0 : io.write(channel, src) - writeError;
+	}
+
+	@Override
+	public int read(FileChannel channel, ByteBuffer dst, long position) throws IOException {
+		Integer chaosResult = readChaos();
+		return chaosResult != null ? chaosResult : io.read(channel, dst, position);
+	}
+
+	@Override
+	public int write(FileChannel channel, ByteBuffer src, long position) throws IOException {
+		int writeError = writeChaos(src.limit());
+		return writeError == ZERO_WRITE ? 0 : io.write(channel, src, position) - writeError;
+	}
+
+	@Override
+	public long read(FileChannel channel, ByteBuffer[] dsts) throws IOException {
+		Integer chaosResult = readChaos();
+		return chaosResult != null ? chaosResult : io.read(channel, dsts);
+	}
+
+	@Override
+	public long write(FileChannel channel, ByteBuffer[] srcs) throws IOException {
+		int writeError = writeChaos(srcs.length > 0 ? srcs[0].limit() : 0);
+		return writeError == ZERO_WRITE ? 0 : io.write(channel, srcs) - writeError;
+	}
+
+	private Integer readChaos() throws IOException {
 		try {
 			chaos(WT.read);
 		} catch (IOException e) {
@@ -92,25 +154,22 @@ public class ChaosIO implements IOWrapper {
 			default -> throw e;
 			};
 		}
-		return io.read(channel, dst);
+		return null;
 	}
 
-	@Override
-	public int write(FileChannel channel, ByteBuffer src) throws IOException {
+	private int writeChaos(int limit) throws IOException {
 		int writeError = 0;
 		try {
 			chaos(WT.write);
 		} catch (IOException e) {
 			int i = rand.nextInt(10);
 			switch (i) {
-			case 0 -> writeError = rand.nextInt(Math.max(src.limit(), 1));
-			case 1 -> {
-				return 0;
-			}
+			case 0 -> writeError = rand.nextInt(Math.max(limit, 1));
+			case 1 -> writeError = ZERO_WRITE;
 			default -> throw e;
 			}
 		}
-		return io.write(channel, src) - writeError;
+		return writeError;
 	}
 
 	@Override
@@ -131,6 +190,13 @@ public class ChaosIO implements IOWrapper {
 		return io.transferTo(source, position, count, target) - transferError;
 	}
 
+	@Override
+	public MemorySegment map(FileChannel channel, MapMode mode, long position, long size, Arena arena)
+			throws IOException {
+		chaos(WT.map);
+		return io.map(channel, mode, position, size, arena);
+	}
+
 	@Override
 	public long size(FileChannel channel) throws IOException {
 		chaos(WT.size);
@@ -143,9 +209,127 @@ public class ChaosIO implements IOWrapper {
 		return io.truncate(channel, size);
 	}
 
+	@Override
+	public void force(FileChannel channel, boolean metaData) throws IOException {
+		chaos(WT.force);
+		io.force(channel, metaData);
+	}
+
 	@Override
 	public void close(FileChannel channel) throws IOException {
 		chaos(WT.close);
 		io.close(channel);
 	}
+
+	@Override
+	public AsynchronousFileChannel openAsync(Path path, OpenOption... options) throws IOException {
+		chaos(WT.open);
+		return io.openAsync(path, options);
+	}
+
+	@Override
+	public CompletableFuture<Integer> read(AsynchronousFileChannel channel, ByteBuffer dst, long position)
+			throws IOException {
+		Integer chaosResult = readChaos();
+		return chaosResult != null ? CompletableFuture.completedFuture(chaosResult) : io.read(channel, dst, position);
+	}
+
+	@Override
+	public CompletableFuture<Integer> write(AsynchronousFileChannel channel, ByteBuffer src, long position)
+			throws IOException {
+		int writeError = writeChaos(src.limit());
+		return writeError == ZERO_WRITE ? CompletableFuture.completedFuture(0)
+				: io.write(channel, src, position).thenApply(write -> write - writeError);
+	}
+
+	@Override
+	public long size(AsynchronousFileChannel channel) throws IOException {
+		chaos(WT.size);
+		return io.size(channel);
+	}
+
+	@Override
+	public AsynchronousFileChannel truncate(AsynchronousFileChannel channel, long size) throws IOException {
+		chaos(WT.truncate);
+		return io.truncate(channel, size);
+	}
+
+	@Override
+	public void close(AsynchronousFileChannel channel) throws IOException {
+		chaos(WT.close);
+		io.close(channel);
+	}
+
+	@Override
+	public int openFd(Path path, boolean write) throws IOException {
+		chaos(WT.open);
+		return io.openFd(path, write);
+	}
+
+	@Override
+	public void probeDirect(Path path, boolean write) throws IOException {
+		io.probeDirect(path, write);
+	}
+
+	@Override
+	public long copyFileRange(int inFd, long inPosition, int outFd, long outPosition, long count)
+			throws IOException {
+		try {
+			chaos(WT.copyFileRange);
+		} catch (IOException e) {
+			if (rand.nextInt(10) == 0) {
+				return 0;
+			}
+			throw e;
+		}
+		return io.copyFileRange(inFd, inPosition, outFd, outPosition, count);
+	}
+
+	@Override
+	public void cloneFd(int inFd, int outFd) throws IOException {
+		chaos(WT.clone);
+		io.cloneFd(inFd, outFd);
+	}
+
+	@Override
+	public long seekData(int fd, long position) throws IOException {
+		chaos(WT.seek);
+		return io.seekData(fd, position);
+	}
+
+	@Override
+	public long seekHole(int fd, long position) throws IOException {
+		chaos(WT.seek);
+		return io.seekHole(fd, position);
+	}
+
+	@Override
+	public void adviseFd(int fd, long position, long length, Advice advice) throws IOException {
+		chaos(WT.advise);
+		io.adviseFd(fd, position, length, advice);
+	}
+
+	@Override
+	public void allocateFd(int fd, long size) throws IOException {
+		chaos(WT.allocate);
+		io.allocateFd(fd, size);
+	}
+
+	@Override
+	public long sizeFd(int fd) throws IOException {
+		chaos(WT.size);
+		return io.sizeFd(fd);
+	}
+
+	@Override
+	public void truncateFd(int fd, long size) throws IOException {
+		chaos(WT.truncate);
+		io.truncateFd(fd, size);
+	}
+
+	@Override
+	public void closeFd(int fd) throws IOException {
+		chaos(WT.close);
+		io.closeFd(fd);
+	}
 }
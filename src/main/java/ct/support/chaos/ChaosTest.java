@@ -11,10 +11,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.stream.Stream;
 
+import ct.action.TargetIndex;
 import ct.action.copy.model.CopyTask;
 import ct.action.copy.model.FileRecord;
 import ct.app.App;
 import ct.app.Settings;
+import ct.app.Settings.CopyMode;
+import ct.runner.copy.CopyJournal;
 import ct.runner.copy.MultiFileCopy;
 import ct.support.SupportUtils;
 import ct.util.TestUtils;
@@ -23,9 +26,12 @@ import ct.util.Utils.Timer;
 
 public class ChaosTest {
 
-	private static final boolean DEV_MODE = true;
-	private static final boolean ZERO_COPY = true;
+	private static final CopyMode MODE = CopyMode.ZERO_COPY;
+	private static final int PIPELINE_DEPTH = 2;
 	private static final int BUFF_SIZE = 17;
+	private static final int MIN_BUFF_SIZE = 12;
+	// Less than all workers need, buffers get smaller or wait
+	private static final int BUFFER_BUDGET = 20;
 	private static final int WAIT_RETRY = 1;
 	private static final int ROLLBACK = 0;
 	private static final int FILES_AT_TIME = 4;
@@ -50,19 +56,20 @@ public class ChaosTest {
 			return;
 		}
 
-		Settings.devMode = DEV_MODE;
 		Path tempDir = Paths.get(System.getProperty("java.io.tmpdir"), "ct-test-chaos-temp-dir");
 		App.info();
 		App.highlight("Test Dir ", testDir);
 		App.highlight("Temp Dir ", tempDir);
 		App.highlight("Hash File", hashFile);
 		App.highlight("Buff Size", Utils.size(1 << BUFF_SIZE));
+		App.highlight("Buff Min ", Utils.size(1 << MIN_BUFF_SIZE));
+		App.highlight("Buff Pool", Utils.size(1L << BUFFER_BUDGET));
 		App.highlight("Wait Time", WAIT_RETRY);
 		App.highlight("Rollback ", ROLLBACK);
 		App.highlight("NumFiles ", FILES_AT_TIME);
 		App.highlight("ChaosVal ", CHAOS_CHANCE);
-		App.highlight("Zero Copy", ZERO_COPY);
-		App.highlight("Dev Mode ", Settings.devMode);
+		App.highlight("Copy Mode", MODE);
+		App.highlight("Pipeline ", PIPELINE_DEPTH);
 
 		Timer timer = Utils.timer();
 		Map<String, String> sha256Map = SupportUtils.readHashFileToMap(hashFile);
@@ -76,8 +83,11 @@ public class ChaosTest {
 			tasks.add(new CopyTask(sourceFile, targetFile));
 		}
 
-		new MultiFileCopy(Settings.testFactory(1 << BUFF_SIZE, WAIT_RETRY, ROLLBACK, FILES_AT_TIME, ZERO_COPY),
-				new ChaosIO(CHAOS_CHANCE, System.nanoTime())).copyAll(tasks);
+		new MultiFileCopy(Settings.test(1 << BUFF_SIZE).waitBeforeRetry(WAIT_RETRY).rollback(ROLLBACK)
+				.filesSimultaneously(FILES_AT_TIME).mode(MODE).pipelineDepth(PIPELINE_DEPTH)
+				.minBufferSize(1 << MIN_BUFF_SIZE).preallocate(true).bufferBudget(1L << BUFFER_BUDGET).build(),
+				new ChaosIO(CHAOS_CHANCE, System.nanoTime()), CopyJournal.disabled(), TargetIndex.disabled())
+				.copyAll(tasks);
 
 		App.infolb("Verifying files");
 		for (CopyTask task : tasks) {
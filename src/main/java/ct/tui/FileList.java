@@ -8,12 +8,9 @@ import ct.util.AnsiEscapeCodes.Color;
 public class FileList {
 
 	public static void show(AnalyseResult files, AnalyseSettings settings) {
-		if (!files.match().isEmpty()) {
-			App.infolb(textMatch(files.match().size()));
-			Color.GREEN.emit();
-			files.match().forEach(App::info);
-			Color.RESET.emit();
-			App.info(textMatch(files.match().size()));
+		// Only counted, matching files can be most of a large tree
+		if (files.match() > 0) {
+			App.infolb(textMatch(files.match()));
 		}
 
 		if (!files.mismatch().isEmpty()) {
@@ -45,7 +42,7 @@ public class FileList {
 		return Color.RESET.append(sb).append(num).toString();
 	}
 
-	private static String textMatch(int num) {
+	private static String textMatch(long num) {
 		return Color.WHITE_INTENSE.highlight("* * * Existing matching files (size and modify date)", num);
 	}
 
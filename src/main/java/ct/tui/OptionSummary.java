@@ -3,6 +3,7 @@ package ct.tui;
 import ct.app.App;
 import ct.app.Settings;
 import ct.app.Settings.AnalyseSettings;
+import ct.app.Settings.Checksum;
 import ct.app.Settings.RobustCopySettings;
 import ct.util.AnsiEscapeCodes.Color;
 import ct.util.Utils;
@@ -14,6 +15,40 @@ public class OptionSummary {
 		App.info(textTo(settings.analyse()));
 		App.verbose("Copy mode", modeText(settings.robustCopy()));
 		App.verbose("Copy buffer size", Utils.size(settings.robustCopy().bufferSize()));
+		App.verbose("Copy buffer budget", Utils.size(settings.robustCopy().bufferBudget()));
+		if (settings.robustCopy().minBufferSize() > 0) {
+			App.verbose("Copy buffer min", Utils.size(settings.robustCopy().minBufferSize()));
+		}
+		if (settings.robustCopy().cacheWindow() > 0) {
+			App.verbose("Copy cache hints", "read ahead " + Utils.size(settings.robustCopy().cacheWindow()));
+		}
+		if (!settings.robustCopy().preallocate()) {
+			App.verbose("Copy preallocate", "disabled");
+		}
+		if (settings.robustCopy().delta()) {
+			App.verbose("Copy delta sync", "enabled, rewrites differing blocks of mismatching local files");
+		}
+		if (settings.robustCopy().checksum() != Checksum.NONE) {
+			App.verbose("Copy checksum", settings.robustCopy().checksum() + ", computed while copying");
+		}
+		if (settings.robustCopy().partial()) {
+			App.verbose("Copy partial", "enabled, targets renamed into place once verified");
+		}
+		if (settings.robustCopy().verifyRollback()) {
+			App.verbose("Copy rollback", "verified against the target, rewrites from memory when retained");
+		}
+		if (settings.multiFile().streaming() && !settings.multiFile().journal()) {
+			App.verbose("Copy streaming", "enabled, copies files while analysing");
+		}
+		if (settings.analyse().index()) {
+			App.verbose("Copy index", "enabled, lists target directories changed since the last run");
+		}
+		if (settings.multiFile().journal()) {
+			App.verbose("Copy journal", "enabled, commits durable offsets every second");
+		}
+		if (settings.robustCopy().reflink()) {
+			App.verbose("Copy reflink", "enabled, copy mode is fallback");
+		}
 		App.configCheck(settings);
 	}
 
@@ -26,6 +61,15 @@ public class OptionSummary {
 	}
 
 	private static String modeText(RobustCopySettings s) {
-		return s.zeroCopy() ? "Zero-Copy" : "Direct Buffer";
+		if (s.streams() > 1) {
+			return "Multi-Stream (" + s.streams() + ")";
+		}
+		if (s.pipelineDepth() > 0) {
+			return "Pipelined (" + s.pipelineDepth() + ")";
+		}
+		if (s.asyncOps() > 0) {
+			return "Async (" + s.asyncOps() + ")";
+		}
+		return s.mode().toString();
 	}
 }
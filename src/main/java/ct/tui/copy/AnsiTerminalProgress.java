@@ -7,9 +7,11 @@ import java.util.List;
 import ct.action.copy.model.FileRecord;
 import ct.action.copy.progress.IProgressEvent;
 import ct.action.copy.progress.IProgressEvent.AbortEvent;
+import ct.action.copy.progress.IProgressEvent.ChecksumEvent;
 import ct.action.copy.progress.IProgressEvent.CopyEndEvent;
 import ct.action.copy.progress.IProgressEvent.CopyProgressEvent;
 import ct.action.copy.progress.IProgressEvent.CopyStartEvent;
+import ct.action.copy.progress.IProgressEvent.DeltaEvent;
 import ct.action.copy.progress.IProgressEvent.ErrorEvent;
 import ct.action.copy.progress.IProgressEvent.ModifiedTimeEvent;
 import ct.action.copy.progress.IProgressEvent.RestartEvent;
@@ -72,16 +74,16 @@ public class AnsiTerminalProgress {
 
 	private final MultiFileSettings settings;
 	private final List<Row> rows = new ArrayList<>();
-	private final int totalFiles;
 
+	private int totalFiles = 0;
+	private boolean totalComplete = true;
 	private int completedFiles = 0;
 	private int newLines = 0;
 	private StringBuilder sb = new StringBuilder();
 	private boolean firstLog = true;
 
-	public AnsiTerminalProgress(MultiFileSettings settings, int totalFiles) {
+	public AnsiTerminalProgress(MultiFileSettings settings) {
 		this.settings = settings;
-		this.totalFiles = totalFiles;
 		for (int tId = 0; tId < settings.filesSimultaneously(); tId++) {
 			rows.add(new Row());
 		}
@@ -99,17 +101,14 @@ public class AnsiTerminalProgress {
 			draw();
 		}
 		case ResumeEvent e -> row.db.setResumePos(e.pos());
-		case CopyProgressEvent e -> {
-			if (row.db.shouldUpdate(e.size())) {
-				row.state(State.Copying);
-				row.body(StdoutProgress.createProgress(e.size(), row.db));
-				draw();
-			}
-		}
+		case CopyProgressEvent e -> progress(e.size(), rowId);
 		case CopyEndEvent e -> log(Color.YELLOW.highlight(copyCount(), copyStats(e.ct().sourceFile(), row.db)));
 		case ErrorEvent e -> row.body(Color.RED.highlight(e.description(), e.cause()));
 		case WarningEvent e -> log(Color.MAGENTA.highlight(e.description(), e.cause()));
 		case TruncateEvent e -> log(Color.MAGENTA.highlight("Truncating " + row.name, Utils.size(e.size())));
+		case DeltaEvent e -> log(Color.CYAN.highlight("Delta " + row.name,
+				"saved " + Utils.size(e.saved()) + ", wrote " + Utils.size(e.written())));
+		case ChecksumEvent e -> log(Color.CYAN.highlight("Checksum " + row.name, e.algorithm() + " " + e.digest()));
 		case WaitStartEvent _ -> {
 			row.state(State.Waiting);
 			draw();
@@ -123,6 +122,29 @@ public class AnsiTerminalProgress {
 		}
 	}
 
+	/**
+	 * Sampled bytes copied of the current file.
+	 */
+	public void progress(long position, int rowId) {
+		Row row = rows.get(rowId);
+		if (row.db != null && row.db.shouldUpdate(position)) {
+			row.state(State.Copying);
+			row.body(StdoutProgress.createProgress(position, row.db));
+			draw();
+		}
+	}
+
+	/**
+	 * Files to copy, grows until complete while the analysis streams them.
+	 */
+	public void total(int totalFiles, boolean complete) {
+		if (totalFiles != this.totalFiles || complete != totalComplete) {
+			this.totalFiles = totalFiles;
+			this.totalComplete = complete;
+			draw();
+		}
+	}
+
 	public void eof(int rowId) {
 		Row row = rows.get(rowId);
 		row.eof = true;
@@ -148,7 +170,12 @@ public class AnsiTerminalProgress {
 
 	private void paint() {
 		if (rows.stream().anyMatch(r -> !r.eof)) {
-			Color.WHITE_INTENSE.highlight(sb.append(nl()), "Copy progress:").append(nl());
+			if (totalComplete) {
+				Color.WHITE_INTENSE.highlight(sb.append(nl()), "Copy progress:").append(nl());
+			} else {
+				Color.WHITE_INTENSE.highlight(sb.append(nl()), "Copy progress", "analysing, " + totalFiles + " found")
+						.append(nl());
+			}
 		}
 		for (Row row : rows) {
 			if (!row.eof) {
@@ -179,6 +206,9 @@ public class AnsiTerminalProgress {
 	private String copyCount() {
 		StringBuilder sb = new StringBuilder();
 		sb.append("Copied ").append(++completedFiles).append("/").append(totalFiles);
+		if (!totalComplete) {
+			sb.append("+");
+		}
 		return sb.toString();
 	}
 
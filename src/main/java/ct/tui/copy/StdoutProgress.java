@@ -3,9 +3,11 @@ package ct.tui.copy;
 import ct.action.copy.progress.IProgressEvent;
 import ct.action.copy.progress.IProgressReport;
 import ct.action.copy.progress.IProgressEvent.AbortEvent;
+import ct.action.copy.progress.IProgressEvent.ChecksumEvent;
 import ct.action.copy.progress.IProgressEvent.CopyEndEvent;
 import ct.action.copy.progress.IProgressEvent.CopyProgressEvent;
 import ct.action.copy.progress.IProgressEvent.CopyStartEvent;
+import ct.action.copy.progress.IProgressEvent.DeltaEvent;
 import ct.action.copy.progress.IProgressEvent.ErrorEvent;
 import ct.action.copy.progress.IProgressEvent.ModifiedTimeEvent;
 import ct.action.copy.progress.IProgressEvent.RestartEvent;
@@ -40,11 +42,13 @@ public class StdoutProgress implements IProgressReport {
 			}
 		}
 		case CopyEndEvent e -> App.highlight("Complete", e.ct().sourceFile());
+		case ChecksumEvent e -> App.highlight("Checksum " + e.algorithm(), e.digest());
 		case ModifiedTimeEvent e -> App.verbose("Setting Modified Time to", e.time());
 		case WarningEvent e -> App.recoverWarning(e.description(), e.cause());
 		case ErrorEvent e -> App.recoverError(e.description(), e.cause());
 		case RestartEvent e -> App.info("Restarting " + e.type() + " at: " + Utils.size(e.pos()));
 		case TruncateEvent e -> App.info("Truncating to: " + Utils.size(e.size()));
+		case DeltaEvent e -> App.info("Delta wrote: " + Utils.size(e.written()) + ", saved: " + Utils.size(e.saved()));
 		case WaitStartEvent e -> App.info("Waiting " + e.seconds() + "s...");
 		case WaitEndEvent _ -> App.info("Retrying...");
 		case AbortEvent e -> App.highlight("Aborted", e.ct().sourceFile());
@@ -1,12 +1,17 @@
 package ct.util;
 
+import java.io.IOException;
 import java.lang.foreign.Arena;
 import java.lang.foreign.FunctionDescriptor;
 import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout.PathElement;
 import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
 import java.lang.foreign.SymbolLookup;
 import java.lang.foreign.ValueLayout;
 import java.lang.invoke.MethodHandle;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.util.Locale;
 import java.util.Optional;
 
@@ -90,4 +95,366 @@ public class Native {
 		}
 		return true;
 	}
+
+	// Linux file descriptors, used for copies the kernel or file server performs
+
+	private static final int O_RDONLY = 0;
+	private static final int O_WRONLY = 01;
+	private static final int O_CREAT = 0100;
+	private static final int O_CLOEXEC = 02000000;
+	private static final int O_DIRECT = directFlag(System.getProperty("os.arch"));
+	private static final int FILE_MODE = 0666;
+	private static final int SEEK_END = 2;
+	private static final int SEEK_DATA = 3;
+	private static final int SEEK_HOLE = 4;
+	private static final long FICLONE = 0x40049409L;
+	private static final int FALLOC_FL_KEEP_SIZE = 0x01;
+	private static final int POSIX_FADV_WILLNEED = 3;
+	private static final int POSIX_FADV_DONTNEED = 4;
+
+	private static final int ENOENT = 2;
+	private static final int EINTR = 4;
+	private static final int ENXIO = 6;
+	private static final int EXDEV = 18;
+	private static final int EINVAL = 22;
+	private static final int ENOTTY = 25;
+	private static final int ENOSPC = 28;
+	private static final int ENOSYS = 38;
+	private static final int EOPNOTSUPP = 95;
+
+	/**
+	 * Page cache advice for a byte range of a file.
+	 */
+	public static enum Advice {
+		WILLNEED(POSIX_FADV_WILLNEED), DONTNEED(POSIX_FADV_DONTNEED);
+
+		private final int value;
+
+		Advice(int value) {
+			this.value = value;
+		}
+	}
+
+	/**
+	 * Call not supported by platform, kernel or file system, caller should fall
+	 * back to a regular copy.
+	 */
+	public static class UnsupportedException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		public UnsupportedException(String message) {
+			super(message);
+		}
+	}
+
+	private static class Libc {
+		static final StructLayout CAPTURE = Linker.Option.captureStateLayout();
+		static final long ERRNO = CAPTURE.byteOffset(PathElement.groupElement("errno"));
+
+		static final MethodHandle OPEN = downcall("open",
+				FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS, ValueLayout.JAVA_INT,
+						ValueLayout.JAVA_INT),
+				Linker.Option.firstVariadicArg(2));
+		static final MethodHandle CLOSE = downcall("close",
+				FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT));
+		static final MethodHandle LSEEK = downcall("lseek",
+				FunctionDescriptor.of(ValueLayout.JAVA_LONG, ValueLayout.JAVA_INT, ValueLayout.JAVA_LONG,
+						ValueLayout.JAVA_INT));
+		static final MethodHandle FTRUNCATE = downcall("ftruncate",
+				FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT, ValueLayout.JAVA_LONG));
+		static final MethodHandle IOCTL = downcall("ioctl",
+				FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT, ValueLayout.JAVA_LONG,
+						ValueLayout.JAVA_INT),
+				Linker.Option.firstVariadicArg(2));
+		static final MethodHandle FALLOCATE = downcall("fallocate",
+				FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT, ValueLayout.JAVA_INT,
+						ValueLayout.JAVA_LONG, ValueLayout.JAVA_LONG));
+		static final MethodHandle FADVISE = downcall("posix_fadvise",
+				FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT, ValueLayout.JAVA_LONG,
+						ValueLayout.JAVA_LONG, ValueLayout.JAVA_INT));
+		static final MethodHandle COPY_FILE_RANGE = downcall("copy_file_range",
+				FunctionDescriptor.of(ValueLayout.JAVA_LONG, ValueLayout.JAVA_INT, ValueLayout.ADDRESS,
+						ValueLayout.JAVA_INT, ValueLayout.ADDRESS, ValueLayout.JAVA_LONG, ValueLayout.JAVA_INT));
+
+		private static MethodHandle downcall(String name, FunctionDescriptor fd, Linker.Option... options) {
+			if (!isLinux()) {
+				return null;
+			}
+			Linker linker = Linker.nativeLinker();
+			Linker.Option[] all = new Linker.Option[options.length + 1];
+			all[0] = Linker.Option.captureCallState("errno");
+			System.arraycopy(options, 0, all, 1, options.length);
+			return linker.defaultLookup().find(name).map(symbol -> linker.downcallHandle(symbol, fd, all))
+					.orElse(null);
+		}
+
+		static void check(MethodHandle mh, String name) throws UnsupportedException {
+			if (mh == null) {
+				throw new UnsupportedException(name + " not available on " + System.getProperty("os.name"));
+			}
+		}
+
+		static int errno(MemorySegment capture) {
+			return capture.get(ValueLayout.JAVA_INT, ERRNO);
+		}
+
+		static IOException error(String name, int errno, Object file) {
+			return switch (errno) {
+			case ENOENT -> new NoSuchFileException(String.valueOf(file));
+			case ENOSPC -> new IOException(name + " failed, no space left on device, file: " + file);
+			default -> new IOException(name + " failed, errno: " + errno + ", file: " + file);
+			};
+		}
+	}
+
+	// Differs by architecture, 0 where unknown
+	private static int directFlag(String arch) {
+		return switch (arch) {
+		case "amd64", "x86_64", "x86", "i386", "riscv64", "s390x" -> 040000;
+		case "aarch64", "arm" -> 0200000;
+		case "ppc64", "ppc64le" -> 0400000;
+		default -> 0;
+		};
+	}
+
+	public static boolean isLinux() {
+		return System.getProperty("os.name").toLowerCase(Locale.ROOT).contains("linux");
+	}
+
+	public static int open(Path path, boolean write) throws IOException {
+		Libc.check(Libc.OPEN, "open");
+		try (Arena arena = Arena.ofConfined()) {
+			MemorySegment capture = arena.allocate(Libc.CAPTURE);
+			MemorySegment pathname = arena.allocateFrom(path.toString());
+			int flags = (write ? O_WRONLY | O_CREAT : O_RDONLY) | O_CLOEXEC;
+			int fd = (int) Libc.OPEN.invokeExact(capture, pathname, flags, FILE_MODE);
+			if (fd < 0) {
+				throw Libc.error("open", Libc.errno(capture), path);
+			}
+			return fd;
+		} catch (IOException | RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * Opens and closes the file with O_DIRECT, fails with unsupported when the
+	 * file system rejects it (EINVAL), instead of parsing the message of the
+	 * Java open. Does nothing where the flag is not known, Java then decides.
+	 */
+	public static void probeDirect(Path path, boolean write) throws IOException {
+		if (Libc.OPEN == null || O_DIRECT == 0) {
+			return;
+		}
+		try (Arena arena = Arena.ofConfined()) {
+			MemorySegment capture = arena.allocate(Libc.CAPTURE);
+			MemorySegment pathname = arena.allocateFrom(path.toString());
+			int flags = (write ? O_WRONLY | O_CREAT : O_RDONLY) | O_CLOEXEC | O_DIRECT;
+			int fd = (int) Libc.OPEN.invokeExact(capture, pathname, flags, FILE_MODE);
+			if (fd < 0) {
+				int errno = Libc.errno(capture);
+				throw switch (errno) {
+				case EINVAL, EOPNOTSUPP -> new UnsupportedException("O_DIRECT not supported, errno: " + errno);
+				default -> Libc.error("open", errno, path);
+				};
+			}
+			close(fd);
+		} catch (IOException | RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	public static void close(int fd) throws IOException {
+		Libc.check(Libc.CLOSE, "close");
+		try (Arena arena = Arena.ofConfined()) {
+			MemorySegment capture = arena.allocate(Libc.CAPTURE);
+			int res = (int) Libc.CLOSE.invokeExact(capture, fd);
+			if (res < 0) {
+				throw Libc.error("close", Libc.errno(capture), fd);
+			}
+		} catch (IOException | RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	public static long size(int fd) throws IOException {
+		Libc.check(Libc.LSEEK, "lseek");
+		try (Arena arena = Arena.ofConfined()) {
+			MemorySegment capture = arena.allocate(Libc.CAPTURE);
+			long size = (long) Libc.LSEEK.invokeExact(capture, fd, 0L, SEEK_END);
+			if (size < 0) {
+				throw Libc.error("lseek", Libc.errno(capture), fd);
+			}
+			return size;
+		} catch (IOException | RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	public static void truncate(int fd, long size) throws IOException {
+		Libc.check(Libc.FTRUNCATE, "ftruncate");
+		try (Arena arena = Arena.ofConfined()) {
+			MemorySegment capture = arena.allocate(Libc.CAPTURE);
+			int res = (int) Libc.FTRUNCATE.invokeExact(capture, fd, size);
+			if (res < 0) {
+				throw Libc.error("ftruncate", Libc.errno(capture), fd);
+			}
+		} catch (IOException | RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * Start of the next data extent at or after position, -1 if only a hole
+	 * follows.
+	 */
+	public static long seekData(int fd, long position) throws IOException {
+		return seek(fd, position, SEEK_DATA);
+	}
+
+	/**
+	 * Start of the next hole at or after position, the end of the file counts as
+	 * hole. -1 if position is beyond the end.
+	 */
+	public static long seekHole(int fd, long position) throws IOException {
+		return seek(fd, position, SEEK_HOLE);
+	}
+
+	private static long seek(int fd, long position, int whence) throws IOException {
+		Libc.check(Libc.LSEEK, "lseek");
+		try (Arena arena = Arena.ofConfined()) {
+			MemorySegment capture = arena.allocate(Libc.CAPTURE);
+			long res = (long) Libc.LSEEK.invokeExact(capture, fd, position, whence);
+			if (res < 0) {
+				int errno = Libc.errno(capture);
+				return switch (errno) {
+				case ENXIO -> -1;
+				case EINVAL, EOPNOTSUPP -> throw new UnsupportedException("SEEK_DATA not supported, errno: " + errno);
+				default -> throw Libc.error("lseek", errno, fd);
+				};
+			}
+			return res;
+		} catch (IOException | RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * Reserve disk space for the first size bytes with fallocate, without
+	 * changing the file size, so a partial copy can still be resumed. Fails
+	 * right away when the disk is full.
+	 */
+	public static void allocate(int fd, long size) throws IOException {
+		Libc.check(Libc.FALLOCATE, "fallocate");
+		try (Arena arena = Arena.ofConfined()) {
+			MemorySegment capture = arena.allocate(Libc.CAPTURE);
+			int res;
+			int errno;
+			do {
+				res = (int) Libc.FALLOCATE.invokeExact(capture, fd, FALLOC_FL_KEEP_SIZE, 0L, size);
+				errno = res < 0 ? Libc.errno(capture) : 0;
+			} while (errno == EINTR);
+			if (res < 0) {
+				throw switch (errno) {
+				case ENOSYS, EOPNOTSUPP -> new UnsupportedException("fallocate not supported, errno: " + errno);
+				default -> Libc.error("fallocate", errno, fd);
+				};
+			}
+		} catch (IOException | RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * Advise the kernel about the page cache of a byte range, WILLNEED starts
+	 * reading it in, DONTNEED drops clean pages and starts write back of dirty
+	 * ones. Applies to the file, not only to this descriptor.
+	 */
+	public static void fadvise(int fd, long position, long length, Advice advice) throws IOException {
+		Libc.check(Libc.FADVISE, "posix_fadvise");
+		try (Arena arena = Arena.ofConfined()) {
+			MemorySegment capture = arena.allocate(Libc.CAPTURE);
+			// Returns the error number instead of setting errno
+			int res = (int) Libc.FADVISE.invokeExact(capture, fd, position, length, advice.value);
+			if (res != 0) {
+				throw Libc.error("posix_fadvise", res, fd);
+			}
+		} catch (IOException | RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * Copy count bytes at explicit offsets, without passing them through user
+	 * space. On network file systems the server copies. Returns bytes copied,
+	 * which can be less than count.
+	 */
+	public static long copyFileRange(int inFd, long inPosition, int outFd, long outPosition, long count)
+			throws IOException {
+		Libc.check(Libc.COPY_FILE_RANGE, "copy_file_range");
+		try (Arena arena = Arena.ofConfined()) {
+			MemorySegment capture = arena.allocate(Libc.CAPTURE);
+			MemorySegment offIn = arena.allocateFrom(ValueLayout.JAVA_LONG, inPosition);
+			MemorySegment offOut = arena.allocateFrom(ValueLayout.JAVA_LONG, outPosition);
+			long res;
+			int errno;
+			do {
+				res = (long) Libc.COPY_FILE_RANGE.invokeExact(capture, inFd, offIn, outFd, offOut, count, 0);
+				errno = res < 0 ? Libc.errno(capture) : 0;
+			} while (errno == EINTR);
+			if (res < 0) {
+				throw switch (errno) {
+				case EXDEV, EINVAL, ENOSYS, EOPNOTSUPP -> new UnsupportedException(
+						"copy_file_range not supported, errno: " + errno);
+				default -> Libc.error("copy_file_range", errno, inFd + " -> " + outFd);
+				};
+			}
+			return res;
+		} catch (IOException | RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * Clone whole source into target with ioctl FICLONE, both share extents until
+	 * modified. Only on copy-on-write file systems like btrfs and XFS, and only
+	 * within one volume.
+	 */
+	public static void clone(int inFd, int outFd) throws IOException {
+		Libc.check(Libc.IOCTL, "ioctl");
+		try (Arena arena = Arena.ofConfined()) {
+			MemorySegment capture = arena.allocate(Libc.CAPTURE);
+			int res = (int) Libc.IOCTL.invokeExact(capture, outFd, FICLONE, inFd);
+			if (res < 0) {
+				int errno = Libc.errno(capture);
+				throw switch (errno) {
+				case EXDEV, EINVAL, ENOTTY, ENOSYS, EOPNOTSUPP -> new UnsupportedException(
+						"FICLONE not supported, errno: " + errno);
+				default -> Libc.error("ioctl FICLONE", errno, inFd + " -> " + outFd);
+				};
+			}
+		} catch (IOException | RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new AssertionError(e);
+		}
+	}
 }
@@ -1,7 +1,8 @@
 package ct.util;
 
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.InputStream;
 import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -11,6 +12,7 @@ public class TestUtils {
 	private TestUtils() {
 	}
 
+	private static final int BUFFER_SIZE = 1 << 16;
 	private static final char[] HEX_ARRAY = "0123456789abcdef".toCharArray();
 
 	private static String bytesToHex(byte[] bytes) {
@@ -33,6 +35,17 @@ public class TestUtils {
 	}
 
 	public static String sha256(Path path) throws IOException {
-		return sha256(Files.readAllBytes(path));
+		// Streamed, files can be larger than memory, not interruptible like a channel
+		try (InputStream in = new FileInputStream(path.toFile())) {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int bytesRead;
+			while ((bytesRead = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, bytesRead);
+			}
+			return bytesToHex(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
 	}
 }
@@ -1,2 +1,3 @@
 module copy.tool {
+	requires jdk.unsupported;
 }
\ No newline at end of file
@@ -0,0 +1,207 @@
+package ct.action;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import ct.action.copy.model.CopyTask;
+import ct.action.copy.model.PartialFile;
+import ct.app.Settings;
+import ct.app.Settings.AnalyseSettings;
+
+public class AnalyseActionTest {
+
+	private static final FileTime MODIFIED = FileTime.fromMillis(1700000000000L);
+
+	private Path dir;
+	private Path source;
+	private Path target;
+
+	@BeforeEach
+	void createDirs() throws IOException {
+		dir = Files.createTempDirectory("ct-analyse-");
+		source = Files.createDirectories(dir.resolve("src/a"));
+		target = Files.createDirectories(dir.resolve("dst"));
+
+		// Missing, matching and mismatching targets, spread over subdirectories
+		file(source.resolve("x.bin"), 100);
+		file(source.resolve("d1/y.bin"), 200);
+		file(target.resolve("a/d1/y.bin"), 200);
+		file(source.resolve("d1/d2/z.bin"), 300);
+		file(target.resolve("a/d1/d2/z.bin"), 30);
+		for (int i = 0; i < 20; i++) {
+			file(source.resolve("d3/d" + i + "/f.bin"), i);
+		}
+	}
+
+	@AfterEach
+	void deleteDirs() throws IOException {
+		try (Stream<Path> s = Files.walk(dir)) {
+			for (Path p : s.sorted(Comparator.reverseOrder()).toList()) {
+				Files.delete(p);
+			}
+		}
+	}
+
+	private static void file(Path path, int size) throws IOException {
+		Files.createDirectories(path.getParent());
+		Files.write(path, new byte[size]);
+		Files.setLastModifiedTime(path, MODIFIED);
+	}
+
+	private Settings settings(Path sourceDir, boolean overwrite, boolean partial, boolean index) {
+		return new Settings(new AnalyseSettings(sourceDir, target, false, overwrite, false, partial, index),
+				Settings.test(512).build().robustCopy(), null);
+	}
+
+	private AnalyseResult analyse(boolean overwrite, boolean partial) {
+		return AnalyseAction.findAllFiles(settings(source, overwrite, partial, false));
+	}
+
+	private static Set<String> names(List<CopyTask> tasks) {
+		return Set.copyOf(orderedNames(tasks));
+	}
+
+	private static List<String> orderedNames(List<CopyTask> tasks) {
+		return tasks.stream().map(t -> name(t.sourceFile().relativeFromSource())).toList();
+	}
+
+	private static String name(Path relative) {
+		return relative.toString().replace('\\', '/');
+	}
+
+	private static Set<String> copyNames(AnalyseResult result) {
+		return names(result.copy());
+	}
+
+	@Test
+	void treeTest() throws IOException {
+		AnalyseResult result = analyse(false, false);
+		assertEquals(21, result.copy().size());
+		assertEquals(1, result.match());
+		assertEquals(Set.of("a/d1/d2/z.bin"), names(result.mismatch()));
+		for (CopyTask ct : result.copy()) {
+			assertEquals(Files.size(ct.sourceFile().path()), ct.sourceFile().size());
+			assertEquals(target.resolve(ct.sourceFile().relativeFromSource()), ct.targetFile().path());
+		}
+
+		// Same order every run
+		assertEquals(result.copy(), analyse(false, false).copy());
+	}
+
+	@Test
+	void overwriteTest() {
+		AnalyseResult result = analyse(true, false);
+		assertEquals(22, result.copy().size());
+		assertTrue(copyNames(result).contains("a/d1/d2/z.bin"));
+	}
+
+	@Test
+	void partialTest() throws IOException {
+		Path partial = PartialFile.path(target.resolve("a/x.bin"), 100, MODIFIED);
+		Files.createDirectories(partial.getParent());
+		Files.write(partial, new byte[40]);
+
+		CopyTask ct = analyse(false, true).copy().stream()
+				.filter(t -> t.sourceFile().path().equals(source.resolve("x.bin"))).findFirst().orElseThrow();
+		assertEquals(40, ct.sourceFile().position());
+		assertEquals(target.resolve("a/x.bin"), ct.targetFile().path());
+
+		// Not looked up without partial mode
+		assertEquals(0, analyse(false, false).copy().stream().mapToLong(t -> t.sourceFile().position()).sum());
+	}
+
+	@Test
+	void linkedTargetTest() throws IOException {
+		// Listed entry is the link, matched by the file it points to
+		Path linked = dir.resolve("linked.bin");
+		file(linked, 100);
+		Files.createSymbolicLink(target.resolve("a/x.bin"), linked);
+		AnalyseResult result = analyse(false, false);
+		assertEquals(2, result.match());
+		assertFalse(copyNames(result).contains("a/x.bin"));
+	}
+
+	@Test
+	void streamedTest() {
+		List<CopyTask> streamed = Collections.synchronizedList(new ArrayList<>());
+		AnalyseResult result = AnalyseAction.findAllFiles(settings(source, true, false, false), TargetIndex.disabled(),
+				streamed::add);
+		assertTrue(result.copy().isEmpty());
+		assertEquals(copyNames(analyse(true, false)), names(streamed));
+		assertEquals(22, streamed.size());
+		assertEquals(1, result.match());
+	}
+
+	@Test
+	void walkOrderTest() throws IOException {
+		// Files listed before and after subdirectories of the same directory
+		for (int i = 0; i < 20; i++) {
+			file(source.resolve("d3/g" + i + ".bin"), i);
+		}
+		List<String> walked;
+		try (Stream<Path> s = Files.walk(source)) {
+			walked = s.filter(Files::isRegularFile).map(p -> name(source.getParent().relativize(p)))
+					.filter(name -> !name.equals("a/d1/y.bin")).toList();
+		}
+		assertEquals(walked, orderedNames(analyse(true, false).copy()));
+
+		List<CopyTask> streamed = new ArrayList<>();
+		AnalyseAction.findAllFiles(settings(source, true, false, false), TargetIndex.disabled(), streamed::add);
+		assertEquals(walked, orderedNames(streamed));
+	}
+
+	@Test
+	void indexedTest() {
+		Settings settings = settings(source, false, false, true);
+		TargetIndex index = TargetIndex.load(settings.analyse(), 0);
+		AnalyseResult listed = AnalyseAction.findAllFiles(settings, index, null);
+		index.save();
+
+		// Same result from the index of the first run
+		AnalyseResult indexed = AnalyseAction.findAllFiles(settings, TargetIndex.load(settings.analyse(), 0), null);
+		assertEquals(listed.copy(), indexed.copy());
+		assertEquals(1, indexed.match());
+		assertEquals(Set.of("a/d1/d2/z.bin"), names(indexed.mismatch()));
+	}
+
+	@Test
+	void indexedNanosTest() throws IOException {
+		// Kept to the nanosecond by the file system, matching from the index too
+		FileTime nanos = FileTime.from(1700000000123456789L, TimeUnit.NANOSECONDS);
+		Files.setLastModifiedTime(source.resolve("d1/y.bin"), nanos);
+		Files.setLastModifiedTime(target.resolve("a/d1/y.bin"), nanos);
+		assumeTrue(nanos.equals(Files.getLastModifiedTime(target.resolve("a/d1/y.bin"))));
+
+		Settings settings = settings(source, false, false, true);
+		TargetIndex index = TargetIndex.load(settings.analyse(), 0);
+		assertEquals(1, AnalyseAction.findAllFiles(settings, index, null).match());
+		index.save();
+		AnalyseResult indexed = AnalyseAction.findAllFiles(settings, TargetIndex.load(settings.analyse(), 0), null);
+		assertEquals(1, indexed.match());
+		assertEquals(Set.of("a/d1/d2/z.bin"), names(indexed.mismatch()));
+	}
+
+	@Test
+	void singleFileTest() {
+		AnalyseResult result = AnalyseAction.findAllFiles(settings(source.resolve("x.bin"), false, false, false));
+		assertEquals(Set.of("x.bin"), copyNames(result));
+	}
+}
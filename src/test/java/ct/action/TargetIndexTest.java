@@ -0,0 +1,208 @@
+package ct.action;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import ct.action.TargetIndex.Listing;
+import ct.action.copy.model.CopyTask;
+import ct.action.copy.model.FileRecord;
+import ct.action.copy.model.PartialFile;
+import ct.action.copy.progress.IProgressEvent;
+import ct.action.copy.progress.IProgressEvent.AbortEvent;
+import ct.action.copy.progress.IProgressEvent.CopyEndEvent;
+import ct.action.copy.progress.IProgressEvent.CopyStartEvent;
+import ct.action.copy.progress.IProgressEvent.ModifiedTimeEvent;
+import ct.action.copy.progress.IProgressReport;
+import ct.app.Settings.AnalyseSettings;
+
+public class TargetIndexTest {
+
+	private static final FileTime MODIFIED = FileTime.fromMillis(1700000000000L);
+	private static final FileTime DIR_MODIFIED = FileTime.fromMillis(1600000000000L);
+
+	private static final IProgressReport VOID = new IProgressReport() {
+		@Override
+		public void event(IProgressEvent event) {
+		}
+
+		@Override
+		public void abort(AbortEvent event) {
+		}
+	};
+
+	private Path dir;
+	private Path target;
+	private AnalyseSettings settings;
+	private int listings;
+
+	@BeforeEach
+	void createDirs() throws IOException {
+		dir = Files.createTempDirectory("ct-index-");
+		target = Files.createDirectories(dir.resolve("dst"));
+		settings = new AnalyseSettings(dir.resolve("src/a"), target, false, false, false, false, true);
+		file(target.resolve("a/x.bin"), 100);
+		file(target.resolve("a/y.bin"), 200);
+		Files.setLastModifiedTime(target.resolve("a"), DIR_MODIFIED);
+	}
+
+	@AfterEach
+	void deleteDirs() throws IOException {
+		try (Stream<Path> s = Files.walk(dir)) {
+			for (Path p : s.sorted(Comparator.reverseOrder()).toList()) {
+				Files.delete(p);
+			}
+		}
+	}
+
+	private static void file(Path path, int size) throws IOException {
+		Files.createDirectories(path.getParent());
+		Files.write(path, new byte[size]);
+		Files.setLastModifiedTime(path, MODIFIED);
+	}
+
+	private Listing count(Path listed) throws IOException {
+		listings++;
+		try (Stream<Path> s = Files.list(listed)) {
+			Map<String, BasicFileAttributes> entries = new HashMap<>();
+			for (Path p : s.toList()) {
+				entries.put(p.getFileName().toString(),
+						Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS));
+			}
+			return new Listing(Files.getLastModifiedTime(listed), entries);
+		} catch (NoSuchFileException e) {
+			return new Listing(null, null);
+		}
+	}
+
+	private CopyTask task(String relative, long size) {
+		return new CopyTask(FileRecord.sourceFile(dir.resolve("src").resolve(relative), size, Path.of(relative)),
+				FileRecord.targetFile(target.resolve(relative)));
+	}
+
+	private Map<String, BasicFileAttributes> list(TargetIndex index) throws IOException {
+		return index.list(target.resolve("a"), this::count);
+	}
+
+	private TargetIndex saved(TargetIndex index) {
+		index.save();
+		return TargetIndex.load(settings, 0);
+	}
+
+	@Test
+	void unchangedTest() throws IOException {
+		TargetIndex index = TargetIndex.load(settings, 0);
+		Map<String, BasicFileAttributes> listed = list(index);
+		assertEquals(1, listings);
+
+		// Not listed again, same sizes and modified times
+		Map<String, BasicFileAttributes> indexed = list(saved(index));
+		assertEquals(1, listings);
+		assertEquals(listed.keySet(), indexed.keySet());
+		assertEquals(200, indexed.get("y.bin").size());
+		assertEquals(MODIFIED, indexed.get("y.bin").lastModifiedTime());
+		assertTrue(indexed.get("y.bin").isRegularFile());
+	}
+
+	@Test
+	void changedTest() throws IOException {
+		TargetIndex index = saved(TargetIndex.load(settings, 0));
+		list(index);
+		assertEquals(1, listings);
+		index = saved(index);
+
+		// Added by someone else
+		file(target.resolve("a/z.bin"), 300);
+		Files.setLastModifiedTime(target.resolve("a"), MODIFIED);
+		assertTrue(list(index).containsKey("z.bin"));
+		assertEquals(2, listings);
+
+		// Removed
+		index = saved(index);
+		Files.delete(target.resolve("a/z.bin"));
+		Files.delete(target.resolve("a/y.bin"));
+		Files.delete(target.resolve("a/x.bin"));
+		Files.delete(target.resolve("a"));
+		assertNull(list(index));
+		assertEquals(2, listings);
+		assertEquals(0, saved(index).size());
+	}
+
+	@Test
+	void copiedTest() throws Exception {
+		// Partial file of an earlier run
+		Path partial = PartialFile.path(target.resolve("a/n.bin"), 400, MODIFIED);
+		file(partial, 100);
+		TargetIndex index = TargetIndex.load(settings, 0);
+		assertTrue(list(index).containsKey(partial.getFileName().toString()));
+
+		// Copied into the indexed directory, and into one never listed
+		IProgressReport pr = index.report(VOID);
+		for (CopyTask ct : List.of(task("a/n.bin", 400), task("a/b/m.bin", 500))) {
+			pr.event(new CopyStartEvent(ct));
+			file(ct.targetFile().path(), (int) ct.sourceFile().size());
+			pr.event(new ModifiedTimeEvent(MODIFIED));
+			pr.event(new CopyEndEvent(ct));
+		}
+		Files.delete(partial);
+
+		// Directories take their modified time after the copy, not listed again
+		index = saved(index);
+		Map<String, BasicFileAttributes> indexed = list(index);
+		assertEquals(1, listings);
+		assertEquals(400, indexed.get("n.bin").size());
+		assertEquals(MODIFIED, indexed.get("n.bin").lastModifiedTime());
+		assertFalse(indexed.containsKey(partial.getFileName().toString()));
+		assertEquals(500, index.list(target.resolve("a/b"), this::count).get("m.bin").size());
+		assertEquals(1, listings);
+	}
+
+	@Test
+	void abortedTest() throws Exception {
+		TargetIndex index = TargetIndex.load(settings, 0);
+		list(index);
+		CopyTask ct = task("a/n.bin", 400);
+		index.report(VOID).event(new CopyStartEvent(ct));
+		file(ct.targetFile().path(), 100);
+
+		// Unfinished copy, listed again
+		list(saved(index));
+		assertEquals(2, listings);
+	}
+
+	@Test
+	void corruptTest() throws IOException {
+		Files.write(TargetIndex.indexFile(target), new byte[] { 1, 2, 3 });
+		list(TargetIndex.load(settings, 0));
+		assertEquals(1, listings);
+	}
+
+	@Test
+	void disabledTest() throws IOException {
+		TargetIndex index = TargetIndex.load(new AnalyseSettings(settings.sourceDir(), target, false, false, false,
+				false, false), 0);
+		list(index);
+		list(index);
+		index.save();
+		assertEquals(2, listings);
+		assertFalse(Files.exists(TargetIndex.indexFile(target)));
+	}
+}
@@ -0,0 +1,107 @@
+package ct.action.copy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+
+import ct.action.copy.io.FilesIO;
+import ct.action.copy.io.IOWrapper;
+import ct.action.copy.io.IOWrapper.WT;
+import ct.action.copy.model.CopyTask;
+import ct.action.copy.model.FileRecord;
+import ct.app.Settings;
+
+public class AsyncCopyIT extends RobustCopyIT {
+
+	private RobustCopy createAsync(IOWrapper wrapper, int rollback, int ops) {
+		return createRobustCopy(wrapper, Settings.test(TEST_BUFFER_SIZE).rollback(rollback).asyncOps(ops).build());
+	}
+
+	private void copyAndVerify2999bFile(IOWrapper wrapper, int rollback, int ops) throws Exception {
+		createAsync(wrapper, rollback, ops).copy(new CopyTask(file2999b(), tempFile()));
+		verifySha256Temp(SHA_256_2999B_FILE, true);
+	}
+
+	@Test
+	void canary() throws Exception {
+		for (int ops = 1; ops <= 8; ops++) {
+			subTestStart();
+			copyAndVerify2999bFile(new FilesIO(), 0, ops);
+		}
+	}
+
+	@Test
+	void sanitySmallFiles() throws Exception {
+		createAsync(new FilesIO(), 0, 2).copy(new CopyTask(file0b(), tempFile()));
+		verifySha256Temp(SHA_256_0B_FILE, true);
+		createAsync(new FilesIO(), 0, 2).copy(new CopyTask(file1b(), tempFile()));
+		verifySha256Temp(SHA_256_1B_FILE, true);
+	}
+
+	@Test
+	void interrupt() throws Exception {
+		Thread.currentThread().interrupt();
+		assertThrows(InterruptedException.class,
+				() -> createAsync(new FilesIO(), 0, 2).copy(new CopyTask(file2999b(), tempFile())));
+		verifySha256Temp(SHA_256_2999B_FILE, false);
+	}
+
+	@Test
+	void readWriteFails() throws Exception {
+		subTestStart();
+		TestFailableIO io = new TestFailableIO();
+		copyAndVerify2999bFile(io.failAt(WT.read, 2).failAt(WT.write, 4), 0, 2);
+		assertEquals(io.count(WT.open), io.count(WT.close));
+
+		subTestStart();
+		copyAndVerify2999bFile(new TestFailableIO().writeOneLessAt(3), 0, 2);
+
+		subTestStart();
+		copyAndVerify2999bFile(new TestFailableIO().writeZeroAt(3), 0, 2);
+
+		subTestStart();
+		copyAndVerify2999bFile(new TestFailableIO().readZeroAt(3), 0, 2);
+
+		subTestStart();
+		copyAndVerify2999bFile(new TestFailableIO().readEofAt(3).failAt(WT.open, 2), 0, 2);
+	}
+
+	@Test
+	void onlyUnacknowledgedRetried() throws Exception {
+		TestFailableIO io = new TestFailableIO();
+		copyAndVerify2999bFile(io.failAt(WT.write, 2), 0, 2);
+		// 6 chunks, first write acknowledged before the failed second, third read again
+		assertEquals(7, io.count(WT.write));
+		assertEquals(8, io.count(WT.read));
+	}
+
+	@Test
+	void resume() throws Exception {
+		copyAndVerify2999bFile(new FilesIO(), 0, 2);
+		FileChannel.open(tempFile().path(), StandardOpenOption.WRITE).truncate(1024).close();
+		verifySha256Temp(SHA_256_2999B_FILE, false);
+
+		FileRecord fr = file2999b();
+		FileRecord rr = FileRecord.resumeSource(fr.path(), fr.size(), 1024, fr.relativeFromSource());
+		TestFailableIO io = new TestFailableIO();
+		createAsync(io, 0, 2).copy(new CopyTask(rr, tempFile()));
+		verifySha256Temp(SHA_256_2999B_FILE, true);
+		assertEquals(4, io.count(WT.read));
+		assertEquals(4, io.count(WT.write));
+	}
+
+	@Test
+	void rollback() throws Exception {
+		subTestStart();
+		copyAndVerify2999bFile(new TestFailableIO().corruptAt(WT.write, 1).failAt(WT.write, 3), 2, 1);
+
+		subTestStart();
+		createAsync(new TestFailableIO().corruptAt(WT.write, 1).failAt(WT.write, 3), 0, 1)
+				.copy(new CopyTask(file2999b(), tempFile()));
+		verifySha256Temp(SHA_256_2999B_FILE, false);
+	}
+}
@@ -0,0 +1,135 @@
+package ct.action.copy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Files;
+import java.util.zip.CRC32C;
+
+import org.junit.jupiter.api.Test;
+
+import ct.action.copy.io.FilesIO;
+import ct.action.copy.io.IOWrapper;
+import ct.action.copy.io.IOWrapper.WT;
+import ct.action.copy.model.CopyTask;
+import ct.action.copy.model.FileRecord;
+import ct.action.copy.progress.IProgressEvent;
+import ct.action.copy.progress.IProgressEvent.ChecksumEvent;
+import ct.app.Settings;
+import ct.app.Settings.Checksum;
+import ct.app.Settings.CopyMode;
+import ct.app.Settings.TestBuilder;
+
+public class ChecksumIT extends RobustCopyIT {
+
+	private String digest;
+
+	private void copy(IOWrapper wrapper, Settings settings, FileRecord source) throws Exception {
+		digest = null;
+		RobustCopy.create(settings.robustCopy(), wrapper, new TestVoidProgress() {
+			@Override
+			public void event(IProgressEvent event) {
+				if (event instanceof ChecksumEvent e) {
+					digest = e.digest();
+				}
+			}
+		}).copy(new CopyTask(source, tempFile()));
+	}
+
+	private void copyAndVerify2999bFile(IOWrapper wrapper, Settings settings) throws Exception {
+		copy(wrapper, settings, file2999b());
+		verifySha256Temp(SHA_256_2999B_FILE, true);
+		assertEquals(SHA_256_2999B_FILE, digest);
+	}
+
+	private static TestBuilder sha256() {
+		return Settings.test(TEST_BUFFER_SIZE).checksum(Checksum.SHA_256);
+	}
+
+	private static Settings sha256(CopyMode mode, int rollback) {
+		return sha256().mode(mode).rollback(rollback).build();
+	}
+
+	@Test
+	void allModes() throws Exception {
+		for (CopyMode mode : CopyMode.values()) {
+			subTestStart();
+			copyAndVerify2999bFile(new FilesIO(), sha256(mode, 0));
+		}
+	}
+
+	@Test
+	void allEngines() throws Exception {
+		// Pipelined, async and streams
+		copyAndVerify2999bFile(new FilesIO(), sha256().pipelineDepth(2).build());
+		copyAndVerify2999bFile(new FilesIO(), sha256().asyncOps(4).build());
+		copyAndVerify2999bFile(new FilesIO(), sha256().streams(3).build());
+		// Clone and delta sync of an existing target
+		copyAndVerify2999bFile(new FilesIO(), sha256().reflink(true).build());
+		copyAndVerify2999bFile(new FilesIO(), sha256().delta(true).build());
+	}
+
+	@Test
+	void crc32c() throws Exception {
+		CRC32C crc = new CRC32C();
+		crc.update(Files.readAllBytes(file2999b().path()));
+		copy(new FilesIO(), Settings.test(TEST_BUFFER_SIZE).checksum(Checksum.CRC32C).build(), file2999b());
+		assertEquals("%08x".formatted(crc.getValue()), digest);
+	}
+
+	@Test
+	void hashedWhileCopying() throws Exception {
+		// No extra reads
+		TestFailableIO io = new TestFailableIO();
+		copyAndVerify2999bFile(io, sha256(CopyMode.DIRECT_BUFFER, 0));
+		assertEquals(6, io.count(WT.read));
+
+		// Rolled back bytes are hashed again from the restart
+		io = new TestFailableIO();
+		copyAndVerify2999bFile(io.failAt(WT.write, 3), sha256(CopyMode.DIRECT_BUFFER, 1));
+		io = new TestFailableIO();
+		copyAndVerify2999bFile(io.failAt(WT.read, 3), sha256(CopyMode.DIRECT_BUFFER, 2));
+	}
+
+	@Test
+	void corruptedReadRolledBack() throws Exception {
+		// Corrupted read is hashed, read again after the rollback, digest of the source
+		TestFailableIO io = new TestFailableIO();
+		copyAndVerify2999bFile(io.corruptAt(WT.read, 3).failAt(WT.read, 5), sha256(CopyMode.DIRECT_BUFFER, 2));
+		assertEquals(9, io.count(WT.read));
+
+		subTestStart();
+		CRC32C crc = new CRC32C();
+		crc.update(Files.readAllBytes(file2999b().path()));
+		copy(new TestFailableIO().corruptAt(WT.read, 3).failAt(WT.read, 5),
+				Settings.test(TEST_BUFFER_SIZE).rollback(2).checksum(Checksum.CRC32C).build(), file2999b());
+		verifySha256Temp(SHA_256_2999B_FILE, true);
+		assertEquals("%08x".formatted(crc.getValue()), digest);
+	}
+
+	@Test
+	void resume() throws Exception {
+		copy(new FilesIO(), sha256(CopyMode.DIRECT_BUFFER, 0), file1999b());
+		TestFailableIO io = new TestFailableIO();
+		FileRecord source = file1999b();
+		copy(io, sha256(CopyMode.DIRECT_BUFFER, 0),
+				FileRecord.resumeSource(source.path(), source.size(), 512 * 2, source.relativeFromSource()));
+		verifySha256Temp(SHA_256_1999B_FILE, true);
+		assertEquals(SHA_256_1999B_FILE, digest);
+		// Resumed part is read for the checksum only
+		assertEquals(4, io.count(WT.read));
+	}
+
+	@Test
+	void zeroCopyParallelPass() throws Exception {
+		// Source is read once by the parallel pass
+		TestFailableIO io = new TestFailableIO();
+		copyAndVerify2999bFile(io, sha256(CopyMode.ZERO_COPY, 0));
+		assertEquals(6, io.count(WT.read));
+		assertEquals(6, io.count(WT.transferTo));
+
+		// Failed pass is continued after the transfer
+		io = new TestFailableIO();
+		copyAndVerify2999bFile(io.failAt(WT.read, 2), sha256(CopyMode.ZERO_COPY, 0));
+		assertEquals(6, io.count(WT.transferTo));
+	}
+}
@@ -0,0 +1,80 @@
+package ct.action.copy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+
+import ct.action.copy.io.FilesIO;
+import ct.action.copy.io.IOWrapper;
+import ct.action.copy.io.IOWrapper.WT;
+import ct.action.copy.model.CopyTask;
+import ct.action.copy.model.FileRecord;
+import ct.app.Settings;
+import ct.app.Settings.CopyMode;
+
+public class CloneCopyIT extends RobustCopyIT {
+
+	private RobustCopy createClone(IOWrapper wrapper, CopyMode mode) {
+		return createRobustCopy(wrapper, Settings.test(TEST_BUFFER_SIZE).mode(mode).reflink(true).build());
+	}
+
+	private void copyAndVerify1999bFile(IOWrapper wrapper) throws Exception {
+		createClone(wrapper, CopyMode.DIRECT_BUFFER).copy(new CopyTask(file1999b(), tempFile()));
+		verifySha256Temp(SHA_256_1999B_FILE, true);
+	}
+
+	@Test
+	void canary() throws Exception {
+		// Clones on btrfs/XFS, copies everywhere else
+		copyAndVerify1999bFile(new FilesIO());
+		createClone(new FilesIO(), CopyMode.ZERO_COPY).copy(new CopyTask(file2999b(), tempFile()));
+		verifySha256Temp(SHA_256_2999B_FILE, true);
+		// Will truncate
+		copyAndVerify1999bFile(new FilesIO());
+	}
+
+	@Test
+	void sanitySmallFiles() throws Exception {
+		createClone(new FilesIO(), CopyMode.DIRECT_BUFFER).copy(new CopyTask(file0b(), tempFile()));
+		verifySha256Temp(SHA_256_0B_FILE, true);
+		createClone(new FilesIO(), CopyMode.DIRECT_BUFFER).copy(new CopyTask(file1b(), tempFile()));
+		verifySha256Temp(SHA_256_1B_FILE, true);
+	}
+
+	@Test
+	void fallbackWhenUnsupported() throws Exception {
+		TestFailableIO io = new TestFailableIO();
+		copyAndVerify1999bFile(io.cloneUnsupported());
+		assertEquals(1, io.count(WT.clone));
+		assertEquals(4, io.count(WT.read));
+		assertEquals(4, io.count(WT.write));
+
+		// Resume is passed on to fallback
+		FileChannel.open(tempFile().path(), StandardOpenOption.WRITE).truncate(1024).close();
+		FileRecord fr = file1999b();
+		FileRecord rr = FileRecord.resumeSource(fr.path(), fr.size(), 1024, fr.relativeFromSource());
+		io = new TestFailableIO();
+		createClone(io.cloneUnsupported(), CopyMode.DIRECT_BUFFER).copy(new CopyTask(rr, tempFile()));
+		verifySha256Temp(SHA_256_1999B_FILE, true);
+		assertEquals(2, io.count(WT.read));
+	}
+
+	@Test
+	void fallbackWhenNativeUnsupported() throws Exception {
+		TestFailableIO io = new TestFailableIO();
+		copyAndVerify1999bFile(io.nativeUnsupported());
+		assertEquals(0, io.count(WT.clone));
+		assertEquals(4, io.count(WT.read));
+	}
+
+	@Test
+	void openFails() throws Exception {
+		TestFailableIO io = new TestFailableIO();
+		copyAndVerify1999bFile(io.failAt(WT.open, 2));
+		// Close everything opened, except the failed open
+		assertEquals(io.count(WT.open) - 1, io.count(WT.close));
+	}
+}
@@ -0,0 +1,196 @@
+package ct.action.copy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileStoreAttributeView;
+
+import org.junit.jupiter.api.Test;
+
+import ct.action.copy.io.FilesIO;
+import ct.action.copy.io.IOWrapper;
+import ct.action.copy.io.IOWrapper.WT;
+import ct.action.copy.model.CopyTask;
+import ct.app.Settings;
+
+public class DeltaCopyIT extends RobustCopyIT {
+
+	private RobustCopy createDelta(IOWrapper wrapper, int rollback) {
+		return createRobustCopy(wrapper, Settings.test(TEST_BUFFER_SIZE).rollback(rollback).delta(true).build());
+	}
+
+	private void copyAndVerify2999bFile(IOWrapper wrapper, int rollback) throws Exception {
+		createDelta(wrapper, rollback).copy(new CopyTask(file2999b(), tempFile()));
+		verifySha256Temp(SHA_256_2999B_FILE, true);
+	}
+
+	private void corruptTemp(long position) throws Exception {
+		try (FileChannel fc = FileChannel.open(tempFile().path(), StandardOpenOption.WRITE)) {
+			fc.write(ByteBuffer.wrap(new byte[] { 0 }), position);
+		}
+		verifySha256Temp(SHA_256_2999B_FILE, false);
+	}
+
+	@Test
+	void newTarget() throws Exception {
+		// Empty target is copied by selected engine
+		TestFailableIO io = new TestFailableIO();
+		copyAndVerify2999bFile(io, 0);
+		assertEquals(6, io.count(WT.read));
+		assertEquals(6, io.count(WT.write));
+	}
+
+	@Test
+	void missingTarget() throws Exception {
+		// Not created to compare with, copied by selected engine
+		Files.delete(tempFile().path());
+		TestFailableIO io = new TestFailableIO();
+		copyAndVerify2999bFile(io, 0);
+		assertEquals(3, io.count(WT.open));
+		assertEquals(6, io.count(WT.write));
+	}
+
+	@Test
+	void networkTarget() throws Exception {
+		copyAndVerify2999bFile(new FilesIO(), 0);
+		corruptTemp(600);
+
+		// Overwritten without reading the target back
+		FileStore local = Files.getFileStore(tempFile().path());
+		FileStore share = new FileStore() {
+			@Override
+			public String name() {
+				return "//server/share";
+			}
+
+			@Override
+			public String type() {
+				return "cifs";
+			}
+
+			@Override
+			public boolean isReadOnly() {
+				return false;
+			}
+
+			@Override
+			public long getTotalSpace() throws IOException {
+				return local.getTotalSpace();
+			}
+
+			@Override
+			public long getUsableSpace() throws IOException {
+				return local.getUsableSpace();
+			}
+
+			@Override
+			public long getUnallocatedSpace() throws IOException {
+				return local.getUnallocatedSpace();
+			}
+
+			@Override
+			public boolean supportsFileAttributeView(Class<? extends FileAttributeView> type) {
+				return local.supportsFileAttributeView(type);
+			}
+
+			@Override
+			public boolean supportsFileAttributeView(String name) {
+				return local.supportsFileAttributeView(name);
+			}
+
+			@Override
+			public <V extends FileStoreAttributeView> V getFileStoreAttributeView(Class<V> type) {
+				return local.getFileStoreAttributeView(type);
+			}
+
+			@Override
+			public Object getAttribute(String attribute) throws IOException {
+				return local.getAttribute(attribute);
+			}
+		};
+		TestFailableIO io = new TestFailableIO() {
+			@Override
+			public FileStore getFileStore(Path path) throws IOException {
+				super.getFileStore(path);
+				return share;
+			}
+		};
+		RobustCopy delta = createDelta(io, 0);
+		delta.copy(new CopyTask(file2999b(), tempFile()));
+		verifySha256Temp(SHA_256_2999B_FILE, true);
+		assertEquals(6, io.count(WT.read));
+		assertEquals(6, io.count(WT.write));
+
+		// File system checked once
+		delta.copy(new CopyTask(file2999b(), tempFile()));
+		assertEquals(2, io.count(WT.getFileStore));
+	}
+
+	@Test
+	void rewritesDifferingBlocks() throws Exception {
+		copyAndVerify2999bFile(new FilesIO(), 0);
+		corruptTemp(600);
+		corruptTemp(2998);
+
+		// Source and target blocks are read, only two blocks are written
+		TestFailableIO io = new TestFailableIO();
+		copyAndVerify2999bFile(io, 0);
+		assertEquals(12, io.count(WT.read));
+		assertEquals(2, io.count(WT.write));
+		assertEquals(0, io.count(WT.truncate));
+
+		// Identical target, nothing written
+		io = new TestFailableIO();
+		copyAndVerify2999bFile(io, 0);
+		assertEquals(0, io.count(WT.write));
+	}
+
+	@Test
+	void truncatesAndExtends() throws Exception {
+		copyAndVerify2999bFile(new FilesIO(), 0);
+
+		// Larger target, only truncated
+		try (FileChannel fc = FileChannel.open(tempFile().path(), StandardOpenOption.APPEND)) {
+			fc.write(ByteBuffer.wrap(new byte[] { 1, 2, 3, 4 }));
+		}
+		TestFailableIO io = new TestFailableIO();
+		copyAndVerify2999bFile(io, 0);
+		assertEquals(0, io.count(WT.write));
+		assertEquals(1, io.count(WT.truncate));
+
+		// Smaller target, only missing blocks written
+		try (FileChannel fc = FileChannel.open(tempFile().path(), StandardOpenOption.WRITE)) {
+			fc.truncate(512 * 4);
+		}
+		io = new TestFailableIO();
+		copyAndVerify2999bFile(io, 0);
+		assertEquals(2, io.count(WT.write));
+		assertEquals(0, io.count(WT.truncate));
+	}
+
+	@Test
+	void readWriteFails() throws Exception {
+		copyAndVerify2999bFile(new FilesIO(), 0);
+		corruptTemp(600);
+		corruptTemp(1600);
+
+		// Fail at second differing block, first one compared again after rollback
+		TestFailableIO io = new TestFailableIO();
+		copyAndVerify2999bFile(io.failAt(WT.write, 2), 1);
+		assertEquals(3, io.count(WT.write));
+		assertEquals(4, io.count(WT.open));
+
+		// Fail reading, differing block compared again
+		corruptTemp(600);
+		io = new TestFailableIO();
+		copyAndVerify2999bFile(io.failAt(WT.read, 4), 0);
+		assertEquals(1, io.count(WT.write));
+	}
+}
@@ -2,18 +2,24 @@ package ct.action.copy;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
 
 import ct.action.copy.io.FilesIO;
 import ct.action.copy.io.IOWrapper;
 import ct.action.copy.io.IOWrapper.WT;
 import ct.action.copy.model.CopyTask;
 import ct.action.copy.model.FileRecord;
+import ct.app.Settings;
+import ct.app.Settings.CopyMode;
 
 public class DirectBufferCopyIT extends RobustCopyIT {
 
@@ -87,10 +93,10 @@ public class DirectBufferCopyIT extends RobustCopyIT {
 	void sizeTruncateAndRestartFail() throws Exception {
 		copyAndVerify2999bFile(new FilesIO());
 		TestFailableIO io = new TestFailableIO();
-		copyAndVerify1999bFile(io.failAt(WT.truncate, 1).failAt(WT.size, 2).failAt(WT.position, 4));
-		assertEquals(4, io.count(WT.read));
-		assertEquals(4, io.count(WT.write));
-		assertEquals(6, io.count(WT.position));
+		copyAndVerify1999bFile(io.failAt(WT.truncate, 1).failAt(WT.size, 2).failAt(WT.write, 4));
+		assertEquals(5, io.count(WT.read));
+		assertEquals(5, io.count(WT.write));
+		assertEquals(0, io.count(WT.position));
 		assertEquals(3, io.count(WT.size));
 		assertEquals(2, io.count(WT.truncate));
 	}
@@ -113,7 +119,7 @@ public class DirectBufferCopyIT extends RobustCopyIT {
 		testResume(io, 1024, 0);
 		assertEquals(2, io.count(WT.read));
 		assertEquals(2, io.count(WT.write));
-		assertEquals(2, io.count(WT.position));
+		assertEquals(0, io.count(WT.position));
 		assertEquals(0, io.count(WT.truncate));
 
 		// Append bytes
@@ -128,10 +134,78 @@ public class DirectBufferCopyIT extends RobustCopyIT {
 		testResume(io, 1999, 0);
 		assertEquals(0, io.count(WT.read));
 		assertEquals(0, io.count(WT.write));
-		assertEquals(2, io.count(WT.position));
+		assertEquals(0, io.count(WT.position));
 		assertEquals(1, io.count(WT.truncate));
 	}
 
+	@Test
+	void adaptiveShrinksAfterRetry() throws Exception {
+		TestFailableIO io = new TestFailableIO();
+		createRobustCopy(io.failAt(WT.read, 2), Settings.test(TEST_BUFFER_SIZE).minBufferSize(64).build())
+				.copy(new CopyTask(file1999b(), tempFile()));
+		verifySha256Temp(SHA_256_1999B_FILE, true);
+		// Without adaptive 1 + 1 failed + 3 reads, after retry chunks restart at 128 bytes
+		assertTrue(io.count(WT.read) > 5);
+	}
+
+	@Test
+	@EnabledOnOs(OS.LINUX)
+	void cacheHints() throws Exception {
+		TestFailableIO io = new TestFailableIO();
+		createRobustCopy(io, Settings.test(TEST_BUFFER_SIZE).cacheWindow(1024).build())
+				.copy(new CopyTask(file2999b(), tempFile()));
+		verifySha256Temp(SHA_256_2999B_FILE, true);
+		// Read ahead before each read, drop every 1024 bytes of source and target
+		assertEquals(6 + 2 + 2, io.count(WT.advise));
+		assertEquals(4, io.count(WT.open));
+		assertEquals(4, io.count(WT.close));
+	}
+
+	@Test
+	@EnabledOnOs(OS.LINUX)
+	void cacheHintsFail() throws Exception {
+		TestFailableIO io = new TestFailableIO();
+		createRobustCopy(io.failAt(WT.advise, 1),
+				Settings.test(TEST_BUFFER_SIZE).mode(CopyMode.ZERO_COPY).cacheWindow(1024).build())
+				.copy(new CopyTask(file2999b(), tempFile()));
+		verifySha256Temp(SHA_256_2999B_FILE, true);
+		// Only a hint, disabled after the problem
+		assertEquals(1, io.count(WT.advise));
+		assertEquals(io.count(WT.open), io.count(WT.close));
+	}
+
+	@Test
+	@EnabledOnOs(OS.LINUX)
+	void preallocate() throws Exception {
+		subTestStart();
+		TestFailableIO io = new TestFailableIO();
+		createRobustCopy(io, Settings.test(TEST_BUFFER_SIZE).preallocate(true).build())
+				.copy(new CopyTask(file2999b(), tempFile()));
+		verifySha256Temp(SHA_256_2999B_FILE, true);
+		assertEquals(1, io.count(WT.allocate));
+		assertEquals(3, io.count(WT.open));
+		assertEquals(3, io.count(WT.close));
+
+		subTestStart();
+		io = new TestFailableIO();
+		createRobustCopy(io.failAt(WT.allocate, 1),
+				Settings.test(TEST_BUFFER_SIZE).mode(CopyMode.ZERO_COPY).preallocate(true).build())
+				.copy(new CopyTask(file2999b(), tempFile()));
+		verifySha256Temp(SHA_256_2999B_FILE, true);
+		assertEquals(2, io.count(WT.allocate));
+	}
+
+	@Test
+	@EnabledOnOs(OS.LINUX)
+	void preallocateKeepsSize() throws Exception {
+		// Size of an interrupted copy is still the resume position
+		RobustCopy rc = createRobustCopy(new FilesIO(),
+				Settings.test(TEST_BUFFER_SIZE).preallocate(true).build());
+		Thread.currentThread().interrupt();
+		assertThrows(InterruptedException.class, () -> rc.copy(new CopyTask(file2999b(), tempFile())));
+		assertEquals(0, Files.size(tempFile().path()));
+	}
+
 	@Test
 	void resumeWithRollback() throws Exception {
 		createRobustCopy(new TestFailableIO().corruptAt(WT.write, 2)).copy(new CopyTask(file1999b(), tempFile()));
@@ -141,4 +215,16 @@ public class DirectBufferCopyIT extends RobustCopyIT {
 		assertEquals(3, io.count(WT.read));
 		assertEquals(3, io.count(WT.write));
 	}
+
+	@Test
+	void verifiedRollback() throws Exception {
+		TestFailableIO io = new TestFailableIO();
+		Settings settings = Settings.test(TEST_BUFFER_SIZE).rollback(1).verifyRollback(true).build();
+		createRobustCopy(io.failAt(WT.write, 4), settings).copy(new CopyTask(file1999b(), tempFile()));
+		verifySha256Temp(SHA_256_1999B_FILE, true);
+		// Retained chunk before the failed write compared with a target read, landed so not written again,
+		// chunk of the failed write read again
+		assertEquals(6, io.count(WT.read));
+		assertEquals(5, io.count(WT.write));
+	}
 }
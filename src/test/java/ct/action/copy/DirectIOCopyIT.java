@@ -0,0 +1,145 @@
+package ct.action.copy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.nio.file.ExtendedOpenOption;
+
+import ct.action.copy.io.FilesIO;
+import ct.action.copy.io.IOWrapper;
+import ct.action.copy.io.IOWrapper.WT;
+import ct.action.copy.model.CopyTask;
+import ct.action.copy.model.FileRecord;
+import ct.app.Settings;
+import ct.app.Settings.CopyMode;
+import ct.util.TestUtils;
+
+public class DirectIOCopyIT extends RobustCopyIT {
+
+	// Three blocks and an unaligned tail, for 4 KiB blocks
+	private static final int SOURCE_SIZE = 3 * 4096 + 1808;
+
+	private Path source;
+	private String sourceSha256;
+
+	@BeforeEach
+	void createSource() throws IOException {
+		byte[] bytes = new byte[SOURCE_SIZE];
+		new Random(SOURCE_SIZE).nextBytes(bytes);
+		source = Files.createTempFile("ct-test-source-", null);
+		Files.write(source, bytes);
+		sourceSha256 = TestUtils.sha256(bytes);
+	}
+
+	@AfterEach
+	void deleteSource() throws IOException {
+		Files.deleteIfExists(source);
+	}
+
+	private FileRecord sourceFile() {
+		return FileRecord.sourceFile(source, SOURCE_SIZE, source.getFileName());
+	}
+
+	private RobustCopy createDirectIO(IOWrapper wrapper, int rollback) {
+		return createRobustCopy(wrapper,
+				Settings.test(TEST_BUFFER_SIZE).rollback(rollback).mode(CopyMode.DIRECT_IO).build());
+	}
+
+	private void copyAndVerify(IOWrapper wrapper) throws Exception {
+		createDirectIO(wrapper, 0).copy(new CopyTask(sourceFile(), tempFile()));
+		verifySha256Temp(sourceSha256, true);
+	}
+
+	private void assumeDirectSupported() throws IOException {
+		assumeTrue(Files.getFileStore(source).getBlockSize() == 4096);
+		try {
+			FileChannel.open(source, StandardOpenOption.READ, ExtendedOpenOption.DIRECT).close();
+		} catch (IOException | UnsupportedOperationException e) {
+			assumeTrue(false, "Direct I/O not supported: " + e.getMessage());
+		}
+	}
+
+	@Test
+	void canary() throws Exception {
+		copyAndVerify(new FilesIO());
+	}
+
+	@Test
+	void sanitySmallFiles() throws Exception {
+		createDirectIO(new FilesIO(), 0).copy(new CopyTask(file0b(), tempFile()));
+		verifySha256Temp(SHA_256_0B_FILE, true);
+		createDirectIO(new FilesIO(), 0).copy(new CopyTask(file1b(), tempFile()));
+		verifySha256Temp(SHA_256_1B_FILE, true);
+		createDirectIO(new FilesIO(), 0).copy(new CopyTask(file2999b(), tempFile()));
+		verifySha256Temp(SHA_256_2999B_FILE, true);
+	}
+
+	@Test
+	void blocksAndTail() throws Exception {
+		assumeDirectSupported();
+		TestFailableIO io = new TestFailableIO();
+		copyAndVerify(io);
+		// Buffer grows to block size, 3 direct blocks and 1 buffered tail
+		assertEquals(4, io.count(WT.read));
+		assertEquals(4, io.count(WT.open));
+	}
+
+	@Test
+	void readWriteFails() throws Exception {
+		subTestStart();
+		copyAndVerify(new TestFailableIO().failAt(WT.read, 2).failAt(WT.write, 4));
+
+		subTestStart();
+		copyAndVerify(new TestFailableIO().failAt(WT.getFileStore, 1).failAt(WT.open, 3));
+
+		subTestStart();
+		copyAndVerify(new TestFailableIO().writeOneLessAt(4));
+
+		subTestStart();
+		copyAndVerify(new TestFailableIO().readEofAt(2));
+	}
+
+	@Test
+	void unsupportedFallsBack() throws Exception {
+		// Probe rejects O_DIRECT, copied by the direct buffer fallback
+		copyAndVerify(new TestFailableIO().nativeUnsupported());
+	}
+
+	@Test
+	void unsupportedTriedOnce() throws Exception {
+		TestFailableIO io = new TestFailableIO().nativeUnsupported();
+		RobustCopy rc = createDirectIO(io, 0);
+		rc.copy(new CopyTask(sourceFile(), tempFile()));
+		rc.copy(new CopyTask(sourceFile(), tempFile()));
+		verifySha256Temp(sourceSha256, true);
+		// Block sizes only looked up for the first
+		assertEquals(2, io.count(WT.getFileStore));
+	}
+
+	@Test
+	void resumeRoundsDownToBlock() throws Exception {
+		assumeDirectSupported();
+		copyAndVerify(new FilesIO());
+		FileChannel.open(tempFile().path(), StandardOpenOption.WRITE).truncate(5000).close();
+		verifySha256Temp(sourceSha256, false);
+
+		FileRecord fr = sourceFile();
+		FileRecord rr = FileRecord.resumeSource(fr.path(), fr.size(), 5000, fr.relativeFromSource());
+		TestFailableIO io = new TestFailableIO();
+		createDirectIO(io, 0).copy(new CopyTask(rr, tempFile()));
+		verifySha256Temp(sourceSha256, true);
+		// Restart at 4096, 2 direct blocks and tail
+		assertEquals(3, io.count(WT.read));
+	}
+}
@@ -0,0 +1,100 @@
+package ct.action.copy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+
+import ct.action.copy.io.FilesIO;
+import ct.action.copy.io.IOWrapper;
+import ct.action.copy.io.IOWrapper.WT;
+import ct.action.copy.model.CopyTask;
+import ct.action.copy.model.FileRecord;
+import ct.app.Settings;
+import ct.app.Settings.CopyMode;
+
+public class MappedCopyIT extends RobustCopyIT {
+
+	private RobustCopy createMapped(IOWrapper wrapper, int rollback) {
+		return createRobustCopy(wrapper,
+				Settings.test(TEST_BUFFER_SIZE).rollback(rollback).mode(CopyMode.MAPPED).build());
+	}
+
+	private void copyAndVerify1999bFile(IOWrapper wrapper) throws Exception {
+		createMapped(wrapper, 0).copy(new CopyTask(file1999b(), tempFile()));
+		verifySha256Temp(SHA_256_1999B_FILE, true);
+	}
+
+	private void testResume(IOWrapper wrapper, long pos, int rollback) throws Exception {
+		FileRecord fr = file1999b();
+		FileRecord rr = FileRecord.resumeSource(fr.path(), fr.size(), pos, fr.relativeFromSource());
+		createMapped(wrapper, rollback).copy(new CopyTask(rr, tempFile()));
+		verifySha256Temp(SHA_256_1999B_FILE, true);
+	}
+
+	@Test
+	void interruptWrite() throws Exception {
+		Thread.currentThread().interrupt();
+		assertThrows(InterruptedException.class, () -> copyAndVerify1999bFile(new FilesIO()));
+		verifySha256Temp(SHA_256_1999B_FILE, false);
+	}
+
+	@Test
+	void sanitySmallFiles() throws Exception {
+		createMapped(new FilesIO(), 0).copy(new CopyTask(file0b(), tempFile()));
+		verifySha256Temp(SHA_256_0B_FILE, true);
+		createMapped(new FilesIO(), 0).copy(new CopyTask(file1b(), tempFile()));
+		verifySha256Temp(SHA_256_1B_FILE, true);
+	}
+
+	@Test
+	void mapWriteFails() throws Exception {
+		subTestStart();
+		TestFailableIO io = new TestFailableIO();
+		copyAndVerify1999bFile(io.failAt(WT.map, 2).failAt(WT.write, 3));
+		assertEquals(6, io.count(WT.map));
+		assertEquals(5, io.count(WT.write));
+
+		subTestStart();
+		io = new TestFailableIO();
+		copyAndVerify1999bFile(io.writeOneLessAt(3));
+		assertEquals(5, io.count(WT.map));
+
+		subTestStart();
+		io = new TestFailableIO();
+		copyAndVerify1999bFile(io.writeZeroAt(3));
+		assertEquals(5, io.count(WT.map));
+	}
+
+	@Test
+	void resume() throws Exception {
+		copyAndVerify1999bFile(new FilesIO());
+		FileChannel.open(tempFile().path(), StandardOpenOption.WRITE).truncate(1024).close();
+		verifySha256Temp(SHA_256_1999B_FILE, false);
+
+		TestFailableIO io = new TestFailableIO();
+		testResume(io, 1024, 0);
+		assertEquals(2, io.count(WT.map));
+		assertEquals(0, io.count(WT.position));
+		assertEquals(0, io.count(WT.truncate));
+	}
+
+	@Test
+	void resumeWithRollback() throws Exception {
+		copyAndVerify1999bFile(new FilesIO());
+		try (SeekableByteChannel bc = Files.newByteChannel(tempFile().path(), StandardOpenOption.WRITE)) {
+			bc.position(512);
+			bc.write(ByteBuffer.wrap(new byte[] { 0 }));
+		}
+		verifySha256Temp(SHA_256_1999B_FILE, false);
+		TestFailableIO io = new TestFailableIO();
+		testResume(io, 512 * 2, 1);
+		assertEquals(3, io.count(WT.map));
+	}
+}
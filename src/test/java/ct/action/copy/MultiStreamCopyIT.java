@@ -0,0 +1,135 @@
+package ct.action.copy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import ct.action.copy.io.FilesIO;
+import ct.action.copy.io.IOWrapper;
+import ct.action.copy.io.IOWrapper.WT;
+import ct.action.copy.model.CopyTask;
+import ct.action.copy.model.FileRecord;
+import ct.app.Settings;
+
+public class MultiStreamCopyIT extends RobustCopyIT {
+
+	private RobustCopy createMultiStream(IOWrapper wrapper, int streams) {
+		return createRobustCopy(wrapper, Settings.test(TEST_BUFFER_SIZE).streams(streams).build());
+	}
+
+	private void copyAndVerify2999bFile(IOWrapper wrapper, int streams) throws Exception {
+		createMultiStream(wrapper, streams).copy(new CopyTask(file2999b(), tempFile()));
+		verifySha256Temp(SHA_256_2999B_FILE, true);
+	}
+
+	private Path rangesFile() {
+		return MultiStreamCopy.rangesFile(tempFile().path());
+	}
+
+	@AfterEach
+	void deleteRanges() throws Exception {
+		Files.deleteIfExists(rangesFile());
+	}
+
+	@Test
+	void canary() throws Exception {
+		for (int streams = 2; streams <= 8; streams++) {
+			subTestStart();
+			copyAndVerify2999bFile(new FilesIO(), streams);
+			assertFalse(Files.exists(rangesFile()));
+		}
+	}
+
+	@Test
+	void sanitySmallFiles() throws Exception {
+		createMultiStream(new FilesIO(), 4).copy(new CopyTask(file0b(), tempFile()));
+		verifySha256Temp(SHA_256_0B_FILE, true);
+		createMultiStream(new FilesIO(), 4).copy(new CopyTask(file1b(), tempFile()));
+		verifySha256Temp(SHA_256_1B_FILE, true);
+	}
+
+	@Test
+	void readWriteFails() throws Exception {
+		subTestStart();
+		TestFailableIO io = new TestFailableIO();
+		copyAndVerify2999bFile(io.failAt(WT.read, 2).failAt(WT.write, 4), 2);
+		assertEquals(8, io.count(WT.read));
+
+		subTestStart();
+		copyAndVerify2999bFile(new TestFailableIO().writeOneLessAt(3), 3);
+
+		subTestStart();
+		copyAndVerify2999bFile(new TestFailableIO().readEofAt(2).failAt(WT.open, 3), 3);
+	}
+
+	@Test
+	void resumeOnlyIncompleteRanges() throws Exception {
+		copyAndVerify2999bFile(new FilesIO(), 1);
+
+		// Corrupt second range, ranges with 2 streams are [0, 1536) and [1536, 2999)
+		try (SeekableByteChannel bc = Files.newByteChannel(tempFile().path(), StandardOpenOption.WRITE)) {
+			bc.position(2048);
+			bc.write(ByteBuffer.wrap(new byte[] { 0 }));
+		}
+		verifySha256Temp(SHA_256_2999B_FILE, false);
+
+		// First range complete, second at 2048
+		ByteBuffer bb = ByteBuffer.allocate(20 + 2 * 24);
+		bb.putLong(0x435452414E474531L).putLong(2999).putInt(2);
+		bb.putLong(0).putLong(1536).putLong(1536);
+		bb.putLong(1536).putLong(2999).putLong(2048);
+		try (FileChannel fc = FileChannel.open(rangesFile(), StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
+			fc.write(bb.flip());
+		}
+
+		// Resume from full size, only second range from 2048 is copied
+		FileRecord fr = file2999b();
+		FileRecord rr = FileRecord.resumeSource(fr.path(), fr.size(), fr.size(), fr.relativeFromSource());
+		TestFailableIO io = new TestFailableIO();
+		createMultiStream(io, 2).copy(new CopyTask(rr, tempFile()));
+		verifySha256Temp(SHA_256_2999B_FILE, true);
+		// One read of range file, two reads of data
+		assertEquals(3, io.count(WT.read));
+		assertFalse(Files.exists(rangesFile()));
+	}
+
+	@Test
+	void resumeWithoutRanges() throws Exception {
+		copyAndVerify2999bFile(new FilesIO(), 2);
+		FileChannel.open(tempFile().path(), StandardOpenOption.WRITE).truncate(1024).close();
+
+		FileRecord fr = file2999b();
+		FileRecord rr = FileRecord.resumeSource(fr.path(), fr.size(), 1024, fr.relativeFromSource());
+		TestFailableIO io = new TestFailableIO();
+		createMultiStream(io, 2).copy(new CopyTask(rr, tempFile()));
+		verifySha256Temp(SHA_256_2999B_FILE, true);
+		// Target length is no resume point without ranges, copied again in [0, 1536) and [1536, 2999)
+		assertEquals(6, io.count(WT.read));
+	}
+
+	@Test
+	void resumeWithTornRanges() throws Exception {
+		// Last range landed first, first range still a hole, range file torn by a crash
+		copyAndVerify2999bFile(new FilesIO(), 2);
+		try (SeekableByteChannel bc = Files.newByteChannel(tempFile().path(), StandardOpenOption.WRITE)) {
+			bc.write(ByteBuffer.allocate(1536));
+		}
+		Files.write(rangesFile(), new byte[0]);
+
+		FileRecord fr = file2999b();
+		FileRecord rr = FileRecord.resumeSource(fr.path(), fr.size(), fr.size(), fr.relativeFromSource());
+		createMultiStream(new FilesIO(), 2).copy(new CopyTask(rr, tempFile()));
+		verifySha256Temp(SHA_256_2999B_FILE, true);
+		assertFalse(Files.exists(rangesFile()));
+		assertFalse(Files.exists(rangesFile().resolveSibling(rangesFile().getFileName() + ".tmp")));
+	}
+}
@@ -0,0 +1,111 @@
+package ct.action.copy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+
+import ct.action.copy.io.BufferPool;
+import ct.action.copy.io.FilesIO;
+import ct.action.copy.io.IOWrapper;
+import ct.action.copy.io.IOWrapper.WT;
+import ct.action.copy.model.CopyTask;
+import ct.action.copy.model.FileRecord;
+import ct.app.Settings;
+
+public class MultiThreadedCopyIT extends RobustCopyIT {
+
+	private RobustCopy createPipelined(IOWrapper wrapper, int rollback, int depth) {
+		return createRobustCopy(wrapper,
+				Settings.test(TEST_BUFFER_SIZE).rollback(rollback).pipelineDepth(depth).build());
+	}
+
+	private void copyAndVerify2999bFile(IOWrapper wrapper, int rollback, int depth) throws Exception {
+		createPipelined(wrapper, rollback, depth).copy(new CopyTask(file2999b(), tempFile()));
+		verifySha256Temp(SHA_256_2999B_FILE, true);
+	}
+
+	@Test
+	void canary() throws Exception {
+		for (int depth = 1; depth <= 8; depth++) {
+			subTestStart();
+			copyAndVerify2999bFile(new FilesIO(), 0, depth);
+		}
+	}
+
+	@Test
+	void sanitySmallFiles() throws Exception {
+		createPipelined(new FilesIO(), 0, 2).copy(new CopyTask(file0b(), tempFile()));
+		verifySha256Temp(SHA_256_0B_FILE, true);
+		createPipelined(new FilesIO(), 0, 2).copy(new CopyTask(file1b(), tempFile()));
+		verifySha256Temp(SHA_256_1B_FILE, true);
+	}
+
+	@Test
+	void bufferBudget() throws Exception {
+		// Budget smaller than all buffers, buffers get smaller
+		createRobustCopy(new FilesIO(), Settings.test(TEST_BUFFER_SIZE).pipelineDepth(2).bufferBudget(1024).build())
+				.copy(new CopyTask(file2999b(), tempFile()));
+		verifySha256Temp(SHA_256_2999B_FILE, true);
+		assertEquals(0, BufferPool.shared(1024).reserved());
+	}
+
+	@Test
+	void interruptWrite() throws Exception {
+		Thread.currentThread().interrupt();
+		assertThrows(InterruptedException.class,
+				() -> createPipelined(new FilesIO(), 0, 2).copy(new CopyTask(file2999b(), tempFile())));
+		verifySha256Temp(SHA_256_2999B_FILE, false);
+	}
+
+	@Test
+	void readWriteFails() throws Exception {
+		subTestStart();
+		TestFailableIO io = new TestFailableIO();
+		copyAndVerify2999bFile(io.failAt(WT.read, 2).failAt(WT.write, 4), 0, 2);
+		// Reader and writer close everything they open
+		assertEquals(io.count(WT.open), io.count(WT.close));
+
+		subTestStart();
+		copyAndVerify2999bFile(new TestFailableIO().writeOneLessAt(3), 0, 2);
+
+		subTestStart();
+		copyAndVerify2999bFile(new TestFailableIO().writeZeroAt(3), 0, 2);
+
+		subTestStart();
+		copyAndVerify2999bFile(new TestFailableIO().readZeroAt(3), 0, 2);
+
+		subTestStart();
+		copyAndVerify2999bFile(new TestFailableIO().readEofAt(3).failAt(WT.open, 2), 0, 2);
+	}
+
+	@Test
+	void resume() throws Exception {
+		copyAndVerify2999bFile(new FilesIO(), 0, 2);
+		FileChannel.open(tempFile().path(), StandardOpenOption.WRITE).truncate(1024).close();
+		verifySha256Temp(SHA_256_2999B_FILE, false);
+
+		FileRecord fr = file2999b();
+		FileRecord rr = FileRecord.resumeSource(fr.path(), fr.size(), 1024, fr.relativeFromSource());
+		TestFailableIO io = new TestFailableIO();
+		createPipelined(io, 0, 2).copy(new CopyTask(rr, tempFile()));
+		verifySha256Temp(SHA_256_2999B_FILE, true);
+		// Scatter reads fill a varying number of buffers, writes are one per buffer
+		assertEquals(1, io.count(WT.position));
+		assertEquals(4, io.count(WT.write));
+	}
+
+	@Test
+	void rollback() throws Exception {
+		subTestStart();
+		copyAndVerify2999bFile(new TestFailableIO().corruptAt(WT.write, 1).failAt(WT.write, 3), 2, 2);
+
+		subTestStart();
+		createPipelined(new TestFailableIO().corruptAt(WT.write, 1).failAt(WT.write, 3), 1, 2)
+				.copy(new CopyTask(file2999b(), tempFile()));
+		verifySha256Temp(SHA_256_2999B_FILE, false);
+	}
+}
@@ -0,0 +1,162 @@
+package ct.action.copy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import ct.action.copy.io.FilesIO;
+import ct.action.copy.io.IOWrapper;
+import ct.action.copy.io.IOWrapper.WT;
+import ct.action.copy.model.CopyTask;
+import ct.action.copy.model.FileRecord;
+import ct.action.copy.model.PartialFile;
+import ct.action.copy.progress.IProgressEvent.AbortEvent;
+import ct.app.Settings;
+import ct.app.Settings.Checksum;
+import ct.app.Settings.CopyMode;
+
+public class PartialCopyIT extends RobustCopyIT {
+
+	private static Settings partial(CopyMode mode, Checksum checksum) {
+		return Settings.test(TEST_BUFFER_SIZE).mode(mode).checksum(checksum).partial(true).build();
+	}
+
+	private Path partialFile(FileRecord source) throws Exception {
+		return PartialFile.path(tempFile().path(), source.size(), Files.getLastModifiedTime(source.path()));
+	}
+
+	private void copy(IOWrapper wrapper, Settings settings, FileRecord source) throws Exception {
+		Path target = tempFile().path();
+		Path partial = partialFile(source);
+		Files.deleteIfExists(target);
+		RobustCopy.create(settings.robustCopy(), wrapper, new TestVoidProgress() {
+			@Override
+			public void progress(long position) {
+				// Never half written
+				assertFalse(Files.exists(target));
+			}
+		}).copy(new CopyTask(source, tempFile()));
+		assertFalse(Files.exists(partial));
+		assertEquals(Files.getLastModifiedTime(source.path()), Files.getLastModifiedTime(target));
+	}
+
+	@Test
+	void allModes() throws Exception {
+		for (CopyMode mode : CopyMode.values()) {
+			subTestStart();
+			copy(new FilesIO(), partial(mode, Checksum.NONE), file2999b());
+			verifySha256Temp(SHA_256_2999B_FILE, true);
+		}
+	}
+
+	@Test
+	void resume() throws Exception {
+		// Partial file of the previous run
+		FileRecord source = file1999b();
+		Path partial = partialFile(source);
+		Files.write(partial, Arrays.copyOf(Files.readAllBytes(source.path()), 1024));
+
+		TestFailableIO io = new TestFailableIO();
+		copy(io, partial(CopyMode.DIRECT_BUFFER, Checksum.NONE),
+				FileRecord.resumeSource(source.path(), source.size(), 1024, source.relativeFromSource()));
+		verifySha256Temp(SHA_256_1999B_FILE, true);
+		assertEquals(2, io.count(WT.read));
+	}
+
+	@Test
+	void resumeWithoutPartial() throws Exception {
+		// Source changed, partial file of its new size and time does not exist
+		FileRecord source = file1999b();
+		copy(new FilesIO(), partial(CopyMode.DIRECT_BUFFER, Checksum.NONE),
+				FileRecord.resumeSource(source.path(), source.size(), 1024, source.relativeFromSource()));
+		verifySha256Temp(SHA_256_1999B_FILE, true);
+	}
+
+	@Test
+	void renameRetried() throws Exception {
+		TestFailableIO io = new TestFailableIO();
+		copy(io.failAt(WT.move, 1), partial(CopyMode.DIRECT_BUFFER, Checksum.NONE), file2999b());
+		verifySha256Temp(SHA_256_2999B_FILE, true);
+		assertEquals(2, io.count(WT.move));
+	}
+
+	@Test
+	void checksumMismatchCopiedAgain() throws Exception {
+		// Corrupt bytes landed, caught by the digest of the partial file
+		TestFailableIO io = new TestFailableIO();
+		copy(io.corruptAt(WT.write, 2), partial(CopyMode.DIRECT_BUFFER, Checksum.SHA_256), file2999b());
+		verifySha256Temp(SHA_256_2999B_FILE, true);
+		assertEquals(12, io.count(WT.write));
+	}
+
+	@Test
+	void roundedModifiedTimeKept() throws Exception {
+		// Target file system keeps 2 seconds, not copied again
+		TestFailableIO io = new TestFailableIO() {
+			@Override
+			public Path setLastModifiedTime(Path path, FileTime time) throws IOException {
+				return super.setLastModifiedTime(path, FileTime.fromMillis(time.toMillis() / 2000 * 2000));
+			}
+		};
+		Path copied = Files.copy(file2999b().path(), Files.createTempFile("ct-source-", ".bin"),
+				StandardCopyOption.REPLACE_EXISTING);
+		try {
+			Files.setLastModifiedTime(copied, FileTime.fromMillis(1700000001999L));
+			FileRecord source = FileRecord.sourceFile(copied, 2999, copied.getFileName());
+			Files.deleteIfExists(tempFile().path());
+			RobustCopy.create(partial(CopyMode.DIRECT_BUFFER, Checksum.NONE).robustCopy(), io,
+					new TestVoidProgress()).copy(new CopyTask(source, tempFile()));
+			verifySha256Temp(SHA_256_2999B_FILE, true);
+			assertFalse(Files.exists(partialFile(source)));
+			assertEquals(1, io.count(WT.setLastModifiedTime));
+		} finally {
+			Files.delete(copied);
+		}
+	}
+
+	@Test
+	void mismatchingPartialKept() throws Exception {
+		// Every copy lands corrupt, left unfinished after a bounded number of copies
+		TestFailableIO io = new TestFailableIO() {
+			@Override
+			public int write(FileChannel channel, ByteBuffer src, long position) throws IOException {
+				src.put(src.position(), (byte) (src.get(src.position()) + 1));
+				return super.write(channel, src, position);
+			}
+
+			@Override
+			public int write(FileChannel channel, ByteBuffer src) throws IOException {
+				src.put(src.position(), (byte) (src.get(src.position()) + 1));
+				return super.write(channel, src);
+			}
+		};
+		FileRecord source = file2999b();
+		Files.deleteIfExists(tempFile().path());
+		List<AbortEvent> aborted = new ArrayList<>();
+		RobustCopy.create(partial(CopyMode.DIRECT_BUFFER, Checksum.SHA_256).robustCopy(), io,
+				new TestVoidProgress() {
+					@Override
+					public void abort(AbortEvent event) {
+						aborted.add(event);
+					}
+				}).copy(new CopyTask(source, tempFile()));
+		assertFalse(Files.exists(tempFile().path()));
+		assertTrue(Files.exists(partialFile(source)));
+		assertEquals(3, io.count(WT.setLastModifiedTime));
+		assertEquals(1, aborted.size());
+		Files.delete(partialFile(source));
+	}
+}
@@ -9,6 +9,8 @@ import org.junit.jupiter.api.RepeatedTest;
 import org.junit.jupiter.api.Test;
 
 import ct.action.copy.model.CopyTask;
+import ct.app.Settings;
+import ct.app.Settings.CopyMode;
 import ct.support.chaos.ChaosIO;
 import ct.util.TestUtils;
 
@@ -26,7 +28,10 @@ public class RobustCopyChaosIT extends RobustCopyIT {
 	}
 
 	private void testChaos(int chance, int rollback, boolean zeroCopy) throws Exception {
-		RobustCopy rc = createRobustCopy(new ChaosIO(chance, seed), rollback, zeroCopy);
+		testChaos(createRobustCopy(new ChaosIO(chance, seed), rollback, zeroCopy));
+	}
+
+	private void testChaos(RobustCopy rc) throws Exception {
 		rc.copy(new CopyTask(file2999b(), tempFile()));
 		chaosAssert(SHA_256_2999B_FILE);
 		// Will truncate
@@ -49,6 +54,42 @@ public class RobustCopyChaosIT extends RobustCopyIT {
 		testChaos(3300, 2, true);
 	}
 
+	@Test
+	void midFailChanceMappedWithRollback() throws Exception {
+		testChaos(createRobustCopy(new ChaosIO(3300, seed),
+				Settings.test(TEST_BUFFER_SIZE).rollback(2).mode(CopyMode.MAPPED).build()));
+	}
+
+	@Test
+	void midFailChanceServerSideWithRollback() throws Exception {
+		testChaos(createRobustCopy(new ChaosIO(3300, seed),
+				Settings.test(TEST_BUFFER_SIZE).rollback(2).mode(CopyMode.SERVER_SIDE).build()));
+	}
+
+	@Test
+	void midFailChancePipelinedWithRollback() throws Exception {
+		testChaos(createRobustCopy(new ChaosIO(3300, seed),
+				Settings.test(TEST_BUFFER_SIZE).rollback(2).pipelineDepth(2).build()));
+	}
+
+	@Test
+	void midFailChanceMultiStreamWithRollback() throws Exception {
+		testChaos(createRobustCopy(new ChaosIO(3300, seed),
+				Settings.test(TEST_BUFFER_SIZE).rollback(2).streams(3).build()));
+	}
+
+	@Test
+	void midFailChanceAsyncWithRollback() throws Exception {
+		testChaos(createRobustCopy(new ChaosIO(3300, seed),
+				Settings.test(TEST_BUFFER_SIZE).rollback(2).asyncOps(3).build()));
+	}
+
+	@Test
+	void midFailChanceAdaptiveWithRollback() throws Exception {
+		testChaos(createRobustCopy(new ChaosIO(3300, seed),
+				Settings.test(TEST_BUFFER_SIZE).minBufferSize(64).rollback(2).build()));
+	}
+
 	@RepeatedTest(value = 20, name = RepeatedTest.LONG_DISPLAY_NAME)
 	void lowFailChanceDirectBuffer() throws Exception {
 		testChaos(500, 0, false);
@@ -58,4 +99,9 @@ public class RobustCopyChaosIT extends RobustCopyIT {
 	void lowFailChanceZeroCopy() throws Exception {
 		testChaos(500, 0, true);
 	}
+
+	@RepeatedTest(value = 20, name = RepeatedTest.LONG_DISPLAY_NAME)
+	void lowFailChancePipelined() throws Exception {
+		testChaos(createRobustCopy(new ChaosIO(500, seed), Settings.test(TEST_BUFFER_SIZE).pipelineDepth(2).build()));
+	}
 }
@@ -19,6 +19,7 @@ import ct.action.copy.progress.IProgressEvent.AbortEvent;
 import ct.action.copy.progress.IProgressReport;
 import ct.app.App;
 import ct.app.Settings;
+import ct.app.Settings.CopyMode;
 import ct.tui.copy.StdoutProgress;
 import ct.util.TestUtils;
 
@@ -30,7 +31,7 @@ public abstract class RobustCopyIT {
 	protected static final String SHA_256_1B_FILE = "4bf5122f344554c53bde2ebb8cd2b7e3d1600ad631c385a5d7cce23c7785459a";
 	protected static final String SHA_256_1999B_FILE = "ca40ee83ed80d2f85a606289c0e71863a0ab1da7c347198ed761226b1e760670";
 	protected static final String SHA_256_2999B_FILE = "ad3b72ea83803bf178855f7e41e29d4e0bff02b3b69c470d7edaf4459f7157f3";
-	private static final int TEST_BUFFER_SIZE = 512;
+	protected static final int TEST_BUFFER_SIZE = 512;
 
 	private Path tempFile;
 	private int subTest;
@@ -112,8 +113,12 @@ public abstract class RobustCopyIT {
 	}
 
 	protected RobustCopy createRobustCopy(IOWrapper wrapper, int rollback, boolean zeroCopy) {
-		return RobustCopy.create(Settings.testRobustCopy(TEST_BUFFER_SIZE, rollback, zeroCopy).robustCopy(), wrapper,
-				createMessageProducer());
+		return createRobustCopy(wrapper, Settings.test(TEST_BUFFER_SIZE).rollback(rollback)
+				.mode(zeroCopy ? CopyMode.ZERO_COPY : CopyMode.DIRECT_BUFFER).build());
+	}
+
+	protected RobustCopy createRobustCopy(IOWrapper wrapper, Settings settings) {
+		return RobustCopy.create(settings.robustCopy(), wrapper, createMessageProducer());
 	}
 
 	protected void subTestStart() {
@@ -7,6 +7,7 @@ import org.junit.jupiter.api.Test;
 import ct.action.copy.io.IOWrapper;
 import ct.action.copy.io.IOWrapper.WT;
 import ct.action.copy.model.CopyTask;
+import ct.app.Settings;
 
 public class RobustCopyRollbackIT extends RobustCopyIT {
 
@@ -110,4 +111,24 @@ public class RobustCopyRollbackIT extends RobustCopyIT {
 		io = new TestFailableIO().corruptAt(WT.write, 3).failAt(WT.write, 5).corruptAt(WT.read, 6).failAt(WT.read, 9);
 		testRollback(io, 3, true);
 	}
+
+	@Test
+	void verifiedCorruptedWrite() throws Exception {
+		TestFailableIO io;
+
+		// Write fail verifies target against the source from the rollback point, the
+		// corrupted write does not match and is copied again
+		subTestStart();
+		io = new TestFailableIO().corruptAt(WT.write, 3).failAt(WT.write, 5);
+		createRobustCopy(io, Settings.test(TEST_BUFFER_SIZE).rollback(2).verifyRollback(true).build())
+				.copy(new CopyTask(file2999b(), tempFile()));
+		verifySha256Temp(SHA_256_2999B_FILE, true);
+
+		// Corrupted write before the rollback point is not verified, file is corrupt
+		subTestStart();
+		io = new TestFailableIO().corruptAt(WT.write, 3).failAt(WT.write, 5);
+		createRobustCopy(io, Settings.test(TEST_BUFFER_SIZE).rollback(1).verifyRollback(true).build())
+				.copy(new CopyTask(file2999b(), tempFile()));
+		verifySha256Temp(SHA_256_2999B_FILE, false);
+	}
 }
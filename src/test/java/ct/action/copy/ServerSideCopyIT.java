@@ -0,0 +1,117 @@
+package ct.action.copy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import ct.action.copy.io.FilesIO;
+import ct.action.copy.io.IOWrapper;
+import ct.action.copy.io.IOWrapper.WT;
+import ct.action.copy.model.CopyTask;
+import ct.action.copy.model.FileRecord;
+import ct.app.Settings;
+import ct.app.Settings.CopyMode;
+
+@EnabledOnOs(OS.LINUX)
+public class ServerSideCopyIT extends RobustCopyIT {
+
+	private RobustCopy createServerSide(IOWrapper wrapper, int rollback) {
+		return createRobustCopy(wrapper,
+				Settings.test(TEST_BUFFER_SIZE).rollback(rollback).mode(CopyMode.SERVER_SIDE).build());
+	}
+
+	private void copyAndVerify1999bFile(IOWrapper wrapper) throws Exception {
+		createServerSide(wrapper, 0).copy(new CopyTask(file1999b(), tempFile()));
+		verifySha256Temp(SHA_256_1999B_FILE, true);
+	}
+
+	private void copyAndVerify2999bFile(IOWrapper wrapper) throws Exception {
+		createServerSide(wrapper, 0).copy(new CopyTask(file2999b(), tempFile()));
+		verifySha256Temp(SHA_256_2999B_FILE, true);
+	}
+
+	@Test
+	void canary() throws Exception {
+		TestFailableIO io = new TestFailableIO();
+		copyAndVerify2999bFile(io);
+		// Nothing passes through user space
+		assertEquals(6, io.count(WT.copyFileRange));
+		assertEquals(0, io.count(WT.read));
+		assertEquals(0, io.count(WT.write));
+	}
+
+	@Test
+	void sanitySmallFiles() throws Exception {
+		createServerSide(new FilesIO(), 0).copy(new CopyTask(file0b(), tempFile()));
+		verifySha256Temp(SHA_256_0B_FILE, true);
+		createServerSide(new FilesIO(), 0).copy(new CopyTask(file1b(), tempFile()));
+		verifySha256Temp(SHA_256_1B_FILE, true);
+	}
+
+	@Test
+	void interrupt() throws Exception {
+		Thread.currentThread().interrupt();
+		assertThrows(InterruptedException.class, () -> copyAndVerify1999bFile(new FilesIO()));
+		verifySha256Temp(SHA_256_1999B_FILE, false);
+	}
+
+	@Test
+	void copyAndOpenFails() throws Exception {
+		subTestStart();
+		TestFailableIO io = new TestFailableIO();
+		copyAndVerify1999bFile(io.failAt(WT.copyFileRange, 2).failAt(WT.open, 2));
+		assertEquals(5, io.count(WT.copyFileRange));
+		// Close everything opened, except the failed open
+		assertEquals(6, io.count(WT.open));
+		assertEquals(5, io.count(WT.close));
+	}
+
+	@Test
+	void sizeAndTruncate() throws Exception {
+		copyAndVerify2999bFile(new FilesIO());
+		TestFailableIO io = new TestFailableIO();
+		copyAndVerify1999bFile(io.failAt(WT.truncate, 1).failAt(WT.size, 2));
+		assertEquals(3, io.count(WT.size));
+		assertEquals(2, io.count(WT.truncate));
+	}
+
+	@Test
+	void resume() throws Exception {
+		copyAndVerify1999bFile(new FilesIO());
+		FileChannel.open(tempFile().path(), StandardOpenOption.WRITE).truncate(1024).close();
+		verifySha256Temp(SHA_256_1999B_FILE, false);
+
+		FileRecord fr = file1999b();
+		FileRecord rr = FileRecord.resumeSource(fr.path(), fr.size(), 1024, fr.relativeFromSource());
+		TestFailableIO io = new TestFailableIO();
+		createServerSide(io, 0).copy(new CopyTask(rr, tempFile()));
+		verifySha256Temp(SHA_256_1999B_FILE, true);
+		assertEquals(2, io.count(WT.copyFileRange));
+	}
+
+	@Test
+	void fallbackWhenUnsupported() throws Exception {
+		TestFailableIO io = new TestFailableIO();
+		copyAndVerify1999bFile(io.nativeUnsupported());
+		assertEquals(0, io.count(WT.copyFileRange));
+		assertEquals(4, io.count(WT.read));
+		assertEquals(4, io.count(WT.write));
+	}
+
+	@Test
+	void unsupportedTriedOnce() throws Exception {
+		TestFailableIO io = new TestFailableIO().nativeUnsupported();
+		RobustCopy rc = createServerSide(io, 0);
+		rc.copy(new CopyTask(file1999b(), tempFile()));
+		rc.copy(new CopyTask(file1999b(), tempFile()));
+		verifySha256Temp(SHA_256_1999B_FILE, true);
+		// Files opened by the fallback, descriptor only for the first
+		assertEquals(5, io.count(WT.open));
+	}
+}
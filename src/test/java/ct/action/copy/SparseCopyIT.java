@@ -0,0 +1,194 @@
+package ct.action.copy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import ct.action.copy.io.FilesIO;
+import ct.action.copy.io.IOWrapper;
+import ct.action.copy.io.IOWrapper.WT;
+import ct.action.copy.model.CopyTask;
+import ct.action.copy.model.FileRecord;
+import ct.app.Settings;
+import ct.app.Settings.CopyMode;
+import ct.util.Native;
+import ct.util.TestUtils;
+
+@EnabledOnOs(OS.LINUX)
+public class SparseCopyIT extends RobustCopyIT {
+
+	// Data extents at 0 and 1 MiB, hole up to 2 MiB
+	private static final int EXTENT_SIZE = 3000;
+	private static final long SECOND_EXTENT = 1 << 20;
+	private static final long SOURCE_SIZE = 2 << 20;
+	private static final int BLOCK_SIZE = 4096;
+
+	private Path source;
+	private String sourceSha256;
+
+	@BeforeEach
+	void createSource() throws IOException {
+		byte[] bytes = new byte[EXTENT_SIZE];
+		new Random(EXTENT_SIZE).nextBytes(bytes);
+		source = Files.createTempFile("ct-test-sparse-", null);
+		try (RandomAccessFile raf = new RandomAccessFile(source.toFile(), "rw")) {
+			raf.write(bytes);
+			raf.seek(SECOND_EXTENT);
+			raf.write(bytes);
+			raf.setLength(SOURCE_SIZE);
+		}
+		sourceSha256 = TestUtils.sha256(source);
+	}
+
+	@AfterEach
+	void deleteSource() throws IOException {
+		Files.deleteIfExists(source);
+	}
+
+	private FileRecord sourceFile() {
+		return FileRecord.sourceFile(source, SOURCE_SIZE, source.getFileName());
+	}
+
+	private RobustCopy createSparse(IOWrapper wrapper, int rollback) {
+		return createRobustCopy(wrapper,
+				Settings.test(TEST_BUFFER_SIZE).rollback(rollback).mode(CopyMode.SPARSE).build());
+	}
+
+	private void copyAndVerify(IOWrapper wrapper) throws Exception {
+		createSparse(wrapper, 0).copy(new CopyTask(sourceFile(), tempFile()));
+		verifySha256Temp(sourceSha256, true);
+	}
+
+	private void verifyHoles() throws IOException {
+		int fd = Native.open(tempFile().path(), false);
+		try {
+			// Hole after the first block of each extent
+			assertEquals(SECOND_EXTENT, Native.seekData(fd, BLOCK_SIZE));
+			assertEquals(-1, Native.seekData(fd, SECOND_EXTENT + BLOCK_SIZE));
+		} finally {
+			Native.close(fd);
+		}
+	}
+
+	@Test
+	void canary() throws Exception {
+		TestFailableIO io = new TestFailableIO();
+		copyAndVerify(io);
+		verifyHoles();
+		// Only the data extents pass through the buffer, one block each
+		assertEquals(2 * BLOCK_SIZE / TEST_BUFFER_SIZE, io.count(WT.read));
+		assertEquals(2 * BLOCK_SIZE / TEST_BUFFER_SIZE, io.count(WT.write));
+	}
+
+	@Test
+	void sanitySmallFiles() throws Exception {
+		createSparse(new FilesIO(), 0).copy(new CopyTask(file0b(), tempFile()));
+		verifySha256Temp(SHA_256_0B_FILE, true);
+		createSparse(new FilesIO(), 0).copy(new CopyTask(file1b(), tempFile()));
+		verifySha256Temp(SHA_256_1B_FILE, true);
+		createSparse(new FilesIO(), 0).copy(new CopyTask(file2999b(), tempFile()));
+		verifySha256Temp(SHA_256_2999B_FILE, true);
+	}
+
+	@Test
+	void overwriteKeepsHoles() throws Exception {
+		// Larger target full of old bytes
+		byte[] old = new byte[(int) SOURCE_SIZE + 4096];
+		Arrays.fill(old, (byte) 1);
+		Files.write(tempFile().path(), old);
+
+		copyAndVerify(new FilesIO());
+		verifyHoles();
+	}
+
+	@Test
+	void readSeekAndTruncateFails() throws Exception {
+		subTestStart();
+		copyAndVerify(new TestFailableIO().failAt(WT.read, 3).failAt(WT.write, 8));
+
+		subTestStart();
+		copyAndVerify(new TestFailableIO().failAt(WT.seek, 2).failAt(WT.truncate, 1));
+
+		subTestStart();
+		TestFailableIO io = new TestFailableIO();
+		copyAndVerify(io.failAt(WT.open, 3));
+		// Close everything opened, except the failed open
+		assertEquals(io.count(WT.open) - 1, io.count(WT.close));
+		verifyHoles();
+	}
+
+	@Test
+	void resume() throws Exception {
+		copyAndVerify(new FilesIO());
+		// Partial target, ends inside second extent
+		FileChannel.open(tempFile().path(), StandardOpenOption.WRITE).truncate(SECOND_EXTENT + 1024).close();
+		verifySha256Temp(sourceSha256, false);
+
+		FileRecord fr = sourceFile();
+		FileRecord rr = FileRecord.resumeSource(fr.path(), fr.size(), SECOND_EXTENT + 1024, fr.relativeFromSource());
+		TestFailableIO io = new TestFailableIO();
+		createSparse(io, 0).copy(new CopyTask(rr, tempFile()));
+		verifySha256Temp(sourceSha256, true);
+		verifyHoles();
+		// Rest of the second extent block
+		assertEquals((BLOCK_SIZE - 1024) / TEST_BUFFER_SIZE, io.count(WT.read));
+	}
+
+	@Test
+	void interruptedTargetNotLonger() throws Exception {
+		// Resume trusts the target length, only extended once all extents are written
+		TestFailableIO io = new TestFailableIO() {
+			@Override
+			public int write(FileChannel channel, ByteBuffer src, long position) throws IOException {
+				assertTrue(Files.size(tempFile().path()) <= position);
+				return super.write(channel, src, position);
+			}
+		};
+		copyAndVerify(io.failAt(WT.write, 3));
+		verifyHoles();
+	}
+
+	@Test
+	void fallbackWhenUnsupported() throws Exception {
+		TestFailableIO io = new TestFailableIO();
+		copyAndVerify(io.nativeUnsupported());
+		assertEquals(0, io.count(WT.seek));
+		assertEquals(SOURCE_SIZE / TEST_BUFFER_SIZE, io.count(WT.read));
+	}
+
+	@Test
+	void unsupportedTriedOnce() throws Exception {
+		TestFailableIO io = new TestFailableIO().nativeUnsupported();
+		RobustCopy rc = createSparse(io, 0);
+		rc.copy(new CopyTask(sourceFile(), tempFile()));
+		rc.copy(new CopyTask(sourceFile(), tempFile()));
+		verifySha256Temp(sourceSha256, true);
+		// Files opened by the fallback, descriptor only for the first
+		assertEquals(5, io.count(WT.open));
+	}
+
+	@Test
+	void unalignedHoleStart() throws Exception {
+		// Data written within a block, rest of the block reads as zeros
+		try (FileChannel fc = FileChannel.open(source, StandardOpenOption.WRITE)) {
+			fc.write(ByteBuffer.wrap(new byte[] { 7 }), SOURCE_SIZE - 1);
+		}
+		sourceSha256 = TestUtils.sha256(source);
+		copyAndVerify(new FilesIO());
+	}
+}
@@ -1,15 +1,24 @@
 package ct.action.copy;
 
 import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
 import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.CopyOption;
+import java.nio.file.FileStore;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.nio.file.attribute.FileTime;
+import java.util.concurrent.CompletableFuture;
 
 import ct.action.copy.io.FilesIO;
 import ct.action.copy.io.IOWrapper;
 import ct.app.App;
+import ct.util.Native;
+import ct.util.Native.Advice;
 import ct.util.Utils;
 
 public class TestFailableIO implements IOWrapper {
@@ -24,6 +33,8 @@ public class TestFailableIO implements IOWrapper {
 	private int readEofAt = 0;
 	private int transferOneLessAt = 0;
 	private int transferZeroAt = 0;
+	private boolean nativeUnsupported = false;
+	private boolean cloneUnsupported = false;
 
 	TestFailableIO() {
 		io = new FilesIO();
@@ -32,7 +43,7 @@ public class TestFailableIO implements IOWrapper {
 		corruptAt = new int[WT.values().length];
 	}
 
-	int count(WT t) {
+	synchronized int count(WT t) {
 		return count[t.ordinal()];
 	}
 
@@ -76,12 +87,23 @@ public class TestFailableIO implements IOWrapper {
 		return this;
 	}
 
-	private void incCoundAndCheckFail(WT t) throws IOException {
+	TestFailableIO nativeUnsupported() {
+		nativeUnsupported = true;
+		return this;
+	}
+
+	TestFailableIO cloneUnsupported() {
+		cloneUnsupported = true;
+		return this;
+	}
+
+	private synchronized int incCoundAndCheckFail(WT t) throws IOException {
 		int i = t.ordinal();
 		count[i]++;
 		if (failAt[i] == count[i]) {
 			throw new IOException("Test IOException thrown by: " + t.name() + " (" + count[i] + ")");
 		}
+		return count[i];
 	}
 
 	@Override
@@ -102,6 +124,24 @@ public class TestFailableIO implements IOWrapper {
 		return io.setLastModifiedTime(path, time);
 	}
 
+	@Override
+	public boolean deleteIfExists(Path path) throws IOException {
+		incCoundAndCheckFail(WT.deleteIfExists);
+		return io.deleteIfExists(path);
+	}
+
+	@Override
+	public Path move(Path source, Path target, CopyOption... options) throws IOException {
+		incCoundAndCheckFail(WT.move);
+		return io.move(source, target, options);
+	}
+
+	@Override
+	public FileStore getFileStore(Path path) throws IOException {
+		incCoundAndCheckFail(WT.getFileStore);
+		return io.getFileStore(path);
+	}
+
 	@Override
 	public FileChannel open(Path path, OpenOption... options) throws IOException {
 		incCoundAndCheckFail(WT.open);
@@ -116,35 +156,73 @@ public class TestFailableIO implements IOWrapper {
 
 	@Override
 	public int read(FileChannel channel, ByteBuffer dst) throws IOException {
-		incCoundAndCheckFail(WT.read);
+		int n = incCoundAndCheckFail(WT.read);
 		int read = io.read(channel, dst);
-		if (corruptAt[WT.read.ordinal()] == count[WT.read.ordinal()]) {
+		return (int) afterRead(n, read, dst, channel.position() - read);
+	}
+
+	@Override
+	public int write(FileChannel channel, ByteBuffer src) throws IOException {
+		int n = incCoundAndCheckFail(WT.write);
+		beforeWrite(n, src, channel.position());
+		return (int) afterWrite(n, io.write(channel, src));
+	}
+
+	@Override
+	public int read(FileChannel channel, ByteBuffer dst, long position) throws IOException {
+		int n = incCoundAndCheckFail(WT.read);
+		return (int) afterRead(n, io.read(channel, dst, position), dst, position);
+	}
+
+	@Override
+	public int write(FileChannel channel, ByteBuffer src, long position) throws IOException {
+		int n = incCoundAndCheckFail(WT.write);
+		beforeWrite(n, src, position);
+		return (int) afterWrite(n, io.write(channel, src, position));
+	}
+
+	@Override
+	public long read(FileChannel channel, ByteBuffer[] dsts) throws IOException {
+		int n = incCoundAndCheckFail(WT.read);
+		long read = io.read(channel, dsts);
+		return afterRead(n, read, dsts[0], channel.position() - read);
+	}
+
+	@Override
+	public long write(FileChannel channel, ByteBuffer[] srcs) throws IOException {
+		int n = incCoundAndCheckFail(WT.write);
+		beforeWrite(n, srcs[0], channel.position());
+		return afterWrite(n, io.write(channel, srcs));
+	}
+
+	private long afterRead(int n, long read, ByteBuffer dst, long position) {
+		if (corruptAt[WT.read.ordinal()] == n) {
 			dst.put(0, (byte) 0);
 			if (RobustCopyIT.OUTPUT_VISIBLE) {
-				App.verbose("Corrupting read at", Utils.size(channel.position() - read));
+				App.verbose("Corrupting read at", Utils.size(position));
 			}
 		}
-		if (readZeroAt == count(WT.read)) {
+		if (readZeroAt == n) {
 			return 0;
-		} else if (readEofAt == count(WT.read)) {
+		} else if (readEofAt == n) {
 			return -1;
 		}
 		return read;
 	}
 
-	@Override
-	public int write(FileChannel channel, ByteBuffer src) throws IOException {
-		incCoundAndCheckFail(WT.write);
-		if (corruptAt[WT.write.ordinal()] == count[WT.write.ordinal()]) {
+	private void beforeWrite(int n, ByteBuffer src, long position) {
+		if (corruptAt[WT.write.ordinal()] == n) {
 			if (RobustCopyIT.OUTPUT_VISIBLE) {
-				App.verbose("Corrupting write at", Utils.size(channel.position()));
+				App.verbose("Corrupting write at", Utils.size(position));
 			}
 			src.put(1, (byte) 0);
 		}
-		int write = io.write(channel, src);
-		if (writeOneLessAt == count(WT.write)) {
+	}
+
+	private long afterWrite(int n, long write) {
+		if (writeOneLessAt == n) {
 			return write - 1;
-		} else if (writeZeroAt == count(WT.write)) {
+		} else if (writeZeroAt == n) {
 			return 0;
 		}
 		return write;
@@ -162,6 +240,13 @@ public class TestFailableIO implements IOWrapper {
 		return transferTo;
 	}
 
+	@Override
+	public MemorySegment map(FileChannel channel, MapMode mode, long position, long size, Arena arena)
+			throws IOException {
+		incCoundAndCheckFail(WT.map);
+		return io.map(channel, mode, position, size, arena);
+	}
+
 	@Override
 	public long size(FileChannel channel) throws IOException {
 		incCoundAndCheckFail(WT.size);
@@ -174,9 +259,129 @@ public class TestFailableIO implements IOWrapper {
 		return io.truncate(channel, size);
 	}
 
+	@Override
+	public void force(FileChannel channel, boolean metaData) throws IOException {
+		incCoundAndCheckFail(WT.force);
+		io.force(channel, metaData);
+	}
+
 	@Override
 	public void close(FileChannel channel) throws IOException {
 		incCoundAndCheckFail(WT.close);
 		io.close(channel);
 	}
+
+	@Override
+	public AsynchronousFileChannel openAsync(Path path, OpenOption... options) throws IOException {
+		incCoundAndCheckFail(WT.open);
+		return io.openAsync(path, options);
+	}
+
+	@Override
+	public CompletableFuture<Integer> read(AsynchronousFileChannel channel, ByteBuffer dst, long position)
+			throws IOException {
+		int n = incCoundAndCheckFail(WT.read);
+		return io.read(channel, dst, position).thenApply(read -> (int) afterRead(n, read, dst, position));
+	}
+
+	@Override
+	public CompletableFuture<Integer> write(AsynchronousFileChannel channel, ByteBuffer src, long position)
+			throws IOException {
+		int n = incCoundAndCheckFail(WT.write);
+		beforeWrite(n, src, position);
+		return io.write(channel, src, position).thenApply(write -> (int) afterWrite(n, write));
+	}
+
+	@Override
+	public long size(AsynchronousFileChannel channel) throws IOException {
+		incCoundAndCheckFail(WT.size);
+		return io.size(channel);
+	}
+
+	@Override
+	public AsynchronousFileChannel truncate(AsynchronousFileChannel channel, long size) throws IOException {
+		incCoundAndCheckFail(WT.truncate);
+		return io.truncate(channel, size);
+	}
+
+	@Override
+	public void close(AsynchronousFileChannel channel) throws IOException {
+		incCoundAndCheckFail(WT.close);
+		io.close(channel);
+	}
+
+	@Override
+	public int openFd(Path path, boolean write) throws IOException {
+		incCoundAndCheckFail(WT.open);
+		if (nativeUnsupported) {
+			throw new Native.UnsupportedException("Test native unsupported");
+		}
+		return io.openFd(path, write);
+	}
+
+	@Override
+	public void probeDirect(Path path, boolean write) throws IOException {
+		if (nativeUnsupported) {
+			throw new Native.UnsupportedException("Test native unsupported");
+		}
+		io.probeDirect(path, write);
+	}
+
+	@Override
+	public long copyFileRange(int inFd, long inPosition, int outFd, long outPosition, long count)
+			throws IOException {
+		incCoundAndCheckFail(WT.copyFileRange);
+		return io.copyFileRange(inFd, inPosition, outFd, outPosition, count);
+	}
+
+	@Override
+	public void cloneFd(int inFd, int outFd) throws IOException {
+		incCoundAndCheckFail(WT.clone);
+		if (cloneUnsupported) {
+			throw new Native.UnsupportedException("Test clone unsupported");
+		}
+		io.cloneFd(inFd, outFd);
+	}
+
+	@Override
+	public long seekData(int fd, long position) throws IOException {
+		incCoundAndCheckFail(WT.seek);
+		return io.seekData(fd, position);
+	}
+
+	@Override
+	public long seekHole(int fd, long position) throws IOException {
+		incCoundAndCheckFail(WT.seek);
+		return io.seekHole(fd, position);
+	}
+
+	@Override
+	public void adviseFd(int fd, long position, long length, Advice advice) throws IOException {
+		incCoundAndCheckFail(WT.advise);
+		io.adviseFd(fd, position, length, advice);
+	}
+
+	@Override
+	public void allocateFd(int fd, long size) throws IOException {
+		incCoundAndCheckFail(WT.allocate);
+		io.allocateFd(fd, size);
+	}
+
+	@Override
+	public long sizeFd(int fd) throws IOException {
+		incCoundAndCheckFail(WT.size);
+		return io.sizeFd(fd);
+	}
+
+	@Override
+	public void truncateFd(int fd, long size) throws IOException {
+		incCoundAndCheckFail(WT.truncate);
+		io.truncateFd(fd, size);
+	}
+
+	@Override
+	public void closeFd(int fd) throws IOException {
+		incCoundAndCheckFail(WT.close);
+		io.closeFd(fd);
+	}
 }
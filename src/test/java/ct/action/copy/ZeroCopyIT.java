@@ -17,6 +17,8 @@ import ct.action.copy.io.IOWrapper.WT;
 import ct.action.copy.model.CopyTask;
 import ct.action.copy.model.FileRecord;
 import ct.app.App;
+import ct.app.Settings;
+import ct.app.Settings.CopyMode;
 import ct.util.Utils;
 
 public class ZeroCopyIT extends RobustCopyIT {
@@ -131,4 +133,19 @@ public class ZeroCopyIT extends RobustCopyIT {
 		testResume(io, 512 * 2, 1);
 		assertEquals(3, io.count(WT.transferTo));
 	}
+
+	@Test
+	void resumeWithRollbackLanded() throws Exception {
+		copyAndVerify1999bFile(new TestFailableIO());
+		TestFailableIO io = new TestFailableIO();
+		FileRecord fr = file1999b();
+		FileRecord rr = FileRecord.resumeSource(fr.path(), fr.size(), 512 * 2, fr.relativeFromSource());
+		createRobustCopy(io,
+				Settings.test(TEST_BUFFER_SIZE).rollback(1).mode(CopyMode.ZERO_COPY).verifyRollback(true).build())
+				.copy(new CopyTask(rr, tempFile()));
+		verifySha256Temp(SHA_256_1999B_FILE, true);
+		// Rolled back chunk verified with source and target read, not sent again
+		assertEquals(2, io.count(WT.read));
+		assertEquals(2, io.count(WT.transferTo));
+	}
 }
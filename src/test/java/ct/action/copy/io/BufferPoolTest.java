@@ -0,0 +1,114 @@
+package ct.action.copy.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.foreign.MemorySegment;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+
+public class BufferPoolTest {
+
+	private static final int KB = 1024;
+
+	@Test
+	void withinBudgetTest() throws Exception {
+		BufferPool pool = new BufferPool(1024 * KB);
+		Buffers buffers = pool.acquire(2, 256 * KB, 64 * KB);
+		assertEquals(256 * KB, buffers.size());
+		assertEquals(2, buffers.count());
+		assertEquals(512 * KB, pool.reserved());
+		buffers.release();
+		assertEquals(0, pool.reserved());
+		// Release only once
+		buffers.release();
+		assertEquals(0, pool.reserved());
+	}
+
+	@Test
+	void downsizeTest() throws Exception {
+		BufferPool pool = new BufferPool(1024 * KB);
+		Buffers held = pool.acquire(3, 256 * KB, 64 * KB);
+		Buffers buffers = pool.acquire(2, 512 * KB, 64 * KB);
+		assertEquals(128 * KB, buffers.size());
+		assertEquals(1024 * KB, pool.reserved());
+		held.release();
+		buffers.release();
+		assertEquals(0, pool.reserved());
+	}
+
+	@Test
+	void alignedTest() throws Exception {
+		BufferPool pool = new BufferPool(1024 * KB);
+		Buffers buffers = pool.acquire(2, 64 * KB, 64 * KB, 64 * KB);
+		assertEquals(0, MemorySegment.ofBuffer(buffers.next()).address() % (64 * KB));
+		assertEquals(0, MemorySegment.ofBuffer(buffers.next()).address() % (64 * KB));
+		// Charged to the budget
+		assertEquals(128 * KB, pool.reserved());
+		buffers.release();
+		assertEquals(0, pool.reserved());
+	}
+
+	@Test
+	void largerThanBudgetTest() throws Exception {
+		BufferPool pool = new BufferPool(1024 * KB);
+		Buffers buffers = pool.acquire(4, 1024 * KB, 1024 * KB);
+		assertEquals(256 * KB, buffers.size());
+		buffers.release();
+	}
+
+	@Test
+	void blockUntilReleasedTest() throws Exception {
+		BufferPool pool = new BufferPool(256 * KB);
+		Buffers held = pool.acquire(1, 256 * KB, 128 * KB);
+		CompletableFuture<Buffers> waiting = CompletableFuture.supplyAsync(() -> {
+			try {
+				return pool.acquire(1, 256 * KB, 128 * KB);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		assertThrows(TimeoutException.class, () -> waiting.get(200, TimeUnit.MILLISECONDS));
+		held.release();
+		Buffers buffers = waiting.get(10, TimeUnit.SECONDS);
+		assertEquals(256 * KB, buffers.size());
+		buffers.release();
+		assertEquals(0, pool.reserved());
+	}
+
+	@Test
+	void workerShareTest() throws Exception {
+		BufferPool pool = new BufferPool(1024 * KB).workers(4);
+		Buffers first = pool.acquire(2, 512 * KB, 64 * KB);
+		assertEquals(128 * KB, first.size());
+		Buffers second = pool.acquire(2, 512 * KB, 64 * KB);
+		assertEquals(128 * KB, second.size());
+
+		// Share below the minimum, minimum granted
+		Buffers third = new BufferPool(1024 * KB).workers(64).acquire(2, 512 * KB, 64 * KB);
+		assertEquals(64 * KB, third.size());
+		first.release();
+		second.release();
+		third.release();
+		assertEquals(0, pool.reserved());
+	}
+
+	@Test
+	void releaseFreesTest() throws Exception {
+		Buffers buffers = new BufferPool(1024 * KB).acquire(1, 4 * KB, 4 * KB);
+		assertTrue(buffers.next().isDirect());
+		buffers.release();
+		assertThrows(IllegalStateException.class, () -> buffers.current().get(0));
+	}
+
+	@Test
+	void sharedTest() {
+		assertSame(BufferPool.shared(1024 * KB), BufferPool.shared(1024 * KB));
+		assertThrows(IllegalArgumentException.class, () -> new BufferPool(0));
+	}
+}
@@ -2,8 +2,12 @@ package ct.action.copy.io;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
 import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.Test;
 
@@ -42,4 +46,43 @@ public class BuffersTest {
 		assertEquals(1, buffers.current().limit());
 		assertEquals(1, buffers.next().limit());
 	}
+
+	@Test
+	void releaseInUseTest() throws Exception {
+		// Arena still used by an operation for the first closes
+		Arena shared = Arena.ofShared();
+		AtomicInteger inUse = new AtomicInteger(3);
+		Arena arena = new Arena() {
+			@Override
+			public MemorySegment allocate(long byteSize, long byteAlignment) {
+				return shared.allocate(byteSize, byteAlignment);
+			}
+
+			@Override
+			public MemorySegment.Scope scope() {
+				return shared.scope();
+			}
+
+			@Override
+			public void close() {
+				if (inUse.getAndDecrement() > 0) {
+					throw new IllegalStateException("Session is acquired by 1 clients");
+				}
+				shared.close();
+			}
+		};
+		BufferPool pool = new BufferPool(1024 * 1024);
+		Buffers buffers = new Buffers(2, 1024, Buffers.ALIGNMENT, pool, arena);
+		// Charged as by acquire
+		pool.release(-2048);
+
+		// Bytes stay charged until the arena is closed
+		buffers.release();
+		assertEquals(2048, pool.reserved());
+		for (int i = 0; i < 100 && pool.reserved() > 0; i++) {
+			Thread.sleep(50);
+		}
+		assertEquals(0, pool.reserved());
+		assertTrue(inUse.get() < 0);
+	}
 }
@@ -0,0 +1,65 @@
+package ct.action.copy.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class ChunkSizerTest {
+
+	@Test
+	void fixedTest() {
+		ChunkSizer cs = new ChunkSizer(1024, 1024);
+		assertTrue(cs.isFixed());
+		cs.measured(1024, 1);
+		cs.measured(1024, 1_000_000);
+		cs.retried();
+		assertEquals(1024, cs.size());
+	}
+
+	@Test
+	void invalidTest() {
+		assertThrows(IllegalArgumentException.class, () -> new ChunkSizer(0, 1024));
+		assertThrows(IllegalArgumentException.class, () -> new ChunkSizer(2048, 1024));
+	}
+
+	@Test
+	void retryAndGrowTest() {
+		ChunkSizer cs = new ChunkSizer(1024, 1024 * 17);
+		assertEquals(1024 * 17, cs.size());
+
+		// Retry shrinks sharply, down to floor
+		cs.retried();
+		assertEquals(1024 * 17 / 4, cs.size());
+		cs.retried();
+		cs.retried();
+		assertEquals(1024, cs.size());
+
+		// Stable throughput grows one step per chunk, up to ceiling
+		for (int i = 2; i <= 17; i++) {
+			cs.measured(cs.size(), cs.size());
+			assertEquals(1024 * i, cs.size());
+		}
+		cs.measured(cs.size(), cs.size());
+		assertEquals(1024 * 17, cs.size());
+	}
+
+	@Test
+	void slowChunkTest() {
+		ChunkSizer cs = new ChunkSizer(1024, 1024 * 17);
+		cs.measured(cs.size(), cs.size());
+		assertEquals(1024 * 17, cs.size());
+
+		// Much slower than average halves size
+		cs.measured(cs.size(), cs.size() * 4L);
+		assertEquals(1024 * 17 / 2, cs.size());
+		cs.measured(cs.size(), cs.size() * 4L);
+		assertEquals(1024 * 17 / 4, cs.size());
+
+		// Slightly slower keeps growing
+		int size = cs.size();
+		cs.measured(cs.size(), cs.size() * 2L);
+		assertEquals(size + 1024, cs.size());
+	}
+}
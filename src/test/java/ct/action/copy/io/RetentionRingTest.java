@@ -0,0 +1,90 @@
+package ct.action.copy.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+public class RetentionRingTest {
+
+	private static ByteBuffer read(RetentionRing ring, long position, int length) {
+		ByteBuffer bb = ring.next().clear();
+		for (int i = 0; i < length; i++) {
+			bb.put((byte) (position + i));
+		}
+		bb.flip();
+		ring.read(position);
+		ring.retain();
+		return bb;
+	}
+
+	@Test
+	void fromTest() {
+		RetentionRing ring = new RetentionRing(new Buffers(2, 1024), 2);
+		assertFalse(ring.covers(0));
+		assertNull(ring.from(0));
+
+		read(ring, 0, 100);
+		read(ring, 100, 50);
+		assertTrue(ring.covers(0));
+		assertEquals(100, ring.from(0).remaining());
+		ByteBuffer bb = ring.from(120);
+		assertEquals(30, bb.remaining());
+		assertEquals((byte) 120, bb.get());
+		// Where reading continues
+		assertTrue(ring.covers(150));
+		assertNull(ring.from(150));
+	}
+
+	@Test
+	void evictTest() {
+		RetentionRing ring = new RetentionRing(new Buffers(2, 1024), 2);
+		read(ring, 0, 100);
+		read(ring, 100, 100);
+		read(ring, 200, 100);
+		assertFalse(ring.covers(99));
+		assertNull(ring.from(99));
+		assertEquals((byte) 100, ring.from(100).get());
+		assertEquals((byte) 250, ring.from(250).get());
+
+		// Failed write is not retained, evicts only once
+		ring.next();
+		ring.read(300);
+		ring.next();
+		assertTrue(ring.covers(200));
+		assertFalse(ring.covers(100));
+		assertNull(ring.from(300));
+	}
+
+	@Test
+	void changedTest() {
+		RetentionRing ring = new RetentionRing(new Buffers(3, 1024), 3);
+		read(ring, 0, 100);
+		ByteBuffer changed = read(ring, 100, 100);
+		read(ring, 200, 100);
+
+		// Corrupted in memory after read, dropped with the chunks after it
+		changed.put(1, (byte) 0);
+		assertNull(ring.from(150));
+		assertNull(ring.from(250));
+		assertEquals((byte) 50, ring.from(50).get());
+		assertTrue(ring.covers(100));
+
+		// Reading continues there
+		read(ring, 100, 100);
+		assertEquals((byte) 101, ring.from(101).get());
+	}
+
+	@Test
+	void clearTest() {
+		RetentionRing ring = new RetentionRing(new Buffers(1, 1024), 1);
+		read(ring, 0, 100);
+		ring.clear();
+		assertFalse(ring.covers(0));
+		assertNull(ring.from(0));
+	}
+}
@@ -0,0 +1,124 @@
+package ct.action.copy.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import org.junit.jupiter.api.Test;
+
+import ct.app.Settings.Checksum;
+import ct.util.TestUtils;
+
+public class StreamChecksumTest {
+
+	private static byte[] bytes(int length) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = (byte) i;
+		}
+		return bytes;
+	}
+
+	@Test
+	void inOrderTest() throws Exception {
+		byte[] bytes = bytes(1000);
+		StreamChecksum checksum = new StreamChecksum(Checksum.SHA_256);
+		checksum.update(0, ByteBuffer.wrap(bytes, 0, 400));
+		checksum.update(400, ByteBuffer.wrap(bytes, 400, 600));
+		assertEquals(1000, checksum.position());
+		assertEquals(TestUtils.sha256(bytes), checksum.hex());
+	}
+
+	@Test
+	void rolledBackAndGapTest() {
+		byte[] bytes = bytes(1000);
+		StreamChecksum checksum = new StreamChecksum(Checksum.CRC32C);
+		checksum.update(0, ByteBuffer.wrap(bytes, 0, 500));
+
+		// Beyond hashed position, read later
+		checksum.update(700, ByteBuffer.wrap(bytes, 700, 300));
+		assertEquals(500, checksum.position());
+
+		// Read again after rollback, only new bytes hashed and buffer position kept
+		ByteBuffer bb = ByteBuffer.wrap(bytes, 300, 700);
+		checksum.update(300, bb);
+		assertEquals(300, bb.position());
+		assertEquals(1000, checksum.position());
+
+		CRC32C crc = new CRC32C();
+		crc.update(bytes);
+		assertEquals("%08x".formatted(crc.getValue()), checksum.hex());
+	}
+
+	@Test
+	void rollbackTest() throws Exception {
+		byte[] bytes = bytes(1000);
+		byte[] corrupt = bytes.clone();
+		corrupt[600] = 0;
+		for (Checksum algorithm : List.of(Checksum.CRC32C, Checksum.SHA_256)) {
+			StreamChecksum checksum = new StreamChecksum(algorithm);
+			checksum.update(0, ByteBuffer.wrap(bytes, 0, 300));
+			checksum.update(300, ByteBuffer.wrap(bytes, 300, 200));
+			checksum.update(500, ByteBuffer.wrap(corrupt, 500, 200));
+
+			// Reset at checkpoint, corrupted chunk replaced
+			checksum.rollback(500);
+			assertEquals(500, checksum.position());
+			checksum.update(500, ByteBuffer.wrap(bytes, 500, 500));
+			String expected = checksum.hex();
+
+			// Reset before position without checkpoint, the rest is read later
+			checksum = new StreamChecksum(algorithm);
+			checksum.update(0, ByteBuffer.wrap(bytes, 0, 300));
+			checksum.update(300, ByteBuffer.wrap(corrupt, 300, 700));
+			checksum.rollback(400);
+			assertEquals(300, checksum.position());
+			checksum.update(400, ByteBuffer.wrap(bytes, 400, 600));
+			assertEquals(300, checksum.position());
+			checksum.update(300, ByteBuffer.wrap(bytes, 300, 700));
+			assertEquals(expected, checksum.hex());
+
+			StreamChecksum whole = new StreamChecksum(algorithm);
+			whole.update(0, ByteBuffer.wrap(bytes));
+			assertEquals(expected, whole.hex());
+		}
+	}
+
+	@Test
+	void combineTest() {
+		byte[] bytes = bytes(5000);
+		CRC32C whole = new CRC32C();
+		whole.update(bytes);
+		for (int split : new int[] { 0, 1, 7, 4096, 4999, 5000 }) {
+			CRC32C first = new CRC32C();
+			first.update(bytes, 0, split);
+			CRC32C second = new CRC32C();
+			second.update(bytes, split, bytes.length - split);
+			assertEquals((int) whole.getValue(),
+					StreamChecksum.combine((int) first.getValue(), (int) second.getValue(), bytes.length - split));
+		}
+	}
+
+	@Test
+	void zerosTest() throws Exception {
+		StreamChecksum checksum = new StreamChecksum(Checksum.SHA_256);
+		checksum.update(0, ByteBuffer.wrap(new byte[] { 1 }));
+		checksum.zeros(1, 20000);
+		byte[] bytes = new byte[20001];
+		bytes[0] = 1;
+		assertEquals(TestUtils.sha256(bytes), checksum.hex());
+	}
+
+	@Test
+	void disabledTest() {
+		StreamChecksum checksum = new StreamChecksum(Checksum.NONE);
+		checksum.update(0, ByteBuffer.wrap(bytes(10)));
+		assertFalse(checksum.enabled());
+		assertEquals(0, checksum.position());
+		assertNull(checksum.hex());
+	}
+}
@@ -0,0 +1,31 @@
+package ct.action.copy.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.Test;
+
+public class PartialFileTest {
+
+	@Test
+	void roundTripTest() {
+		FileTime modified = FileTime.fromMillis(1700000000123L);
+		Path partial = PartialFile.path(Paths.get("dst", "a.b.bin"), 2999, modified);
+		assertEquals(Paths.get("dst", ".a.b.bin.2999-1700000000123.ct-partial"), partial);
+
+		PartialFile parsed = PartialFile.parse(partial.getFileName().toString()).orElseThrow();
+		assertEquals(new PartialFile("a.b.bin", 2999, 1700000000123L), parsed);
+	}
+
+	@Test
+	void otherFilesTest() {
+		assertTrue(PartialFile.parse("a.bin").isEmpty());
+		assertTrue(PartialFile.parse(".a.bin.ct-partial").isEmpty());
+		assertTrue(PartialFile.parse(".a.bin.x-1.ct-partial").isEmpty());
+		assertTrue(PartialFile.parse(".a.bin.99999999999999999999-1.ct-partial").isEmpty());
+	}
+}
@@ -0,0 +1,70 @@
+package ct.action.copy.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class TaskTableTest {
+
+	private static final Path SOURCE = Paths.get("/data/src/a");
+	private static final Path TARGET = Paths.get("/backup");
+
+	private static CopyTask task(String relative, long size, long position) {
+		Path r = Paths.get(relative);
+		return new CopyTask(FileRecord.resumeSource(SOURCE.getParent().resolve(r), size, position, r),
+				FileRecord.targetFile(TARGET.resolve(r)));
+	}
+
+	@Test
+	void roundTripTest() {
+		PathTable paths = new PathTable(SOURCE, TARGET);
+		TaskTable table = new TaskTable(paths);
+		List<CopyTask> tasks = List.of(task("a/x.bin", 100, 0), task("a/d1/d2/y.bin", 200, 64),
+				task("a/d1/z.bin", 0, 0), task("x.bin", 5, 0));
+		table.addAll(tasks);
+
+		// Same tasks built from the columns, directories shared
+		assertEquals(tasks, table);
+		assertEquals(FileRecord.sourceFile(SOURCE.resolve("x.bin"), 100, Paths.get("a/x.bin")),
+				table.getFirst().sourceFile());
+		assertEquals(paths.directoryOf(Paths.get("a/d1/q.bin")), paths.directory(paths.directory(PathTable.ROOT,
+				"a"), "d1"));
+	}
+
+	@Test
+	void appendTest() {
+		PathTable paths = new PathTable(SOURCE, TARGET);
+		TaskTable first = new TaskTable(paths);
+		TaskTable second = new TaskTable(paths);
+		int a = paths.directory(PathTable.ROOT, "a");
+		for (int i = 0; i < 100; i++) {
+			first.add(a, i + ".bin", i, null, 0);
+			second.add(paths.directory(a, "d" + i), "f.bin", i, null, i);
+		}
+
+		// Appended in order, as directories are walked
+		first.addAll(second);
+		assertEquals(200, first.size());
+		assertEquals(task("a/99.bin", 99, 0), first.get(99));
+		assertEquals(task("a/d42/f.bin", 42, 42), first.get(142));
+
+		// Part of a table, files listed before a subdirectory
+		first.addAll(second, 40, 50);
+		assertEquals(210, first.size());
+		assertEquals(task("a/d40/f.bin", 40, 40), first.get(200));
+		assertEquals(task("a/d49/f.bin", 49, 49), first.get(209));
+		assertThrows(IndexOutOfBoundsException.class, () -> first.addAll(second, 90, 101));
+
+		first.clear();
+		assertTrue(first.isEmpty());
+		assertThrows(IndexOutOfBoundsException.class, () -> first.get(0));
+		assertThrows(IllegalArgumentException.class,
+				() -> first.addAll(new TaskTable(new PathTable(SOURCE, TARGET))));
+	}
+}
@@ -0,0 +1,251 @@
+package ct.runner.copy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import ct.action.AnalyseAction;
+import ct.action.AnalyseResult;
+import ct.action.TargetIndex;
+import ct.action.copy.model.CopyTask;
+import ct.action.copy.model.FileRecord;
+import ct.action.copy.model.PartialFile;
+import ct.action.copy.progress.IProgressEvent;
+import ct.action.copy.progress.IProgressEvent.AbortEvent;
+import ct.action.copy.progress.IProgressEvent.CopyEndEvent;
+import ct.action.copy.progress.IProgressEvent.CopyStartEvent;
+import ct.action.copy.progress.IProgressEvent.RestartEvent;
+import ct.action.copy.progress.IProgressEvent.RestartType;
+import ct.action.copy.progress.IProgressReport;
+import ct.app.Settings;
+import ct.app.Settings.AnalyseSettings;
+import ct.app.Settings.MultiFileSettings;
+
+public class CopyJournalTest {
+
+	private static final IProgressReport VOID = new IProgressReport() {
+		@Override
+		public void event(IProgressEvent event) {
+		}
+
+		@Override
+		public void abort(AbortEvent event) {
+		}
+	};
+
+	private Path dir;
+	private Settings settings;
+	private List<CopyTask> tasks;
+
+	@BeforeEach
+	void createDirs() throws IOException {
+		dir = Files.createTempDirectory("ct-journal-");
+		Path source = Files.createDirectories(dir.resolve("src/a"));
+		Path target = Files.createDirectories(dir.resolve("dst"));
+		settings = new Settings(new AnalyseSettings(source, target, false, false, false, false, false),
+				Settings.test(512).build().robustCopy(),
+				new MultiFileSettings(false, 2, 120, true, false));
+		tasks = List.of(task("x.bin", 3000), task("y.bin", 1000));
+	}
+
+	@AfterEach
+	void deleteDirs() throws IOException {
+		try (Stream<Path> s = Files.walk(dir)) {
+			for (Path p : s.sorted(Comparator.reverseOrder()).toList()) {
+				Files.delete(p);
+			}
+		}
+	}
+
+	private CopyTask task(String name, int size) throws IOException {
+		Path source = Files.write(settings.analyse().sourceDir().resolve(name), new byte[size]);
+		Path relative = settings.analyse().sourceDir().getParent().relativize(source);
+		return new CopyTask(FileRecord.sourceFile(source, size, relative),
+				FileRecord.targetFile(settings.analyse().targetDir().resolve(relative)));
+	}
+
+	private static void copied(CopyTask ct, int bytes) throws IOException {
+		Files.createDirectories(ct.targetFile().path().getParent());
+		Files.write(ct.targetFile().path(), new byte[bytes]);
+	}
+
+	private CopyJournal interruptedCopy() throws Exception {
+		// Committed only when asked, the committer never runs between the steps
+		CopyJournal journal = CopyJournal.create(settings, tasks, 0);
+		IProgressReport x = journal.report(0, VOID);
+		IProgressReport y = journal.report(1, VOID);
+
+		// First file in flight, second done
+		copied(tasks.get(0), 2048);
+		x.event(new CopyStartEvent(tasks.get(0)));
+		x.progress(2048);
+		copied(tasks.get(1), 1000);
+		y.event(new CopyStartEvent(tasks.get(1)));
+		y.progress(1000);
+		y.event(new CopyEndEvent(tasks.get(1)));
+		journal.commit();
+
+		// Not committed yet
+		copied(tasks.get(0), 2560);
+		x.progress(2560);
+		return journal;
+	}
+
+	private AnalyseResult analyse() {
+		return AnalyseAction.findAllFiles(settings, TargetIndex.disabled(), CopyJournal.load(settings), null);
+	}
+
+	private long resumedPosition() {
+		AnalyseResult result = analyse();
+		assertEquals(1, result.copy().size());
+		CopyTask ct = result.copy().getFirst();
+		assertEquals(tasks.get(0).sourceFile().path(), ct.sourceFile().path());
+		assertEquals(tasks.get(0).targetFile().path(), ct.targetFile().path());
+		return ct.sourceFile().position();
+	}
+
+	@Test
+	void resumeTest() throws Exception {
+		CopyJournal journal = interruptedCopy();
+		// Crashed, only committed offsets
+		assertEquals(2048, resumedPosition());
+		journal.close();
+		assertEquals(2560, resumedPosition());
+	}
+
+	@Test
+	void tornTailTest() throws Exception {
+		interruptedCopy().close();
+		Files.write(CopyJournal.journalFile(settings.analyse().targetDir()), new byte[] { 2, 0, 0, 0, 0, 1 },
+				StandardOpenOption.APPEND);
+		assertEquals(2560, resumedPosition());
+	}
+
+	@Test
+	void rollbackTest() throws Exception {
+		CopyJournal journal = interruptedCopy();
+		journal.report(0, VOID).event(new RestartEvent(1024, RestartType.copy));
+		journal.close();
+		assertEquals(1024, resumedPosition());
+	}
+
+	@Test
+	void changedTest() throws Exception {
+		interruptedCopy().close();
+		// Target lost bytes
+		copied(tasks.get(0), 1024);
+		assertEquals(0, resumedPosition());
+
+		// Source modified
+		copied(tasks.get(0), 2560);
+		assertEquals(2560, resumedPosition());
+		Files.setLastModifiedTime(tasks.get(0).sourceFile().path(), FileTime.fromMillis(0));
+		assertEquals(0, resumedPosition());
+	}
+
+	@Test
+	void completeTest() throws Exception {
+		CopyJournal journal = interruptedCopy();
+		IProgressReport x = journal.report(0, VOID);
+		copied(tasks.get(0), 3000);
+		x.progress(3000);
+		x.event(new CopyEndEvent(tasks.get(0)));
+		journal.close();
+		assertFalse(Files.exists(CopyJournal.journalFile(settings.analyse().targetDir())));
+		assertTrue(CopyJournal.load(settings).isEmpty());
+	}
+
+	@Test
+	void dryRunTest() throws Exception {
+		// Crashed after the last commit, all files done
+		CopyJournal journal = interruptedCopy();
+		IProgressReport x = journal.report(0, VOID);
+		x.progress(3000);
+		x.event(new CopyEndEvent(tasks.get(0)));
+		journal.commit();
+		Path file = CopyJournal.journalFile(settings.analyse().targetDir());
+		Settings dryRun = new Settings(new AnalyseSettings(settings.analyse().sourceDir(),
+				settings.analyse().targetDir(), true, false, false, false, false), settings.robustCopy(),
+				settings.multiFile());
+		assertTrue(CopyJournal.load(dryRun).isEmpty());
+		assertTrue(Files.exists(file));
+		assertTrue(CopyJournal.load(settings).isEmpty());
+		assertFalse(Files.exists(file));
+		journal.close();
+	}
+
+	@Test
+	void disabledTest() throws Exception {
+		interruptedCopy().close();
+		Path file = CopyJournal.journalFile(settings.analyse().targetDir());
+		settings = new Settings(settings.analyse(), settings.robustCopy(),
+				new MultiFileSettings(false, 2, 120, false, false));
+		assertTrue(CopyJournal.load(settings).isEmpty());
+		assertTrue(Files.exists(file));
+
+		// Stale once copied without journal
+		CopyJournal.create(settings, tasks).close();
+		assertFalse(Files.exists(file));
+	}
+
+	@Test
+	void addedFileTest() throws Exception {
+		interruptedCopy().close();
+		CopyTask added = task("z.bin", 100);
+		AnalyseResult result = analyse();
+		assertEquals(2, result.copy().size());
+		for (CopyTask ct : result.copy()) {
+			long expected = ct.sourceFile().path().equals(added.sourceFile().path()) ? 0 : 2560;
+			assertEquals(expected, ct.sourceFile().position());
+		}
+	}
+
+	@Test
+	void partialTest() throws Exception {
+		settings = new Settings(new AnalyseSettings(settings.analyse().sourceDir(), settings.analyse().targetDir(),
+				false, false, false, true, false), Settings.test(512).partial(true).build()
+						.robustCopy(), settings.multiFile());
+		CopyJournal journal = CopyJournal.create(settings, tasks);
+		CopyTask ct = tasks.get(0);
+		Path partial = PartialFile.path(ct.targetFile().path(), ct.sourceFile().size(),
+				Files.getLastModifiedTime(ct.sourceFile().path()));
+
+		// Offsets of bytes in the partial file
+		Files.createDirectories(partial.getParent());
+		Files.write(partial, new byte[2048]);
+		IProgressReport x = journal.report(0, VOID);
+		x.event(new CopyStartEvent(ct));
+		x.progress(2048);
+
+		// Done once renamed into place
+		IProgressReport y = journal.report(1, VOID);
+		y.event(new CopyStartEvent(tasks.get(1)));
+		copied(tasks.get(1), 1000);
+		y.event(new CopyEndEvent(tasks.get(1)));
+		journal.close();
+		assertEquals(2048, resumedPosition());
+		Files.delete(partial);
+		assertEquals(0, resumedPosition());
+	}
+
+	@Test
+	void otherSourceTest() throws Exception {
+		interruptedCopy().close();
+		Settings other = new Settings(new AnalyseSettings(dir, settings.analyse().targetDir(), false, false, false,
+				false, false), settings.robustCopy(), settings.multiFile());
+		assertTrue(CopyJournal.load(other).isEmpty());
+	}
+}
@@ -0,0 +1,81 @@
+package ct.runner.copy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+
+import ct.action.copy.progress.IProgressEvent;
+import ct.action.copy.progress.IProgressEvent.TruncateEvent;
+import ct.action.copy.progress.IProgressEvent.WaitEndEvent;
+
+public class ProgressBoardTest {
+
+	@Test
+	void positionTest() {
+		ProgressBoard board = new ProgressBoard(2);
+		assertEquals(ProgressBoard.UNKNOWN, board.position(0));
+		board.position(0, 100);
+		board.position(1, 200);
+		assertEquals(100, board.position(0));
+		assertEquals(200, board.position(1));
+	}
+
+	@Test
+	void eventOrderTest() throws Exception {
+		ProgressBoard board = new ProgressBoard(2);
+		for (int i = 0; i < 3000; i++) {
+			board.publish(1, new TruncateEvent(i));
+			assertEquals(new TruncateEvent(i), board.poll(1));
+		}
+		assertNull(board.poll(0));
+		assertNull(board.poll(1));
+	}
+
+	@Test
+	void fullRingWaitsTest() throws Exception {
+		ProgressBoard board = new ProgressBoard(1);
+		IProgressEvent event = new WaitEndEvent();
+		int events = (1 << 10) + 1;
+		CompletableFuture<Void> publisher = CompletableFuture.runAsync(() -> {
+			try {
+				for (int i = 0; i < events; i++) {
+					board.publish(0, event);
+				}
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		});
+
+		// Last event waits for the consumer
+		assertThrows(TimeoutException.class, () -> publisher.get(200, TimeUnit.MILLISECONDS));
+		int polled = 0;
+		while (polled < events) {
+			if (board.poll(0) != null) {
+				polled++;
+			}
+		}
+		publisher.get(1, TimeUnit.SECONDS);
+		assertNull(board.poll(0));
+	}
+
+	@Test
+	void doneTest() {
+		ProgressBoard board = new ProgressBoard(1);
+		assertFalse(board.isDone(0));
+		assertNull(board.exception(0));
+		board.done(0);
+		RuntimeException e = new RuntimeException();
+		board.exception(0, e);
+		assertTrue(board.isDone(0));
+		assertSame(e, board.exception(0));
+	}
+}
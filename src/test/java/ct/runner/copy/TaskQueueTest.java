@@ -0,0 +1,73 @@
+package ct.runner.copy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import org.junit.jupiter.api.Test;
+
+import ct.action.copy.model.CopyTask;
+import ct.action.copy.model.FileRecord;
+import ct.app.App;
+
+public class TaskQueueTest {
+
+	private static CopyTask task(int i) {
+		return new CopyTask(FileRecord.sourceFile(Paths.get("src", i + ".bin"), i, Paths.get(i + ".bin")),
+				FileRecord.targetFile(Paths.get("dst", i + ".bin")));
+	}
+
+	@Test
+	void listTest() throws Exception {
+		TaskQueue tasks = TaskQueue.of(List.of(task(1), task(2)));
+		assertTrue(tasks.isComplete());
+		assertEquals(2, tasks.total());
+		assertEquals(task(1), tasks.take());
+		assertEquals(task(2), tasks.take());
+		assertNull(tasks.take());
+		assertNull(TaskQueue.of(List.of()).take());
+	}
+
+	@Test
+	void streamingTest() throws Exception {
+		TaskQueue tasks = TaskQueue.streaming();
+		int count = TaskQueue.STREAM_CAPACITY * 3;
+
+		// Producer blocked while the queue is full, consumer takes the first task right away
+		Thread analyser = App.thread().start(() -> {
+			for (int i = 0; i < count; i++) {
+				tasks.put(task(i));
+			}
+			tasks.complete();
+		});
+		List<CopyTask> taken = new ArrayList<>();
+		CopyTask ct;
+		while ((ct = tasks.take()) != null) {
+			taken.add(ct);
+			assertTrue(tasks.total() >= taken.size());
+		}
+		analyser.join();
+		assertEquals(count, taken.size());
+		assertEquals(task(count - 1), taken.getLast());
+		assertEquals(count, tasks.total());
+	}
+
+	@Test
+	void closedTest() {
+		TaskQueue tasks = TaskQueue.streaming();
+		assertFalse(tasks.isComplete());
+		for (int i = 0; i < TaskQueue.STREAM_CAPACITY; i++) {
+			tasks.put(task(i));
+		}
+		// Copy stopped, analysis gives up instead of waiting forever
+		tasks.close();
+		assertThrows(CancellationException.class, () -> tasks.put(task(-1)));
+	}
+}